@@ -0,0 +1,32 @@
+package com.wse.common.elasticsearch.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <pre>
+ * Run the benchmarks of the library, always with the GC profiler so every result reports the allocation rate
+ * (gc.alloc.rate.norm is the number of bytes allocated per operation)
+ * The first argument is an optional regular expression of the benchmarks to run, by default all of them
+ * Example: java -cp benchmarks.jar com.wse.common.elasticsearch.benchmark.BenchmarkRunner SearchSource
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private static final String ALL_BENCHMARKS = "com\\.wse\\.common\\.elasticsearch\\..*Benchmark";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : ALL_BENCHMARKS)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
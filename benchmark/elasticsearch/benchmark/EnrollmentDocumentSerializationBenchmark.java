@@ -0,0 +1,101 @@
+package com.wse.common.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.gson.Gson;
+import com.wse.ielts.elasticsearch.document.EnrollmentDocument;
+
+/**
+ * <pre>
+ * Serialization and deserialization of an EnrollmentDocument:
+ * Gson as used by the service, against Jackson with a shared ObjectMapper and with a prebuilt ObjectWriter / ObjectReader
+ * Each library reads back its own output (the date formats differ)
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnrollmentDocumentSerializationBenchmark {
+
+    private static final Gson GSON_MAPPER = new Gson();
+    private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
+    private static final ObjectWriter JACKSON_WRITER = JACKSON_MAPPER.writerFor(EnrollmentDocument.class);
+    private static final ObjectReader JACKSON_READER = JACKSON_MAPPER.readerFor(EnrollmentDocument.class);
+
+    private EnrollmentDocument document;
+    private String gsonJson;
+    private String jacksonJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        document = createDocument(1);
+        gsonJson = GSON_MAPPER.toJson(document);
+        jacksonJson = JACKSON_MAPPER.writeValueAsString(document);
+    }
+
+    @Benchmark
+    public String serializeGson() {
+        return GSON_MAPPER.toJson(document);
+    }
+
+    @Benchmark
+    public String serializeJacksonMapper() throws IOException {
+        return JACKSON_MAPPER.writeValueAsString(document);
+    }
+
+    @Benchmark
+    public String serializeJacksonWriter() throws IOException {
+        return JACKSON_WRITER.writeValueAsString(document);
+    }
+
+    @Benchmark
+    public EnrollmentDocument deserializeGson() {
+        return GSON_MAPPER.fromJson(gsonJson, EnrollmentDocument.class);
+    }
+
+    @Benchmark
+    public EnrollmentDocument deserializeJacksonMapper() throws IOException {
+        return JACKSON_MAPPER.readValue(jacksonJson, EnrollmentDocument.class);
+    }
+
+    @Benchmark
+    public EnrollmentDocument deserializeJacksonReader() throws IOException {
+        return JACKSON_READER.readValue(jacksonJson);
+    }
+
+    /**
+     * A representative enrollment, shared by the other benchmarks
+     */
+    public static EnrollmentDocument createDocument(int number) {
+        EnrollmentDocument document = new EnrollmentDocument();
+        document.setCourseName("IELTS Academic Preparation " + (number % 20));
+        document.setCenterName("Ho Chi Minh City Center " + (number % 50));
+        document.setStudentName("Student Name " + number);
+        document.setGroupName("Group " + (number % 200));
+        document.setStartDate(new Date(1546300800000L + number * 86400000L % 31536000000L));
+        document.setEndDate(new Date(1577836800000L + number * 86400000L % 31536000000L));
+        document.setServiceType(number % 2 == 0 ? "VIP" : "STANDARD");
+        document.setStatus(number % 3 == 0 ? "COMPLETED" : "ACTIVE");
+        return document;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.wse.common.elasticsearch.helper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <pre>
+ * DateFormatter.fromDateToJoda and parse, for a valid date (with a zone offset and with a zone name) and an invalid one
+ * The invalid value is the cost of the checks on the free text values which are not dates
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateFormatterBenchmark {
+
+    @Param({ "Mon Oct 19 10:15:30 +0700 2026", "Mon Oct 19 10:15:30 ICT 2026", "not a date" })
+    private String dateString;
+
+    @Benchmark
+    public String fromDateToJoda() {
+        return DateFormatter.fromDateToJoda(dateString);
+    }
+
+    @Benchmark
+    public DateTime parse() {
+        return DateFormatter.parse(dateString);
+    }
+
+}
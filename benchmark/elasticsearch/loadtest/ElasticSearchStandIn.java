@@ -0,0 +1,433 @@
+package com.wse.common.elasticsearch.loadtest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <pre>
+ * An embedded HTTP server answering the endpoints used by ElasticSearchServiceImpl like an Elastic Search 6.x node:
+ * _bulk, _search, _count, the document endpoints (index, update, delete, exists), _aliases, _refresh, _flush,
+ * _cluster/settings and the index administration (exists, create, delete, mapping, settings)
+ * The documents are kept in memory so the counts and the hits follow the ingest, but the queries are not evaluated:
+ * a search returns the first documents of the index, without aggregations or suggestions
+ * The latency, the errors and the rejections are set by {@link ElasticSearchStandInOptions}
+ * Only meant for the load tests of the client side, it is not a test double of the Elastic Search semantics
+ * </pre>
+ */
+public class ElasticSearchStandIn implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchStandIn.class);
+    private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private static final int DEFAULT_SEARCH_SIZE = 10;
+    private static final String DEFAULT_TYPE = "_doc";
+    private static final String RESULT_CREATED = "created";
+    private static final String RESULT_UPDATED = "updated";
+    private static final String RESULT_DELETED = "deleted";
+    private static final String RESULT_NOT_FOUND = "not_found";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile ElasticSearchStandInOptions options;
+
+    // index name -> document id -> source
+    private final Map<String, Map<String, JsonNode>> indices = new ConcurrentHashMap<>();
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    private final AtomicLong sequenceNumber = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private ElasticSearchStandIn(HttpServer server, ExecutorService executor, ElasticSearchStandInOptions options) {
+        this.server = server;
+        this.executor = executor;
+        this.options = options;
+    }
+
+    /**
+     * Start the stand-in on the loopback address
+     * @param port  the port, 0 for a free port (See {@link #getPort()})
+     */
+    public static ElasticSearchStandIn start(int port, ElasticSearchStandInOptions options) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(options.getThreads(),
+                new ThreadFactoryBuilder().setNameFormat("elasticsearch-stand-in-%d").setDaemon(true).build());
+        ElasticSearchStandIn standIn = new ElasticSearchStandIn(server, executor, options);
+        server.createContext("/", standIn::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("Elastic Search stand-in listening on {}", server.getAddress());
+        return standIn;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getHost() {
+        return server.getAddress().getHostString();
+    }
+
+    /**
+     * Change the latency, the errors and the rejections of the next requests
+     */
+    public void setOptions(ElasticSearchStandInOptions options) {
+        this.options = options;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getDocumentCount(String index) {
+        Map<String, JsonNode> documents = indices.get(resolve(index));
+        return documents != null ? documents.size() : 0;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            ElasticSearchStandInOptions current = options;
+            sleep(current);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < current.getErrorRate()) {
+                sendError(exchange, 500, "exception", "injected error");
+            }
+            else if (random.nextDouble() < current.getRejectionRate()) {
+                sendError(exchange, 429, "es_rejected_execution_exception", "rejected execution (injected), queue capacity reached");
+            }
+            else {
+                route(exchange, current);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to answer {} {}. Exception: {}", exchange.getRequestMethod(), exchange.getRequestURI(), e.getMessage());
+            sendError(exchange, 500, "exception", String.valueOf(e.getMessage()));
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange, ElasticSearchStandInOptions current) throws IOException {
+        String method = exchange.getRequestMethod();
+        List<String> segments = new ArrayList<>();
+        for (String segment : exchange.getRequestURI().getPath().split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        String first = segments.isEmpty() ? "" : segments.get(0);
+        String last = segments.isEmpty() ? "" : segments.get(segments.size() - 1);
+        String index = first.startsWith("_") ? null : first;
+
+        if ("_bulk".equals(last)) {
+            bulk(exchange, index, current);
+        }
+        else if ("_search".equals(last)) {
+            search(exchange, index);
+        }
+        else if ("_count".equals(last)) {
+            count(exchange, index);
+        }
+        else if ("_aliases".equals(last)) {
+            aliases(exchange);
+        }
+        else if ("_refresh".equals(last) || "_flush".equals(last)) {
+            send(exchange, 200, NODES.objectNode().set("_shards", shards()));
+        }
+        else if ("_cluster".equals(first)) {
+            ObjectNode response = acknowledged();
+            response.set("persistent", NODES.objectNode());
+            response.set("transient", NODES.objectNode());
+            send(exchange, 200, response);
+        }
+        else if (segments.size() > 1 && ("_mapping".equals(segments.get(1)) || "_settings".equals(segments.get(1)))) {
+            send(exchange, 200, acknowledged());
+        }
+        else if (segments.size() == 4 && "_update".equals(last)) {
+            update(exchange, index, segments.get(1), segments.get(2));
+        }
+        else if (segments.size() == 1 && index != null) {
+            indexAdmin(exchange, method, index);
+        }
+        else if (segments.size() == 3 && index != null) {
+            document(exchange, method, index, segments.get(1), segments.get(2));
+        }
+        else {
+            sendError(exchange, 400, "illegal_argument_exception", "no handler for " + method + " " + exchange.getRequestURI());
+        }
+    }
+
+    private void bulk(HttpExchange exchange, String defaultIndex, ElasticSearchStandInOptions current) throws IOException {
+        long startNanos = System.nanoTime();
+        ArrayNode items = NODES.arrayNode();
+        boolean errors = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode action = JACKSON_MAPPER.readTree(line);
+                String actionName = action.fieldNames().next();
+                JsonNode metadata = action.get(actionName);
+                String index = metadata.path("_index").asText(defaultIndex);
+                String type = metadata.path("_type").asText(DEFAULT_TYPE);
+                String id = metadata.path("_id").asText(String.valueOf(sequenceNumber.get()));
+                JsonNode source = "delete".equals(actionName) ? null : JACKSON_MAPPER.readTree(reader.readLine());
+
+                ObjectNode item;
+                if (ThreadLocalRandom.current().nextDouble() < current.getBulkItemRejectionRate()) {
+                    errors = true;
+                    item = NODES.objectNode().put("_index", index).put("_type", type).put("_id", id).put("status", 429);
+                    item.set("error", error("es_rejected_execution_exception", "rejected execution (injected), queue capacity reached"));
+                }
+                else if ("delete".equals(actionName)) {
+                    item = writeResult(index, type, id, delete(index, id));
+                }
+                else {
+                    item = writeResult(index, type, id, put(index, id, "update".equals(actionName) ? source.path("doc") : source));
+                }
+                items.add(NODES.objectNode().set(actionName, item));
+            }
+        }
+        ObjectNode response = NODES.objectNode()
+                .put("took", (System.nanoTime() - startNanos) / 1000000)
+                .put("errors", errors);
+        response.set("items", items);
+        send(exchange, 200, response);
+    }
+
+    private void search(HttpExchange exchange, String index) throws IOException {
+        Map<String, JsonNode> documents = getDocuments(exchange, index);
+        if (documents == null) {
+            return;
+        }
+        JsonNode body = readBody(exchange);
+        int from = body.path("from").asInt(0);
+        int size = body.path("size").asInt(DEFAULT_SEARCH_SIZE);
+
+        ArrayNode hits = NODES.arrayNode();
+        Iterator<Map.Entry<String, JsonNode>> iterator = documents.entrySet().iterator();
+        for (int position = 0; iterator.hasNext() && hits.size() < size; position++) {
+            Map.Entry<String, JsonNode> document = iterator.next();
+            if (position >= from) {
+                ObjectNode hit = NODES.objectNode().put("_index", resolve(index)).put("_type", DEFAULT_TYPE)
+                        .put("_id", document.getKey()).put("_score", 1.0);
+                hit.set("_source", document.getValue());
+                hits.add(hit);
+            }
+        }
+        ObjectNode hitsNode = NODES.objectNode().put("total", documents.size()).put("max_score", 1.0);
+        hitsNode.set("hits", hits);
+        ObjectNode response = NODES.objectNode().put("took", 1).put("timed_out", false);
+        response.set("_shards", shards().put("skipped", 0));
+        response.set("hits", hitsNode);
+        send(exchange, 200, response);
+    }
+
+    private void count(HttpExchange exchange, String index) throws IOException {
+        Map<String, JsonNode> documents = getDocuments(exchange, index);
+        if (documents != null) {
+            ObjectNode response = NODES.objectNode().put("count", documents.size());
+            response.set("_shards", shards().put("skipped", 0));
+            send(exchange, 200, response);
+        }
+    }
+
+    private void aliases(HttpExchange exchange) throws IOException {
+        for (JsonNode action : readBody(exchange).path("actions")) {
+            JsonNode add = action.get("add");
+            JsonNode remove = action.get("remove");
+            if (add != null) {
+                aliases.put(add.path("alias").asText(), add.path("index").asText());
+            }
+            if (remove != null) {
+                aliases.remove(remove.path("alias").asText());
+            }
+        }
+        send(exchange, 200, acknowledged());
+    }
+
+    private void indexAdmin(HttpExchange exchange, String method, String index) throws IOException {
+        String name = resolve(index);
+        switch (method) {
+            case "HEAD":
+                send(exchange, indices.containsKey(name) ? 200 : 404, null);
+                break;
+            case "PUT":
+                if (indices.putIfAbsent(name, new ConcurrentHashMap<>()) != null) {
+                    sendError(exchange, 400, "resource_already_exists_exception", "index [" + name + "] already exists");
+                    break;
+                }
+                send(exchange, 200, acknowledged().put("shards_acknowledged", true).put("index", name));
+                break;
+            case "DELETE":
+                if (indices.remove(name) == null) {
+                    sendError(exchange, 404, "index_not_found_exception", "no such index [" + name + "]");
+                    break;
+                }
+                send(exchange, 200, acknowledged());
+                break;
+            default:
+                sendError(exchange, 405, "illegal_argument_exception", "unsupported method " + method + " on " + name);
+        }
+    }
+
+    private void document(HttpExchange exchange, String method, String index, String type, String id) throws IOException {
+        Map<String, JsonNode> documents = indices.get(resolve(index));
+        switch (method) {
+            case "HEAD":
+                send(exchange, documents != null && documents.containsKey(id) ? 200 : 404, null);
+                break;
+            case "GET":
+                JsonNode source = documents != null ? documents.get(id) : null;
+                ObjectNode response = NODES.objectNode().put("_index", resolve(index)).put("_type", type).put("_id", id)
+                        .put("found", source != null);
+                if (source != null) {
+                    response.put("_version", 1).set("_source", source);
+                }
+                send(exchange, source != null ? 200 : 404, response);
+                break;
+            case "PUT":
+            case "POST":
+                String result = put(index, id, readBody(exchange));
+                send(exchange, RESULT_CREATED.equals(result) ? 201 : 200, writeResult(index, type, id, result));
+                break;
+            case "DELETE":
+                String deleted = delete(index, id);
+                send(exchange, RESULT_DELETED.equals(deleted) ? 200 : 404, writeResult(index, type, id, deleted));
+                break;
+            default:
+                sendError(exchange, 405, "illegal_argument_exception", "unsupported method " + method + " on " + index);
+        }
+    }
+
+    private void update(HttpExchange exchange, String index, String type, String id) throws IOException {
+        JsonNode body = readBody(exchange);
+        Map<String, JsonNode> documents = indices.get(resolve(index));
+        if (!body.path("doc_as_upsert").asBoolean() && (documents == null || !documents.containsKey(id))) {
+            sendError(exchange, 404, "document_missing_exception", "[" + type + "][" + id + "]: document missing");
+            return;
+        }
+        send(exchange, 200, writeResult(index, type, id, put(index, id, body.path("doc"))));
+    }
+
+    private String put(String index, String id, JsonNode source) {
+        Map<String, JsonNode> documents = indices.computeIfAbsent(resolve(index), name -> new ConcurrentHashMap<>());
+        return documents.put(id, source) == null ? RESULT_CREATED : RESULT_UPDATED;
+    }
+
+    private String delete(String index, String id) {
+        Map<String, JsonNode> documents = indices.get(resolve(index));
+        return documents != null && documents.remove(id) != null ? RESULT_DELETED : RESULT_NOT_FOUND;
+    }
+
+    // the documents of the index, or null once an error is sent
+    private Map<String, JsonNode> getDocuments(HttpExchange exchange, String index) throws IOException {
+        Map<String, JsonNode> documents = index != null ? indices.get(resolve(index)) : null;
+        if (documents == null) {
+            sendError(exchange, 404, "index_not_found_exception", "no such index [" + index + "]");
+        }
+        return documents;
+    }
+
+    private String resolve(String index) {
+        String name = aliases.get(index);
+        return name != null ? name : index;
+    }
+
+    private ObjectNode writeResult(String index, String type, String id, String result) {
+        ObjectNode response = NODES.objectNode().put("_index", resolve(index)).put("_type", type).put("_id", id)
+                .put("_version", 1).put("result", result);
+        response.set("_shards", shards());
+        return response.put("_seq_no", sequenceNumber.incrementAndGet()).put("_primary_term", 1)
+                .put("status", RESULT_CREATED.equals(result) ? 201 : RESULT_NOT_FOUND.equals(result) ? 404 : 200);
+    }
+
+    private static ObjectNode shards() {
+        return NODES.objectNode().put("total", 1).put("successful", 1).put("failed", 0);
+    }
+
+    private static ObjectNode acknowledged() {
+        return NODES.objectNode().put("acknowledged", true);
+    }
+
+    private static ObjectNode error(String type, String reason) {
+        ObjectNode cause = NODES.objectNode().put("type", type).put("reason", reason);
+        ObjectNode error = cause.deepCopy();
+        error.set("root_cause", NODES.arrayNode().add(cause));
+        return error;
+    }
+
+    private static JsonNode readBody(HttpExchange exchange) throws IOException {
+        JsonNode body = JACKSON_MAPPER.readTree(exchange.getRequestBody());
+        return body != null ? body : NODES.objectNode();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String type, String reason) throws IOException {
+        send(exchange, status, NODES.objectNode().put("status", status).set("error", error(type, reason)));
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonNode response) throws IOException {
+        if (response == null || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = JACKSON_MAPPER.writeValueAsBytes(response);
+        exchange.getResponseHeaders().put("Content-Type", Arrays.asList("application/json; charset=UTF-8"));
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static void sleep(ElasticSearchStandInOptions current) {
+        long latencyMillis = current.getLatencyMillis();
+        if (current.getLatencyJitterMillis() > 0) {
+            latencyMillis += ThreadLocalRandom.current().nextLong(current.getLatencyJitterMillis() + 1);
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
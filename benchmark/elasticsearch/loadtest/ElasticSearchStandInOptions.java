@@ -0,0 +1,86 @@
+package com.wse.common.elasticsearch.loadtest;
+
+/**
+ * <pre>
+ * The behavior of the Elastic Search stand-in (See {@link ElasticSearchStandIn}), it can be changed while a load test runs
+ * The rates are fractions (0 to 1) of the requests, the errors are drawn first, then the rejections
+ * </pre>
+ */
+public class ElasticSearchStandInOptions {
+
+    private static final int DEFAULT_THREADS = 64;
+
+    // the time added to every request, plus a uniform random jitter
+    private long latencyMillis;
+    private long latencyJitterMillis;
+
+    // the requests answered with a 500 error
+    private double errorRate;
+
+    // the requests answered with a 429 rejection (es_rejected_execution_exception), as a full queue of the cluster does
+    private double rejectionRate;
+
+    // the bulk items rejected with a 429 status while the bulk request itself succeeds
+    private double bulkItemRejectionRate;
+
+    // the requests served at the same time, the others wait in the queue of the server
+    private int threads = DEFAULT_THREADS;
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public ElasticSearchStandInOptions setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    public ElasticSearchStandInOptions setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public ElasticSearchStandInOptions setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public double getRejectionRate() {
+        return rejectionRate;
+    }
+
+    public ElasticSearchStandInOptions setRejectionRate(double rejectionRate) {
+        this.rejectionRate = rejectionRate;
+        return this;
+    }
+
+    public double getBulkItemRejectionRate() {
+        return bulkItemRejectionRate;
+    }
+
+    public ElasticSearchStandInOptions setBulkItemRejectionRate(double bulkItemRejectionRate) {
+        this.bulkItemRejectionRate = bulkItemRejectionRate;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Only read when the stand-in starts
+     */
+    public ElasticSearchStandInOptions setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+}
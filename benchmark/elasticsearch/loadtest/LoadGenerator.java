@@ -0,0 +1,128 @@
+package com.wse.common.elasticsearch.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * <pre>
+ * Drive an operation from a fixed number of threads (closed loop: each thread starts its next call once the previous one returns)
+ * for a warmup period, which is not recorded, then for the measured period
+ * Every call is timed, a call throwing an exception is counted as an error by exception type
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final int INITIAL_SAMPLES = 1 << 14;
+
+    /**
+     * A call of the workload
+     */
+    public interface LoadOperation {
+        /**
+         * @param worker        the number of the calling thread, from 0 to concurrency - 1
+         * @param iteration     the number of the call on this thread
+         */
+        void execute(int worker, long iteration) throws Exception;
+    }
+
+    /**
+     * @param itemsPerOperation     the number of items of a call (the documents of a bulk request), 1 otherwise
+     */
+    public LoadTestReport run(String name, int concurrency, long warmupMillis, long durationMillis, int itemsPerOperation,
+            LoadOperation operation) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setNameFormat("load-" + name + "-%d").setDaemon(true).build());
+        Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        long measureStartNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long endNanos = measureStartNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        Future<?>[] workers = new Future<?>[concurrency];
+        Worker[] states = new Worker[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(i, operation, errors, measureStartNanos, endNanos);
+            states[i] = worker;
+            workers[i] = executor.submit(worker);
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Load generator failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        int sampleCount = 0;
+        for (Worker worker : states) {
+            sampleCount += worker.sampleCount;
+        }
+        long[] latencies = new long[sampleCount];
+        int offset = 0;
+        for (Worker worker : states) {
+            System.arraycopy(worker.samples, 0, latencies, offset, worker.sampleCount);
+            offset += worker.sampleCount;
+        }
+        Arrays.sort(latencies);
+        return new LoadTestReport(name, concurrency, endNanos - measureStartNanos, latencies, errors, itemsPerOperation);
+    }
+
+    private static final class Worker implements Runnable {
+        private final int number;
+        private final LoadOperation operation;
+        private final Map<String, LongAdder> errors;
+        private final long measureStartNanos;
+        private final long endNanos;
+
+        // the latencies of the measured calls, in nanoseconds, only read once the worker is done
+        private long[] samples = new long[INITIAL_SAMPLES];
+        private int sampleCount;
+
+        Worker(int number, LoadOperation operation, Map<String, LongAdder> errors, long measureStartNanos, long endNanos) {
+            this.number = number;
+            this.operation = operation;
+            this.errors = errors;
+            this.measureStartNanos = measureStartNanos;
+            this.endNanos = endNanos;
+        }
+
+        @Override
+        public void run() {
+            long iteration = 0;
+            long startNanos;
+            while ((startNanos = System.nanoTime()) < endNanos && !Thread.currentThread().isInterrupted()) {
+                boolean measured = startNanos >= measureStartNanos;
+                try {
+                    operation.execute(number, iteration++);
+                }
+                catch (Exception e) {
+                    if (measured) {
+                        errors.computeIfAbsent(e.getClass().getSimpleName(), type -> new LongAdder()).increment();
+                    }
+                }
+                if (measured) {
+                    record(System.nanoTime() - startNanos);
+                }
+            }
+        }
+
+        private void record(long latencyNanos) {
+            if (sampleCount == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[sampleCount++] = latencyNanos;
+        }
+    }
+
+}
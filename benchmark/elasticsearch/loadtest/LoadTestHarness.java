@@ -0,0 +1,144 @@
+package com.wse.common.elasticsearch.loadtest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.MapPropertySource;
+
+import com.wse.common.elasticsearch.benchmark.EnrollmentDocumentSerializationBenchmark;
+import com.wse.common.elasticsearch.config.ElasticSearchClientRegistryConfig;
+import com.wse.common.elasticsearch.config.ElasticSearchConfig;
+import com.wse.common.elasticsearch.service.ElasticSearchService.ServiceMode;
+import com.wse.common.elasticsearch.service.ElasticSearchServiceImpl;
+import com.wse.common.elasticsearch.service.SearchQueryData;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchParams;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchType;
+import com.wse.ielts.elasticsearch.document.EnrollmentDocument;
+
+/**
+ * <pre>
+ * Load test of the whole client path (Spring configuration, connection pool, resilience layer, serialization)
+ * against the embedded Elastic Search stand-in, so the client side regressions are found without a cluster
+ * The scenarios: bulk ingest, a mixed search workload, then both again with latency, errors and rejections injected
+ * Arguments: [search concurrency, default 32] [measured seconds per scenario, default 20]
+ * </pre>
+ */
+public final class LoadTestHarness {
+
+    private static final String INDEX_NAME = "enrollment";
+    private static final String DOCUMENT_TYPE = "_doc";
+    private static final int BULK_SIZE = 500;
+    private static final int SEED_DOCUMENTS = 10000;
+    private static final long WARMUP_MILLIS = 5000;
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long durationMillis = (args.length > 1 ? Long.parseLong(args[1]) : 20) * 1000;
+        int bulkConcurrency = Math.max(1, concurrency / 4);
+
+        try (ElasticSearchStandIn standIn = ElasticSearchStandIn.start(0, new ElasticSearchStandInOptions());
+                AnnotationConfigApplicationContext context = createContext(standIn)) {
+            EnrollmentLoadTestService service = context.getBean(EnrollmentLoadTestService.class);
+            service.configureIndex(INDEX_NAME, DOCUMENT_TYPE);
+            service.createIndexWithMappings(INDEX_NAME, DOCUMENT_TYPE,
+                    service.createMappingInfo(Arrays.asList("studentName", "courseName", "centerName", "status")));
+            for (int i = 0; i < SEED_DOCUMENTS; i += BULK_SIZE) {
+                service.bulkIndex(createDocuments(i), ServiceMode.SYNC);
+            }
+
+            LoadGenerator generator = new LoadGenerator();
+            LoadGenerator.LoadOperation bulkIngest = (worker, iteration) ->
+                    service.bulkIndex(createDocuments(SEED_DOCUMENTS + (worker * 1000000L + iteration) * BULK_SIZE), ServiceMode.SYNC);
+            LoadGenerator.LoadOperation mixedSearch = (worker, iteration) -> search(service);
+
+            print(generator.run("bulk-ingest", bulkConcurrency, WARMUP_MILLIS, durationMillis, BULK_SIZE, bulkIngest));
+            print(generator.run("mixed-search", concurrency, WARMUP_MILLIS, durationMillis, 1, mixedSearch));
+
+            standIn.setOptions(new ElasticSearchStandInOptions().setLatencyMillis(5).setLatencyJitterMillis(20)
+                    .setErrorRate(0.01).setRejectionRate(0.05).setBulkItemRejectionRate(0.02));
+            print(generator.run("bulk-ingest-degraded", bulkConcurrency, WARMUP_MILLIS, durationMillis, BULK_SIZE, bulkIngest));
+            print(generator.run("mixed-search-degraded", concurrency, WARMUP_MILLIS, durationMillis, 1, mixedSearch));
+
+            System.out.println("Requests served by the stand-in: " + standIn.getRequestCount()
+                    + ", documents: " + standIn.getDocumentCount(INDEX_NAME));
+        }
+    }
+
+    // 60% searches, 20% searches with the total, 15% counts, 5% document lookups
+    private static void search(EnrollmentLoadTestService service) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int operation = random.nextInt(100);
+        if (operation < 60) {
+            service.search(createQueryData(random.nextInt(50)));
+        }
+        else if (operation < 80) {
+            service.searchWithRecordCount(createQueryData(random.nextInt(50)));
+        }
+        else if (operation < 95) {
+            service.count(createQueryData(random.nextInt(50)));
+        }
+        else {
+            service.existDocument(INDEX_NAME, DOCUMENT_TYPE, String.valueOf(random.nextInt(SEED_DOCUMENTS)));
+        }
+    }
+
+    private static SearchQueryData createQueryData(int center) {
+        return new SearchQueryData().setSize(20).setSearchParams(Arrays.asList(
+                new SearchParams().setSearchType(SearchType.EXACT_MATCH).setCondition("FILTER")
+                        .setSearchParams(new String[] { "centerName", "Ho Chi Minh City Center " + center }),
+                new SearchParams().setSearchType(SearchType.PREFIX_MATCH).setCondition("OR")
+                        .setSearchParams(new String[] { "studentName", "student" })));
+    }
+
+    private static Map<String, EnrollmentDocument> createDocuments(long firstId) {
+        Map<String, EnrollmentDocument> documents = new LinkedHashMap<>();
+        for (int i = 0; i < BULK_SIZE; i++) {
+            long id = firstId + i;
+            documents.put(String.valueOf(id), EnrollmentDocumentSerializationBenchmark.createDocument((int) (id % Integer.MAX_VALUE)));
+        }
+        return documents;
+    }
+
+    private static AnnotationConfigApplicationContext createContext(ElasticSearchStandIn standIn) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("elasticsearch.cluster-name", "stand-in");
+        properties.put("elasticsearch.cluster-nodes", standIn.getHost() + ":" + standIn.getPort());
+        properties.put("elasticsearch.protocol", "http");
+        properties.put("elasticsearch.domain", standIn.getHost());
+        properties.put("elasticsearch.port", standIn.getPort());
+        properties.put("elasticsearch.alternate-port", standIn.getPort());
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("load-test", properties));
+        context.register(LoadTestConfiguration.class, ElasticSearchConfig.class, ElasticSearchClientRegistryConfig.class,
+                EnrollmentLoadTestService.class);
+        context.refresh();
+        return context;
+    }
+
+    private static void print(LoadTestReport report) {
+        System.out.println(report);
+    }
+
+    @Configuration
+    static class LoadTestConfiguration {
+        @Bean
+        static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+    }
+
+    public static class EnrollmentLoadTestService extends ElasticSearchServiceImpl<EnrollmentDocument> {
+    }
+
+}
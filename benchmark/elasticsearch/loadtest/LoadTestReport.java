@@ -0,0 +1,87 @@
+package com.wse.common.elasticsearch.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The throughput, the latency percentiles and the errors of a load test run (See {@link LoadGenerator})
+ */
+public class LoadTestReport {
+
+    private final String name;
+    private final int concurrency;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+    private final Map<String, Long> errors = new TreeMap<>();
+    private final int itemsPerOperation;
+
+    LoadTestReport(String name, int concurrency, long elapsedNanos, long[] sortedLatencies, Map<String, LongAdder> errors,
+            int itemsPerOperation) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencies = sortedLatencies;
+        this.itemsPerOperation = itemsPerOperation;
+        for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+            this.errors.put(error.getKey(), error.getValue().sum());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getOperations() {
+        return sortedLatencies.length;
+    }
+
+    public long getErrorCount() {
+        long count = 0;
+        for (long errorCount : errors.values()) {
+            count += errorCount;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of errors by exception type
+     */
+    public Map<String, Long> getErrors() {
+        return errors;
+    }
+
+    public double getThroughput() {
+        return sortedLatencies.length / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @param percentile    from 0 to 100
+     * @return the latency in milliseconds, 0 without any call
+     */
+    public double getLatencyMillis(double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(rank, sortedLatencies.length - 1))] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(
+                "%-24s concurrency=%-4d operations=%-8d throughput=%.1f ops/s", name, concurrency, getOperations(), getThroughput()));
+        if (itemsPerOperation > 1) {
+            report.append(String.format(" (%.0f items/s)", getThroughput() * itemsPerOperation));
+        }
+        report.append(String.format(" latency ms p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+                getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(99.9), getLatencyMillis(100)));
+        report.append(" errors=").append(getErrorCount());
+        if (!errors.isEmpty()) {
+            report.append(' ').append(errors);
+        }
+        return report.toString();
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wse.common.elasticsearch.benchmark.EnrollmentDocumentSerializationBenchmark;
+import com.wse.common.elasticsearch.service.ElasticSearchService.RequestType;
+import com.wse.ielts.elasticsearch.document.EnrollmentDocument;
+
+/**
+ * <pre>
+ * The construction of the bulk requests (the serialization of every document included), for 1k, 10k and 100k documents
+ * One invocation builds one whole request, the heap of the fork is sized for the 100k documents
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class BulkRequestBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int documentCount;
+
+    private EnrollmentBenchmarkService service;
+    private Map<String, EnrollmentDocument> documents;
+
+    @Setup
+    public void setUp() {
+        service = new EnrollmentBenchmarkService();
+        documents = new LinkedHashMap<>();
+        for (int i = 0; i < documentCount; i++) {
+            documents.put(String.valueOf(i), EnrollmentDocumentSerializationBenchmark.createDocument(i));
+        }
+    }
+
+    @Benchmark
+    public BulkRequest buildIndexBulkRequest() {
+        return service.buildBulkRequest(service.getIndexHandle(), documents, RequestType.INDEX, null);
+    }
+
+    @Benchmark
+    public BulkRequest buildUpdateBulkRequest() {
+        return service.buildBulkRequest(service.getIndexHandle(), documents, RequestType.UPDATE, null);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.wse.common.elasticsearch.service;
+
+import com.wse.ielts.elasticsearch.document.EnrollmentDocument;
+
+/**
+ * The service under benchmark, without a client: only the request building is measured, nothing is sent
+ */
+class EnrollmentBenchmarkService extends ElasticSearchServiceImpl<EnrollmentDocument> {
+
+    static final String INDEX_NAME = "enrollment";
+    static final String DOCUMENT_TYPE = "_doc";
+
+    EnrollmentBenchmarkService() {
+        configureIndex(INDEX_NAME, DOCUMENT_TYPE);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * createMappingInfo of the EnrollmentDocument, with the field types given, with the list of the indexed fields
+ * and generated from the entity class (cached after the first call)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingInfoBenchmark {
+
+    private EnrollmentBenchmarkService service;
+    private Map<String, String> fieldsWithTypes;
+    private List<String> fields;
+
+    @Setup
+    public void setUp() {
+        service = new EnrollmentBenchmarkService();
+        fieldsWithTypes = new HashMap<>();
+        fieldsWithTypes.put("studentName", "autocomplete");
+        fieldsWithTypes.put("courseName", "keyword");
+        fieldsWithTypes.put("centerName", "keyword");
+        fieldsWithTypes.put("startDate", "date");
+        fieldsWithTypes.put("endDate", "date");
+        fields = Arrays.asList("studentName", "courseName", "centerName", "status");
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Object>> createMappingInfoWithTypes() {
+        return service.createMappingInfo(fieldsWithTypes);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Object>> createMappingInfoWithFields() {
+        return service.createMappingInfo(fields);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Object>> createMappingInfoFromEntity() {
+        return service.createMappingInfo();
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.wse.common.elasticsearch.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
+import com.wse.common.elasticsearch.service.SearchQueryData.RangeParams;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchParams;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchType;
+import com.wse.common.elasticsearch.service.SearchQueryData.SortParams;
+
+/**
+ * <pre>
+ * The query building of the service for representative SearchQueryData shapes:
+ * the query alone (the mapping onto SearchQuery and the Elastic Search QueryBuilder, which replaced getQueryBuilder),
+ * the whole search source, and the search source rendered as the JSON body sent to the cluster
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchSourceBenchmark {
+
+    public enum Shape {
+        // a single exact match, the lookup of the screens
+        EXACT_MATCH,
+        // the search box: a multi match or a prefix on the name
+        TEXT_SEARCH,
+        // the report filters: several conditions, typed date ranges, an excluded range and a sort
+        REPORT_FILTERS
+    }
+
+    @Param
+    private Shape shape;
+
+    private EnrollmentBenchmarkService service;
+    private SearchQueryData queryData;
+
+    @Setup
+    public void setUp() {
+        service = new EnrollmentBenchmarkService();
+        queryData = createQueryData(shape);
+    }
+
+    @Benchmark
+    public QueryBuilder buildQuery() {
+        return SearchQuery.from(queryData).toQueryBuilder(DateRounding.DAY);
+    }
+
+    @Benchmark
+    public SearchSourceBuilder buildSearchSource() {
+        return service.buildSearchSource(queryData);
+    }
+
+    @Benchmark
+    public String buildSearchSourceJson() {
+        return service.buildSearchSource(queryData).toString();
+    }
+
+    private static SearchQueryData createQueryData(Shape shape) {
+        switch (shape) {
+            case EXACT_MATCH:
+                return new SearchQueryData().setSize(10).setSearchParams(Collections.singletonList(
+                        searchParams(SearchType.EXACT_MATCH, "AND", "status", "ACTIVE")));
+            case TEXT_SEARCH:
+                return new SearchQueryData().setSize(20).setSearchParams(Arrays.asList(
+                        searchParams(SearchType.MULTI_MATCH, "OR", "nguyen van", "studentName", "groupName", "courseName"),
+                        searchParams(SearchType.PREFIX_MATCH, "OR", "studentName", "nguyen")));
+            case REPORT_FILTERS:
+            default:
+                return new SearchQueryData().setFrom(100).setSize(50)
+                        .setSearchParams(Arrays.asList(
+                                searchParams(SearchType.EXACT_MATCH, "AND", "centerName", "Ho Chi Minh City Center 1"),
+                                searchParams(SearchType.EXACT_MATCH, "FILTER", "serviceType", "VIP"),
+                                searchParams(SearchType.EXACT_MATCH, "NOT", "status", "CANCELLED"),
+                                searchParams(SearchType.EXIST_MATCH, "FILTER", "groupName"),
+                                searchParams(SearchType.RANGE_MATCH, "FILTER", "updated_at", "now-30d", "now")))
+                        .setRangeParams(Arrays.asList(
+                                RangeParams.ofDates("startDate", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 6, 30)),
+                                RangeParams.ofDates("endDate", LocalDate.of(2026, 7, 1), null),
+                                RangeParams.ofLongs("updated_at", null, 1546300800000L).setExcluded(true)))
+                        .setSortBy(new SortParams("startDate", SortOrder.DESC));
+        }
+    }
+
+    private static SearchParams searchParams(SearchType searchType, String condition, String... values) {
+        return new SearchParams().setSearchType(searchType).setCondition(condition).setSearchParams(values);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.wse.common.elasticsearch.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpGet;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.HostsSniffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <pre>
+ * Sniff the http address of the nodes which can serve requests: data and ingest nodes.
+ * Dedicated master nodes are left out, so they never coordinate searches or bulk requests.
+ * If the cluster has no data or ingest node with an http address (a single node in a test cluster, ...), all the nodes are used.
+ * </pre>
+ */
+public class DataNodeHostsSniffer implements HostsSniffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataNodeHostsSniffer.class);
+    private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
+
+    private static final String NODES_ENDPOINT = "/_nodes/http";
+    private static final String FILTER_PATH = "nodes.*.roles,nodes.*.http.publish_address";
+    private static final String ROLE_DATA = "data";
+    private static final String ROLE_INGEST = "ingest";
+
+    private final RestClient restClient;
+    private final String scheme;
+    private final String timeout;
+
+    public DataNodeHostsSniffer(RestClient restClient, String scheme, long timeoutMillis) {
+        this.restClient = restClient;
+        this.scheme = scheme;
+        this.timeout = timeoutMillis + "ms";
+    }
+
+    @Override
+    public List<HttpHost> sniffHosts() throws IOException {
+        Map<String, String> params = new HashMap<>();
+        params.put("timeout", timeout);
+        params.put("filter_path", FILTER_PATH);
+        Response response = restClient.performRequest(HttpGet.METHOD_NAME, NODES_ENDPOINT, params);
+        try (InputStream content = response.getEntity().getContent()) {
+            return readHosts(JACKSON_MAPPER.readTree(content));
+        }
+    }
+
+    private List<HttpHost> readHosts(JsonNode responseBody) {
+        JsonNode nodes = responseBody.path("nodes");
+        List<HttpHost> allHosts = new ArrayList<>();
+        List<HttpHost> workerHosts = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> nodeEntries = nodes.fields();
+        while (nodeEntries.hasNext()) {
+            Map.Entry<String, JsonNode> nodeEntry = nodeEntries.next();
+            JsonNode node = nodeEntry.getValue();
+            String publishAddress = node.path("http").path("publish_address").asText(null);
+            if (publishAddress == null) {
+                // http is disabled on this node
+                continue;
+            }
+            HttpHost host = toHost(publishAddress);
+            allHosts.add(host);
+            if (hasRole(node, ROLE_DATA) || hasRole(node, ROLE_INGEST)) {
+                workerHosts.add(host);
+            }
+        }
+        List<HttpHost> hosts = workerHosts.isEmpty() ? allHosts : workerHosts;
+        LOGGER.debug("Sniffed {} hosts out of {} nodes: {}", hosts.size(), nodes.size(), hosts);
+        return Collections.unmodifiableList(hosts);
+    }
+
+    private static boolean hasRole(JsonNode node, String role) {
+        for (JsonNode nodeRole : node.path("roles")) {
+            if (role.equals(nodeRole.asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the publish address is either "ip:port" or "hostname/ip:port", the ip is used in both cases
+    private HttpHost toHost(String publishAddress) {
+        String address = publishAddress.substring(publishAddress.lastIndexOf('/') + 1);
+        int portSeparator = address.lastIndexOf(':');
+        String hostName = address.substring(0, portSeparator);
+        if (hostName.startsWith("[") && hostName.endsWith("]")) {
+            hostName = hostName.substring(1, hostName.length() - 1);
+        }
+        return new HttpHost(hostName, Integer.parseInt(address.substring(portSeparator + 1)), scheme);
+    }
+
+}
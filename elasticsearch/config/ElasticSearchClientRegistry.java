@@ -0,0 +1,135 @@
+package com.wse.common.elasticsearch.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+
+/**
+ * <pre>
+ * One shared client per named cluster: the primary cluster receives the writes and, optionally, a read cluster
+ * (a replica populated by cross-cluster replication) receives the searches.
+ * When the read cluster fails, the searches fall back to the primary cluster for a while (if failover is enabled).
+ * The read cluster lags behind the primary cluster, so a document may not be searchable there right after it is written.
+ * </pre>
+ */
+public class ElasticSearchClientRegistry implements Closeable {
+
+    public static final String PRIMARY_CLUSTER = "primary";
+    public static final String READ_CLUSTER = "read";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchClientRegistry.class);
+
+    private final Map<String, RegisteredClient> clients = new ConcurrentHashMap<>();
+
+    private final boolean readFailover;
+
+    private final long readFailoverBackoffMillis;
+
+    private volatile long readClusterUnavailableUntil;
+
+    public ElasticSearchClientRegistry(boolean readFailover, long readFailoverBackoffMillis) {
+        this.readFailover = readFailover;
+        this.readFailoverBackoffMillis = readFailoverBackoffMillis;
+    }
+
+    /**
+     * Register the client of a cluster, the registry closes the resources (sniffer, ...) and then the client
+     */
+    public void register(String clusterName, RestHighLevelClient client, Closeable... resources) {
+        RegisteredClient previous = clients.put(clusterName, new RegisteredClient(client, Arrays.asList(resources)));
+        if (previous != null) {
+            previous.close(clusterName);
+        }
+    }
+
+    public boolean contains(String clusterName) {
+        return clients.containsKey(clusterName);
+    }
+
+    public Collection<String> getClusterNames() {
+        return Collections.unmodifiableSet(clients.keySet());
+    }
+
+    public RestHighLevelClient getClient(String clusterName) {
+        RegisteredClient registeredClient = clients.get(clusterName);
+        if (registeredClient == null) {
+            throw new ElasticSearchServiceException("No client is registered for the cluster: " + clusterName);
+        }
+        return registeredClient.client;
+    }
+
+    public RestHighLevelClient getWriteClient() {
+        return getClient(PRIMARY_CLUSTER);
+    }
+
+    /**
+     * @return the client of the read cluster, or the primary one if there is no read cluster or it failed recently
+     */
+    public RestHighLevelClient getReadClient() {
+        RegisteredClient readClient = clients.get(READ_CLUSTER);
+        if (readClient == null || System.currentTimeMillis() < readClusterUnavailableUntil) {
+            return getWriteClient();
+        }
+        return readClient.client;
+    }
+
+    /**
+     * Report a failed read
+     * @return true if the read should be retried on the primary cluster
+     */
+    public boolean failOver(RestHighLevelClient failedClient) {
+        RegisteredClient readClient = clients.get(READ_CLUSTER);
+        if (!readFailover || readClient == null || readClient.client != failedClient) {
+            return false;
+        }
+        readClusterUnavailableUntil = System.currentTimeMillis() + readFailoverBackoffMillis;
+        LOGGER.warn("The read cluster failed, searches are sent to the primary cluster for the next {} ms", readFailoverBackoffMillis);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Iterator<Map.Entry<String, RegisteredClient>> entries = clients.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, RegisteredClient> entry = entries.next();
+            entries.remove();
+            entry.getValue().close(entry.getKey());
+        }
+    }
+
+    private static final class RegisteredClient {
+        private final RestHighLevelClient client;
+        private final List<Closeable> resources;
+
+        RegisteredClient(RestHighLevelClient client, List<Closeable> resources) {
+            this.client = client;
+            this.resources = new ArrayList<>(resources);
+        }
+
+        void close(String clusterName) {
+            List<Closeable> closeables = new ArrayList<>(resources);
+            closeables.add(client);
+            for (Closeable closeable : closeables) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    LOGGER.error("Error closing ElasticSearch client of the cluster " + clusterName + ": ", e);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.wse.common.elasticsearch.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * <pre>
+ * Expose the client registry built by {@link ElasticSearchConfig}, so that the services can reach the read cluster
+ * The bean methods cannot be declared on ElasticSearchConfig itself: as a FactoryBean, its bean name resolves to the client
+ * The registry is closed by ElasticSearchConfig, not by this bean
+ * </pre>
+ */
+@Configuration
+public class ElasticSearchClientRegistryConfig {
+
+    // injecting the factory by its own type returns the initialized factory, not its client
+    @Bean(destroyMethod = "")
+    public ElasticSearchClientRegistry elasticSearchClientRegistry(ElasticSearchConfig elasticSearchConfig) {
+        return elasticSearchConfig.getClientRegistry();
+    }
+
+}
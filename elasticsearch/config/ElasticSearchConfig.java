@@ -1,14 +1,34 @@
 
 package com.wse.common.elasticsearch.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AbstractFactoryBean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import com.wse.common.elasticsearch.metrics.ElasticSearchMetrics;
+import com.wse.common.elasticsearch.metrics.HttpTrafficMetricsInterceptor;
 
 @SuppressWarnings("rawtypes")
 @Configuration
@@ -34,13 +54,72 @@ public class ElasticSearchConfig extends AbstractFactoryBean {
     @Value("${elasticsearch.alternate-port}")
     private int altPort;
     
+    // the client defaults (10 per route, 30 in total) make requests queue inside the client under load
+    @Value("${elasticsearch.pool.max-connections-per-route:100}")
+    private int maxConnectionsPerRoute;
+    
+    @Value("${elasticsearch.pool.max-connections-total:300}")
+    private int maxConnectionsTotal;
+    
+    // 0 keeps the client default: one I/O dispatcher thread per available processor
+    @Value("${elasticsearch.io-thread-count:0}")
+    private int ioThreadCount;
+    
+    @Value("${elasticsearch.timeout.connect-millis:1000}")
+    private int connectTimeoutMillis;
+    
+    @Value("${elasticsearch.timeout.socket-millis:30000}")
+    private int socketTimeoutMillis;
+    
+    // how long a request may wait for a pooled connection before failing
+    @Value("${elasticsearch.timeout.connection-request-millis:1000}")
+    private int connectionRequestTimeoutMillis;
+    
+    // the overall time allowed for a request including retries on other nodes, should not be lower than the socket timeout
+    @Value("${elasticsearch.timeout.max-retry-millis:30000}")
+    private int maxRetryTimeoutMillis;
+    
+    // idle connections are not kept longer than this, even if the server allows it
+    @Value("${elasticsearch.keep-alive-millis:60000}")
+    private long keepAliveMillis;
+    
+    @Value("${elasticsearch.buffer.size-bytes:16384}")
+    private int bufferSizeBytes;
+    
+    // refresh the host list from the cluster periodically and right after a node fails
+    @Value("${elasticsearch.sniff.enabled:false}")
+    private boolean sniffEnabled;
+    
+    @Value("${elasticsearch.sniff.interval-millis:300000}")
+    private int sniffIntervalMillis;
+    
+    @Value("${elasticsearch.sniff.after-failure-delay-millis:60000}")
+    private int sniffAfterFailureDelayMillis;
+    
+    // the nodes of a read replica cluster (populated by cross-cluster replication) which receives the searches, empty for none
+    @Value("${elasticsearch.read.cluster-nodes:}")
+    private String readClusterNodes;
+    
+    // send the searches to the primary cluster when the read cluster fails, for the backoff duration
+    @Value("${elasticsearch.read.failover:true}")
+    private boolean readFailover;
+    
+    @Value("${elasticsearch.read.failover-backoff-millis:30000}")
+    private long readFailoverBackoffMillis;
+    
+    // records the size of the request and response bodies when a metrics implementation is declared
+    @Autowired(required = false)
+    private ElasticSearchMetrics metrics;
+    
     private RestHighLevelClient restHighLevelClient;
     
+    private ElasticSearchClientRegistry clientRegistry;
+    
     @Override
     public void destroy() {
         try {
-            if (restHighLevelClient != null) {
-                restHighLevelClient.close();
+            if (clientRegistry != null) {
+                clientRegistry.close();
             }
         } catch (final Exception e) {
             LOGGER.error("Error closing ElasticSearch client: ", e);
@@ -54,24 +133,119 @@ public class ElasticSearchConfig extends AbstractFactoryBean {
 
     @Override
     public boolean isSingleton() {
-        return false;
+        // one client, connection pool and set of I/O threads shared by all the injection points
+        return true;
     }
 
     @Override
     public RestHighLevelClient createInstance() {
-        return buildClient();
+        clientRegistry = new ElasticSearchClientRegistry(readFailover, readFailoverBackoffMillis);
+        restHighLevelClient = buildClient(ElasticSearchClientRegistry.PRIMARY_CLUSTER, getHosts(clusterNodes, true));
+        if (!StringUtils.isEmpty(readClusterNodes)) {
+            buildClient(ElasticSearchClientRegistry.READ_CLUSTER, getHosts(readClusterNodes, false));
+        }
+        return restHighLevelClient;
+    }
+    
+    /**
+     * The clients of all the clusters, the client of this factory is the one of the primary cluster
+     * (exposed as a bean by {@link ElasticSearchClientRegistryConfig}), null until the factory is initialized
+     */
+    public ElasticSearchClientRegistry getClientRegistry() {
+        return clientRegistry;
     }
 
-    private RestHighLevelClient buildClient() {
+    private RestHighLevelClient buildClient(String name, HttpHost[] hosts) {
+        RestHighLevelClient client = null;
         try {
-            restHighLevelClient = new RestHighLevelClient(
-                    RestClient.builder(
-                            new HttpHost(domain, port, protocol),
-                            new HttpHost("domain", altPort, protocol)));
+            SniffOnFailureListener sniffOnFailureListener = sniffEnabled ? new SniffOnFailureListener() : null;
+            RestClientBuilder restClientBuilder = RestClient.builder(hosts)
+                    .setRequestConfigCallback(this::configureRequest)
+                    .setHttpClientConfigCallback(this::configureHttpClient)
+                    .setMaxRetryTimeoutMillis(maxRetryTimeoutMillis);
+            if (sniffOnFailureListener != null) {
+                restClientBuilder.setFailureListener(sniffOnFailureListener);
+            }
+            client = new RestHighLevelClient(restClientBuilder);
+            
+            if (sniffOnFailureListener != null) {
+                RestClient lowLevelClient = client.getLowLevelClient();
+                Sniffer sniffer = Sniffer.builder(lowLevelClient)
+                        .setSniffIntervalMillis(sniffIntervalMillis)
+                        .setSniffAfterFailureDelayMillis(sniffAfterFailureDelayMillis)
+                        .setHostsSniffer(new DataNodeHostsSniffer(lowLevelClient, protocol, connectTimeoutMillis))
+                        .build();
+                sniffOnFailureListener.setSniffer(sniffer);
+                // the sniffer uses the client, it is closed first
+                clientRegistry.register(name, client, sniffer);
+            } else {
+                clientRegistry.register(name, client);
+            }
         } catch (Exception e) {
             LOGGER.error("Error building rest client: ", e);
         }
-        return restHighLevelClient;
+        return client;
+    }
+    
+    // a comma separated list of host[:port], for the primary cluster the domain with the port and the alternate port is used if it is empty
+    private HttpHost[] getHosts(String nodes, boolean primary) {
+        List<HttpHost> hosts = new ArrayList<>();
+        for (String clusterNode : StringUtils.commaDelimitedListToStringArray(nodes)) {
+            String node = clusterNode.trim();
+            if (node.isEmpty()) {
+                continue;
+            }
+            int portSeparator = node.lastIndexOf(':');
+            if (portSeparator > 0 && node.indexOf(']', portSeparator) < 0) {
+                hosts.add(new HttpHost(node.substring(0, portSeparator), Integer.parseInt(node.substring(portSeparator + 1)), protocol));
+            } else {
+                hosts.add(new HttpHost(node, port, protocol));
+            }
+        }
+        if (hosts.isEmpty() && primary) {
+            hosts.add(new HttpHost(domain, port, protocol));
+            hosts.add(new HttpHost(domain, altPort, protocol));
+        }
+        LOGGER.info("ElasticSearch cluster {} ({}): {}", clusterName, primary ? "primary" : "read", hosts);
+        return hosts.toArray(new HttpHost[hosts.size()]);
+    }
+    
+    private RequestConfig.Builder configureRequest(RequestConfig.Builder requestConfigBuilder) {
+        return requestConfigBuilder.setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(socketTimeoutMillis)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis);
+    }
+    
+    private HttpAsyncClientBuilder configureHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSoTimeout(socketTimeoutMillis)
+                .setSoKeepAlive(true)
+                .setTcpNoDelay(true);
+        if (ioThreadCount > 0) {
+            ioReactorConfig.setIoThreadCount(ioThreadCount);
+        }
+        
+        if (metrics != null) {
+            HttpTrafficMetricsInterceptor trafficInterceptor = new HttpTrafficMetricsInterceptor(metrics);
+            httpClientBuilder.addInterceptorLast((HttpRequestInterceptor) trafficInterceptor)
+                    .addInterceptorLast((HttpResponseInterceptor) trafficInterceptor);
+        }
+        
+        return httpClientBuilder.setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setMaxConnTotal(maxConnectionsTotal)
+                .setDefaultIOReactorConfig(ioReactorConfig.build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setBufferSize(bufferSizeBytes)
+                        .setFragmentSizeHint(bufferSizeBytes)
+                        .build())
+                .setKeepAliveStrategy(this::getKeepAliveDuration);
+    }
+    
+    // follow the Keep-Alive header of the server, but never keep an idle connection longer than keepAliveMillis
+    private long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
     }
     
 }
@@ -0,0 +1,14 @@
+package com.wse.common.elasticsearch.exception;
+
+/**
+ * Thrown without calling the cluster: the circuit breaker of the operation is open or too many searches are running
+ */
+public class ElasticSearchServiceUnavailableException extends ElasticSearchServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ElasticSearchServiceUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -1,68 +1,190 @@
 package com.wse.common.elasticsearch.helper;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.TextStyle;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.springframework.util.StringUtils;
 
+/**
+ * <pre>
+ * Date parsing and formatting with immutable java.time formatters, cached by pattern and safe to share between threads.
+ * Parsing never uses exceptions for control flow: a value which is not a date simply gives null.
+ * Like the Joda and SimpleDateFormat parsing they replace, the numbers may have fewer or more digits than their pattern letters
+ * ("2024-3-5" with "yyyy-MM-dd") and the text is case insensitive. Unlike them, an out of range value never rolls over:
+ * a month 13 gives null and February 30 gives the last day of February.
+ * The patterns are java.time patterns: a pattern with a letter java.time does not know (the Joda century "C") is still parsed
+ * with Joda, while "Y" (week based year instead of year of era) and "x" (zone offset instead of week year) differ from Joda.
+ * </pre>
+ */
 public final class DateFormatter {
 
     private static final String OUTPUT_DATE_FORMAT = "yyyy-MM-dd";
     private static final String INPUT_DATE_FORMAT = "E MMM dd HH:mm:ss Z yyyy";
-    
+
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    // the patterns rejected by java.time, parsed with Joda as before
+    private static final Set<String> JODA_PATTERNS = ConcurrentHashMap.newKeySet();
+
+    static {
+        // the default input is the output of Date.toString(), where the zone is a name ("ICT") more often than an offset
+        FORMATTERS.put(INPUT_DATE_FORMAT, new DateTimeFormatterBuilder()
+                .appendPattern("EEE MMM dd HH:mm:ss ")
+                .optionalStart().appendOffset("+HHMM", "+0000").optionalEnd()
+                .optionalStart().appendZoneText(TextStyle.SHORT).optionalEnd()
+                .appendPattern(" yyyy")
+                .toFormatter(Locale.ENGLISH));
+    }
+
+    private DateFormatter() {
+    }
+
     public static final Date parseDate(String dateString, String inputDateFormat) {
-        DateFormat format = new SimpleDateFormat(getInputDateFormat(inputDateFormat));
-        try {
-            return format.parse(dateString);
-        } catch (ParseException e) {
-            return null;
-        }
+        Instant instant = parseInstant(dateString, inputDateFormat);
+        return instant != null ? Date.from(instant) : null;
     }
-    
+
     public static final String fromDateToJoda(String dateString) {
-        return toDateString(parse(dateString));
+        DateTime date = parse(dateString);
+        return date != null ? toDateString(date) : null;
     }
-    
+
     public static final String fromDateToJoda(String dateString, String inputDateFormat, String outputDateFormat) {
-        return toDateString(parse(dateString, inputDateFormat), outputDateFormat);
+        DateTime date = parse(dateString, inputDateFormat);
+        return date != null ? toDateString(date, outputDateFormat) : null;
     }
-    
+
     public static final DateTime parse(String dateString, String inputDateFormat) {
-        DateTimeFormatter jodaFormatter = DateTimeFormat.forPattern(getInputDateFormat(inputDateFormat));
-        try {
-            return jodaFormatter.parseDateTime(dateString);
+        Instant instant = parseInstant(dateString, inputDateFormat);
+        return instant != null ? new DateTime(instant.toEpochMilli()) : null;
+    }
+
+    public static final DateTime parse(String dateString) {
+        return parse(dateString, INPUT_DATE_FORMAT);
+    }
+
+    /**
+     * @return the parsed instant (dates without zone are in the system zone), or null if the value does not match the format
+     */
+    public static final Instant parseInstant(String dateString, String inputDateFormat) {
+        if (StringUtils.isEmpty(dateString)) {
+            return null;
+        }
+        String pattern = getInputDateFormat(inputDateFormat);
+        DateTimeFormatter formatter = getInputFormatter(pattern);
+        if (formatter == null) {
+            return parseJoda(dateString, pattern);
         }
-        catch (IllegalArgumentException exception) {
-            DateFormat dateFormatter = new SimpleDateFormat(getInputDateFormat(inputDateFormat));
-            try {
-                return new DateTime(dateFormatter.parse(dateString));
-            } catch (ParseException e) {
+        if (!matches(dateString, formatter)) {
+            return null;
+        }
+        try {
+            TemporalAccessor parsed = formatter.parse(dateString);
+            LocalDate date = parsed.query(TemporalQueries.localDate());
+            if (date == null) {
                 return null;
             }
+            LocalTime time = parsed.query(TemporalQueries.localTime());
+            ZoneId zone = parsed.query(TemporalQueries.zone());
+            LocalDateTime dateTime = time != null ? date.atTime(time) : date.atStartOfDay();
+            return dateTime.atZone(zone != null ? zone : ZoneId.systemDefault()).toInstant();
+        }
+        catch (DateTimeException e) {
+            // the text matches the pattern but the fields are inconsistent, for example a month 13 or a wrong day of week
+            return null;
         }
     }
-    
-    public static final DateTime parse(String dateString) {
-        return parse(dateString, INPUT_DATE_FORMAT);
+
+    /**
+     * Check if the value has the format of the pattern, without throwing or building any date
+     */
+    public static final boolean isDate(String dateString, String inputDateFormat) {
+        if (StringUtils.isEmpty(dateString)) {
+            return false;
+        }
+        String pattern = getInputDateFormat(inputDateFormat);
+        DateTimeFormatter formatter = getInputFormatter(pattern);
+        return formatter != null ? matches(dateString, formatter) : parseJoda(dateString, pattern) != null;
     }
-    
+
     public static final String toDateString(DateTime date, String outputDateFormat) {
         return date.toString(getOutputDateFormat(outputDateFormat));
     }
-    
+
     public static final String toDateString(DateTime date) {
         return toDateString(date, getOutputDateFormat(OUTPUT_DATE_FORMAT));
     }
-    
+
+    public static final String toDateString(TemporalAccessor date, String outputDateFormat) {
+        return getFormatter(getOutputDateFormat(outputDateFormat)).format(date);
+    }
+
+    public static final String toDateString(TemporalAccessor date) {
+        return toDateString(date, OUTPUT_DATE_FORMAT);
+    }
+
+    /**
+     * @exception IllegalArgumentException if the pattern is not a java.time pattern
+     */
+    public static final DateTimeFormatter getFormatter(String pattern) {
+        // leniency only changes the parsing, the formatting is the same as DateTimeFormatter.ofPattern
+        return FORMATTERS.computeIfAbsent(pattern, key -> new DateTimeFormatterBuilder()
+                .parseCaseInsensitive()
+                .parseLenient()
+                .appendPattern(key)
+                .toFormatter());
+    }
+
+    // null for a pattern java.time rejects, which is parsed with Joda instead
+    private static final DateTimeFormatter getInputFormatter(String pattern) {
+        if (JODA_PATTERNS.contains(pattern)) {
+            return null;
+        }
+        try {
+            return getFormatter(pattern);
+        }
+        catch (IllegalArgumentException e) {
+            JODA_PATTERNS.add(pattern);
+            return null;
+        }
+    }
+
+    private static final Instant parseJoda(String dateString, String pattern) {
+        try {
+            return Instant.ofEpochMilli(DateTimeFormat.forPattern(pattern).parseMillis(dateString));
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final boolean matches(String dateString, DateTimeFormatter formatter) {
+        ParsePosition position = new ParsePosition(0);
+        return formatter.parseUnresolved(dateString, position) != null
+                && position.getErrorIndex() < 0 && position.getIndex() == dateString.length();
+    }
+
     private static final String getOutputDateFormat(String dateFormat) {
         return StringUtils.isEmpty(dateFormat) ? OUTPUT_DATE_FORMAT : dateFormat;
     }
-    
+
     private static final String getInputDateFormat(String dateFormat) {
         return StringUtils.isEmpty(dateFormat) ? INPUT_DATE_FORMAT : dateFormat;
     }
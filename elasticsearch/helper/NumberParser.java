@@ -0,0 +1,59 @@
+package com.wse.common.elasticsearch.helper;
+
+/**
+ * Detect numeric values by scanning their characters, without relying on NumberFormatException
+ */
+public final class NumberParser {
+
+    private NumberParser() {
+    }
+
+    /**
+     * @return true for an optionally signed decimal number with an optional exponent, for example "1.5e3"
+     */
+    public static final boolean isNumber(String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        int position = isSign(value.charAt(0)) ? 1 : 0;
+        int digits = 0;
+        boolean dot = false;
+        for (; position < value.length(); position++) {
+            char current = value.charAt(position);
+            if (isDigit(current)) {
+                digits++;
+            }
+            else if (current == '.' && !dot) {
+                dot = true;
+            }
+            else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (position < value.length() && (value.charAt(position) == 'e' || value.charAt(position) == 'E')) {
+            position++;
+            if (position < value.length() && isSign(value.charAt(position))) {
+                position++;
+            }
+            int exponentDigits = 0;
+            for (; position < value.length() && isDigit(value.charAt(position)); position++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return position == value.length();
+    }
+
+    private static final boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    private static final boolean isSign(char character) {
+        return character == '-' || character == '+';
+    }
+}
@@ -0,0 +1,41 @@
+package com.wse.common.elasticsearch.metrics;
+
+/**
+ * <pre>
+ * Instrumentation surface of the Elastic Search services, called on the hot path of every operation.
+ * Declare an implementation as a Spring bean to receive the measures (for example MicrometerElasticSearchMetrics of the
+ * optional micrometer source set, which needs micrometer-core), otherwise {@link NoOpElasticSearchMetrics} is used.
+ * Implementations must be thread-safe and must not block. Every argument is a primitive or a constant string,
+ * so calling the no-op implementation allocates nothing.
+ * The operation names are the ones of the circuit breakers: search, count, aggregate, suggest, index, bulk, update, delete, ...
+ * </pre>
+ */
+public interface ElasticSearchMetrics {
+
+    /**
+     * @param index     the index the operation runs on, null for cluster level operations
+     * @param success   false if the operation threw or the cluster answered with an error
+     */
+    void recordLatency(String operation, String index, long durationNanos, boolean success);
+
+    /**
+     * The time spent converting entities to or from JSON, not included in the network time
+     */
+    void recordSerialization(String operation, String index, long durationNanos);
+
+    void recordRequestBytes(String operation, String index, long bytes);
+
+    void recordResponseBytes(String operation, String index, long bytes);
+
+    void recordBulkItems(String index, int items, int failedItems);
+
+    /**
+     * A call rejected without reaching the cluster (open circuit breaker or too many concurrent searches)
+     */
+    void recordRejection(String operation, String index);
+
+    void asyncStarted(String operation);
+
+    void asyncFinished(String operation);
+
+}
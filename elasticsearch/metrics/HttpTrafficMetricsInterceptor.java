@@ -0,0 +1,97 @@
+package com.wse.common.elasticsearch.metrics;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * <pre>
+ * Record the size of the HTTP request and response bodies of the client (See {@link ElasticSearchMetrics})
+ * The operation and the index are read from the endpoint: the last segment starting with "_" ("/index/_search" is search),
+ * otherwise the method for the document endpoints ("PUT /index/type/id" is index).
+ * The bodies without a known length (chunked responses) are not recorded.
+ * </pre>
+ */
+public class HttpTrafficMetricsInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    private static final String OPERATION_ATTRIBUTE = "elasticsearch.metrics.operation";
+    private static final String INDEX_ATTRIBUTE = "elasticsearch.metrics.index";
+
+    private final ElasticSearchMetrics metrics;
+
+    public HttpTrafficMetricsInterceptor(ElasticSearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        String method = request.getRequestLine().getMethod();
+        String uri = request.getRequestLine().getUri();
+        int queryStart = uri.indexOf('?');
+        String path = queryStart >= 0 ? uri.substring(0, queryStart) : uri;
+
+        String index = null;
+        String operation = null;
+        int segmentStart = 0;
+        while (segmentStart < path.length()) {
+            int segmentEnd = path.indexOf('/', segmentStart);
+            segmentEnd = segmentEnd >= 0 ? segmentEnd : path.length();
+            if (segmentEnd > segmentStart) {
+                boolean endpoint = path.charAt(segmentStart) == '_';
+                if (index == null && operation == null && !endpoint) {
+                    index = path.substring(segmentStart, segmentEnd);
+                }
+                if (endpoint) {
+                    operation = path.substring(segmentStart + 1, segmentEnd);
+                }
+            }
+            segmentStart = segmentEnd + 1;
+        }
+        operation = operation != null ? operation : getDocumentOperation(method);
+
+        context.setAttribute(OPERATION_ATTRIBUTE, operation);
+        context.setAttribute(INDEX_ATTRIBUTE, index);
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && entity.getContentLength() >= 0) {
+                metrics.recordRequestBytes(operation, index, entity.getContentLength());
+            }
+        }
+    }
+
+    @Override
+    public void process(HttpResponse response, HttpContext context) {
+        Object operation = context.getAttribute(OPERATION_ATTRIBUTE);
+        Header contentLength = response.getFirstHeader(HTTP.CONTENT_LEN);
+        if (operation == null || contentLength == null) {
+            return;
+        }
+        try {
+            metrics.recordResponseBytes((String) operation, (String) context.getAttribute(INDEX_ATTRIBUTE),
+                    Long.parseLong(contentLength.getValue().trim()));
+        } catch (NumberFormatException e) {
+            // an invalid header, nothing to record
+        }
+    }
+
+    private static String getDocumentOperation(String method) {
+        switch (method) {
+            case "PUT":
+            case "POST":
+                return "index";
+            case "DELETE":
+                return "delete";
+            case "HEAD":
+                return "exists";
+            default:
+                return "get";
+        }
+    }
+
+}
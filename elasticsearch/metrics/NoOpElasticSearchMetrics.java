@@ -0,0 +1,45 @@
+package com.wse.common.elasticsearch.metrics;
+
+/**
+ * The default metrics, every measure is dropped
+ */
+public final class NoOpElasticSearchMetrics implements ElasticSearchMetrics {
+
+    public static final NoOpElasticSearchMetrics INSTANCE = new NoOpElasticSearchMetrics();
+
+    private NoOpElasticSearchMetrics() {
+    }
+
+    @Override
+    public void recordLatency(String operation, String index, long durationNanos, boolean success) {
+    }
+
+    @Override
+    public void recordSerialization(String operation, String index, long durationNanos) {
+    }
+
+    @Override
+    public void recordRequestBytes(String operation, String index, long bytes) {
+    }
+
+    @Override
+    public void recordResponseBytes(String operation, String index, long bytes) {
+    }
+
+    @Override
+    public void recordBulkItems(String index, int items, int failedItems) {
+    }
+
+    @Override
+    public void recordRejection(String operation, String index) {
+    }
+
+    @Override
+    public void asyncStarted(String operation) {
+    }
+
+    @Override
+    public void asyncFinished(String operation) {
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <pre>
+ * Grouped counts computed in one size-0 search request. Example:
+ * new AggregationQueryData().setQueryData(filter)
+ *         .terms("byCenter", "centerName", 50)
+ *         .terms("byStatus", "status", 10)
+ *         .dateHistogram("byMonth", "startDate", DateInterval.MONTH)
+ *         .cardinality("students", "studentName");
+ * Terms and cardinality aggregations need keyword (not analyzed text) fields
+ * </pre>
+ */
+public class AggregationQueryData {
+
+    private SearchQueryData queryData;
+
+    private List<AggregationParams> aggregations = new ArrayList<>();
+
+    public SearchQueryData getQueryData() {
+        return queryData;
+    }
+
+    /**
+     * @param queryData the search query restricting the aggregated documents, paging and sorting are ignored
+     */
+    public AggregationQueryData setQueryData(SearchQueryData queryData) {
+        this.queryData = queryData;
+        return this;
+    }
+
+    public List<AggregationParams> getAggregations() {
+        return aggregations;
+    }
+
+    public AggregationQueryData terms(String name, String field, int size) {
+        aggregations.add(new AggregationParams(name, field, AggregationType.TERMS).setSize(size));
+        return this;
+    }
+
+    public AggregationQueryData dateHistogram(String name, String field, DateInterval interval) {
+        aggregations.add(new AggregationParams(name, field, AggregationType.DATE_HISTOGRAM).setInterval(interval));
+        return this;
+    }
+
+    public AggregationQueryData range(String name, String field, RangeBucketParams... ranges) {
+        aggregations.add(new AggregationParams(name, field, AggregationType.RANGE).setRanges(Arrays.asList(ranges)));
+        return this;
+    }
+
+    public AggregationQueryData cardinality(String name, String field) {
+        aggregations.add(new AggregationParams(name, field, AggregationType.CARDINALITY));
+        return this;
+    }
+
+    public static class AggregationParams {
+        private String name;
+        private String field;
+        private AggregationType type;
+        private int size;
+        private DateInterval interval;
+        private List<RangeBucketParams> ranges;
+
+        public AggregationParams(String name, String field, AggregationType type) {
+            this.name = name;
+            this.field = field;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public AggregationType getType() {
+            return type;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public AggregationParams setSize(int size) {
+            this.size = size;
+            return this;
+        }
+
+        public DateInterval getInterval() {
+            return interval;
+        }
+
+        public AggregationParams setInterval(DateInterval interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public List<RangeBucketParams> getRanges() {
+            return ranges;
+        }
+
+        public AggregationParams setRanges(List<RangeBucketParams> ranges) {
+            this.ranges = ranges;
+            return this;
+        }
+    }
+
+    /**
+     * A numeric range bucket, from is inclusive and to is exclusive, a null bound is unbounded (but not both)
+     */
+    public static class RangeBucketParams {
+        private String key;
+        private Double from;
+        private Double to;
+
+        public RangeBucketParams() {}
+
+        public RangeBucketParams(String key, Double from, Double to) {
+            this.key = key;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public RangeBucketParams setKey(String key) {
+            this.key = key;
+            return this;
+        }
+
+        public Double getFrom() {
+            return from;
+        }
+
+        public RangeBucketParams setFrom(Double from) {
+            this.from = from;
+            return this;
+        }
+
+        public Double getTo() {
+            return to;
+        }
+
+        public RangeBucketParams setTo(Double to) {
+            this.to = to;
+            return this;
+        }
+    }
+
+    public static enum AggregationType {
+        TERMS, DATE_HISTOGRAM, RANGE, CARDINALITY
+    }
+
+    public static enum DateInterval {
+        DAY, WEEK, MONTH, QUARTER, YEAR
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of an {@link AggregationQueryData}, looked up by aggregation name
+ */
+public class AggregationResultData {
+
+    private Map<String, List<Bucket>> buckets = new HashMap<>();
+
+    private Map<String, Long> cardinalities = new HashMap<>();
+
+    private long numberOfRecords;
+
+    /**
+     * @return the buckets of a terms, date histogram or range aggregation, in the order returned by Elastic Search
+     */
+    public List<Bucket> getBuckets(String aggregationName) {
+        List<Bucket> aggregationBuckets = buckets.get(aggregationName);
+        return aggregationBuckets != null ? aggregationBuckets : Collections.emptyList();
+    }
+
+    public void setBuckets(String aggregationName, List<Bucket> aggregationBuckets) {
+        buckets.put(aggregationName, aggregationBuckets);
+    }
+
+    /**
+     * @return the approximate number of distinct values of a cardinality aggregation
+     */
+    public long getCardinality(String aggregationName) {
+        Long cardinality = cardinalities.get(aggregationName);
+        return cardinality != null ? cardinality : 0L;
+    }
+
+    public void setCardinality(String aggregationName, long cardinality) {
+        cardinalities.put(aggregationName, cardinality);
+    }
+
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    public void setNumberOfRecords(long numberOfRecords) {
+        this.numberOfRecords = numberOfRecords;
+    }
+
+    public static class Bucket {
+        private String key;
+        private long docCount;
+        private Object from;
+        private Object to;
+
+        public Bucket() {}
+
+        public Bucket(String key, long docCount) {
+            this.key = key;
+            this.docCount = docCount;
+        }
+
+        /**
+         * @return the term, the formatted date of a date histogram or the key of a range
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public Bucket setKey(String key) {
+            this.key = key;
+            return this;
+        }
+
+        public long getDocCount() {
+            return docCount;
+        }
+
+        public Bucket setDocCount(long docCount) {
+            this.docCount = docCount;
+            return this;
+        }
+
+        /**
+         * @return the lower bound of a range bucket, null for other buckets
+         */
+        public Object getFrom() {
+            return from;
+        }
+
+        public Bucket setFrom(Object from) {
+            this.from = from;
+            return this;
+        }
+
+        /**
+         * @return the upper bound of a range bucket, null for other buckets
+         */
+        public Object getTo() {
+            return to;
+        }
+
+        public Bucket setTo(Object to) {
+            this.to = to;
+            return this;
+        }
+    }
+
+}
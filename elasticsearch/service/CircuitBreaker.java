@@ -0,0 +1,120 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * Count based circuit breaker: CLOSED while the recent calls are mostly fast and successful,
+ * OPEN (every call rejected) for a while once the failure or slow call rate goes over its threshold,
+ * then HALF_OPEN: a few trial calls decide if it closes again or opens for another period.
+ * </pre>
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte OUTCOME_FAILED = 1;
+    private static final byte OUTCOME_SLOW = 2;
+
+    private final ResilienceOptions options;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    // a ring of the outcomes of the recent calls, with the running counts
+    private final byte[] outcomes;
+    private int next;
+    private int calls;
+    private int failedCalls;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int trialPermits;
+    private int trialSuccesses;
+
+    CircuitBreaker(ResilienceOptions options) {
+        this.options = options;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(options.getSlowCallDurationMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(options.getOpenDurationMillis());
+        this.outcomes = new byte[Math.max(1, options.getSlidingWindowSize())];
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return false if the call must be rejected
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialPermits = Math.max(1, options.getHalfOpenTrialCalls());
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialPermits == 0) {
+                return false;
+            }
+            trialPermits--;
+        }
+        return true;
+    }
+
+    synchronized void onResult(boolean failed, long durationNanos) {
+        boolean slow = durationNanos > slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open();
+            }
+            else if (++trialSuccesses >= Math.max(1, options.getHalfOpenTrialCalls())) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // a call started before the breaker opened
+            return;
+        }
+        record(failed, slow);
+        if (calls >= options.getMinimumCalls()
+                && (failedCalls * 100 >= options.getFailureRateThreshold() * calls
+                        || slowCalls * 100 >= options.getSlowCallRateThreshold() * calls)) {
+            open();
+        }
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (calls == outcomes.length) {
+            byte oldest = outcomes[next];
+            failedCalls -= (oldest & OUTCOME_FAILED) != 0 ? 1 : 0;
+            slowCalls -= (oldest & OUTCOME_SLOW) != 0 ? 1 : 0;
+        }
+        else {
+            calls++;
+        }
+        outcomes[next] = (byte) ((failed ? OUTCOME_FAILED : 0) | (slow ? OUTCOME_SLOW : 0));
+        failedCalls += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        calls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.wse.common.elasticsearch.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.rest.RestStatus;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceUnavailableException;
+
+/**
+ * <pre>
+ * Resilience layer around the cluster calls (See {@link ResilienceOptions}):
+ * a circuit breaker per operation, rejection of the searches over the concurrency limit,
+ * and the last results of the searches kept to be served as stale while the cluster is unavailable.
+ * Without options every call goes straight to the cluster.
+ * </pre>
+ */
+final class ClusterCallGuard {
+
+    interface GuardedCall<T> {
+        T execute() throws IOException;
+    }
+
+    private final ResilienceOptions options;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Semaphore searchPermits;
+    private final Cache<String, Object> staleResults;
+
+    ClusterCallGuard(ResilienceOptions options) {
+        this.options = options;
+        this.searchPermits = options != null && options.getMaxConcurrentSearches() > 0
+                ? new Semaphore(options.getMaxConcurrentSearches()) : null;
+        this.staleResults = options != null && options.isServeStaleResults()
+                ? CacheBuilder.newBuilder().maximumSize(options.getStaleResultsSize())
+                        .expireAfterWrite(options.getStaleResultsTtlMillis(), TimeUnit.MILLISECONDS).build()
+                : null;
+    }
+
+    /**
+     * @param search    true for the searches, which are subject to the concurrency limit
+     * @exception       ElasticSearchServiceUnavailableException if the call is rejected without calling the cluster
+     */
+    <T> T call(String operation, boolean search, GuardedCall<T> call) throws IOException {
+        Permit permit = acquire(operation, search);
+        boolean failed = true;
+        try {
+            T result = call.execute();
+            failed = false;
+            return result;
+        }
+        catch (ElasticsearchException e) {
+            // a rejected query or a missing document means the cluster works, only the server errors count as failures
+            failed = isServerError(e);
+            throw e;
+        }
+        finally {
+            permit.release(failed);
+        }
+    }
+
+    /**
+     * Acquire a permit for an asynchronous call, which must be released by its listener
+     * @exception   ElasticSearchServiceUnavailableException if the call is rejected without calling the cluster
+     */
+    Permit acquire(String operation, boolean search) {
+        if (options == null) {
+            return Permit.NONE;
+        }
+        CircuitBreaker breaker = breakers.computeIfAbsent(operation, name -> new CircuitBreaker(options));
+        if (search && searchPermits != null && !searchPermits.tryAcquire()) {
+            throw new ElasticSearchServiceUnavailableException("Too many concurrent searches, the " + operation + " is rejected");
+        }
+        if (!breaker.tryAcquire()) {
+            if (search && searchPermits != null) {
+                searchPermits.release();
+            }
+            throw new ElasticSearchServiceUnavailableException("The circuit breaker of the " + operation + " operation is open");
+        }
+        return new Permit(breaker, search ? searchPermits : null);
+    }
+
+    boolean isServingStaleResults() {
+        return staleResults != null;
+    }
+
+    void putStaleResult(String key, Object result) {
+        if (staleResults != null && key != null && result != null) {
+            staleResults.put(key, result);
+        }
+    }
+
+    Object getStaleResult(String key) {
+        return staleResults != null && key != null ? staleResults.getIfPresent(key) : null;
+    }
+
+    static boolean isServerError(Exception e) {
+        if (!(e instanceof ElasticsearchException)) {
+            return true;
+        }
+        RestStatus status = ((ElasticsearchException) e).status();
+        return status.getStatus() >= 500 || status == RestStatus.TOO_MANY_REQUESTS;
+    }
+
+    static final class Permit {
+        private static final Permit NONE = new Permit(null, null);
+
+        private final CircuitBreaker breaker;
+        private final Semaphore searchPermits;
+        private final long startNanos;
+
+        private Permit(CircuitBreaker breaker, Semaphore searchPermits) {
+            this.breaker = breaker;
+            this.searchPermits = searchPermits;
+            this.startNanos = breaker != null ? System.nanoTime() : 0;
+        }
+
+        void release(boolean failed) {
+            if (breaker == null) {
+                return;
+            }
+            if (searchPermits != null) {
+                searchPermits.release();
+            }
+            breaker.onResult(failed, System.nanoTime() - startNanos);
+        }
+    }
+
+}
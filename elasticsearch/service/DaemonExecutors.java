@@ -0,0 +1,30 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * <pre>
+ * The default executors of the options, on daemon threads named after their use so they never keep the JVM alive
+ * The schedulers only trigger the work, the requests themselves are sent asynchronously by the client
+ * </pre>
+ */
+final class DaemonExecutors {
+
+    private static final String THREAD_NAME_PREFIX = "elasticsearch-";
+
+    private DaemonExecutors() {
+    }
+
+    static ThreadFactory threadFactory(String name) {
+        return new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + name + "-%d").setDaemon(true).build();
+    }
+
+    static ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(threadFactory(name));
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * <pre>
+ * The sources of the documents read by id, keyed by index and id
+ * The sources are kept instead of the entities, so a caller modifying a returned entity never changes the cached document
+ * Every write of a document moves it to a new generation: a read started before the write (see {@link #getGeneration()})
+ * cannot put its older source back, the eviction stays in the cache as an empty entry until it expires
+ * </pre>
+ */
+final class DocumentNearCache {
+
+    private static final char KEY_SEPARATOR = '/';
+
+    private final Cache<String, CachedSource> sources;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    // the reads and the writes of a key are compared and replaced atomically, the lookups are not locked
+    private final Object writeLock = new Object();
+
+    DocumentNearCache(NearCacheOptions options) {
+        this.sources = CacheBuilder.newBuilder()
+                .maximumSize(options.getMaximumSize())
+                .expireAfterWrite(options.getTimeToLiveMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return the generation to pass to {@link #put(String, String, String, long)}, taken before the read is sent
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return the source of the document, null if it is not cached
+     */
+    String get(String index, String id) {
+        CachedSource cachedSource = sources.getIfPresent(key(index, id));
+        return cachedSource != null ? cachedSource.source : null;
+    }
+
+    /**
+     * Cache a source read from the cluster, ignored if the document was written or evicted since the read started
+     * (a document without source, source disabled in the mappings, is not cached)
+     */
+    void put(String index, String id, String source, long readGeneration) {
+        if (source == null) {
+            return;
+        }
+        String key = key(index, id);
+        synchronized (writeLock) {
+            CachedSource current = sources.getIfPresent(key);
+            if (current == null || current.generation <= readGeneration) {
+                sources.put(key, new CachedSource(source, readGeneration));
+            }
+        }
+    }
+
+    /**
+     * Cache the source of a document written by this instance, it replaces the sources of the reads still in flight
+     */
+    void write(String index, String id, String source) {
+        synchronized (writeLock) {
+            sources.put(key(index, id), new CachedSource(source, generation.incrementAndGet()));
+        }
+    }
+
+    void invalidate(String index, String id) {
+        synchronized (writeLock) {
+            sources.put(key(index, id), new CachedSource(null, generation.incrementAndGet()));
+        }
+    }
+
+    private static String key(String index, String id) {
+        return index + KEY_SEPARATOR + id;
+    }
+
+    private static final class CachedSource {
+        // null for an evicted document
+        private final String source;
+        private final long generation;
+
+        CachedSource(String source, long generation) {
+            this.source = source;
+            this.generation = generation;
+        }
+    }
+
+}
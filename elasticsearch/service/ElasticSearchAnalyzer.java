@@ -1,5 +1,7 @@
 package com.wse.common.elasticsearch.service;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -13,7 +15,7 @@ public class ElasticSearchAnalyzer {
     private Analyzer analyzer;
     
     @JsonInclude(Include.NON_NULL)
-    private Filter filter;
+    private Map<String, Filter> filter;
     
     public Analyzer getAnalyzer() {
         return analyzer;
@@ -21,10 +23,10 @@ public class ElasticSearchAnalyzer {
     public void setAnalyzer(Analyzer analyzer) {
         this.analyzer = analyzer;
     }
-    public Filter getFilter() {
+    public Map<String, Filter> getFilter() {
         return filter;
     }
-    public void setFilter(Filter filter) {
+    public void setFilter(Map<String, Filter> filter) {
         this.filter = filter;
     }
 
@@ -32,6 +34,16 @@ public class ElasticSearchAnalyzer {
         // TODO this can be only used for the default
         @JsonProperty("default")
         private CustomAnalyzer customAnalyzer;
+        
+        // index time analyzer of the type-ahead fields
+        @JsonInclude(Include.NON_NULL)
+        @JsonProperty(ElasticSearchAnalyzerFactory.AUTOCOMPLETE_ANALYZER)
+        private CustomAnalyzer autocompleteAnalyzer;
+        
+        // search time analyzer of the type-ahead fields, the query text must not be split into n-grams
+        @JsonInclude(Include.NON_NULL)
+        @JsonProperty(ElasticSearchAnalyzerFactory.AUTOCOMPLETE_SEARCH_ANALYZER)
+        private CustomAnalyzer autocompleteSearchAnalyzer;
 
         public CustomAnalyzer getCustomAnalyzer() {
             return customAnalyzer;
@@ -39,6 +51,18 @@ public class ElasticSearchAnalyzer {
         public void setCustomAnalyzer(CustomAnalyzer customAnalyzer) {
             this.customAnalyzer = customAnalyzer;
         }
+        public CustomAnalyzer getAutocompleteAnalyzer() {
+            return autocompleteAnalyzer;
+        }
+        public void setAutocompleteAnalyzer(CustomAnalyzer autocompleteAnalyzer) {
+            this.autocompleteAnalyzer = autocompleteAnalyzer;
+        }
+        public CustomAnalyzer getAutocompleteSearchAnalyzer() {
+            return autocompleteSearchAnalyzer;
+        }
+        public void setAutocompleteSearchAnalyzer(CustomAnalyzer autocompleteSearchAnalyzer) {
+            this.autocompleteSearchAnalyzer = autocompleteSearchAnalyzer;
+        }
     }
     
     public static class CustomAnalyzer {
@@ -70,7 +94,9 @@ public class ElasticSearchAnalyzer {
     
     public static class Filter {
         private String type;
+        @JsonProperty("min_gram")
         private int minGram;
+        @JsonProperty("max_gram")
         private int maxGram;
         public String getType() {
             return type;
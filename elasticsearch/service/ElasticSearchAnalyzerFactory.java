@@ -9,21 +9,48 @@ import org.springframework.util.CollectionUtils;
 
 import com.wse.common.elasticsearch.service.ElasticSearchAnalyzer.Analyzer;
 import com.wse.common.elasticsearch.service.ElasticSearchAnalyzer.CustomAnalyzer;
+import com.wse.common.elasticsearch.service.ElasticSearchAnalyzer.Filter;
 
 public final class ElasticSearchAnalyzerFactory {
     
+    public static final String AUTOCOMPLETE_ANALYZER = "autocomplete";
+    public static final String AUTOCOMPLETE_SEARCH_ANALYZER = "autocomplete_search";
+    public static final String AUTOCOMPLETE_FILTER = "autocomplete_filter";
+    
+    static final int DEFAULT_MIN_GRAM = 1;
+    static final int DEFAULT_MAX_GRAM = 20;
+    
     public static final ElasticSearchAnalyzer getAnalyzer(AnalyzerType analyzerType) {
+        return getAnalyzer(analyzerType, DEFAULT_MIN_GRAM, DEFAULT_MAX_GRAM);
+    }
+    
+    /**
+     * <pre>
+     * The AUTO_COMPLETE analysis keeps the default analyzer and adds the "autocomplete" analyzer, 
+     * which splits every word into edge n-grams of minGram to maxGram characters at index time,
+     * and the "autocomplete_search" analyzer to be used as search_analyzer for the same fields.
+     * A prefix is then a plain term lookup instead of a match_phrase_prefix expansion at query time.
+     * </pre>
+     */
+    public static final ElasticSearchAnalyzer getAnalyzer(AnalyzerType analyzerType, int minGram, int maxGram) {
         ElasticSearchAnalyzer analysis = new ElasticSearchAnalyzer();
         Analyzer analyzer = new Analyzer();
         CustomAnalyzer customAnalyzer = new CustomAnalyzer();
+        configAnalyzerProperties(customAnalyzer, Tokenizer.KEYWORD, Collections.emptyList());
         
         switch(analyzerType) {
             case DEFAULT:
             default:
-                configAnalyzerProperties(customAnalyzer, Collections.emptyList());
                 break;
-            case AUTO_COMPLETE: // TODO
-                configAnalyzerProperties(customAnalyzer, Arrays.asList("autocomplete_filter"));
+            case AUTO_COMPLETE:
+                CustomAnalyzer autocompleteAnalyzer = new CustomAnalyzer();
+                configAnalyzerProperties(autocompleteAnalyzer, Tokenizer.STANDARD, Arrays.asList(AUTOCOMPLETE_FILTER));
+                CustomAnalyzer autocompleteSearchAnalyzer = new CustomAnalyzer();
+                configAnalyzerProperties(autocompleteSearchAnalyzer, Tokenizer.STANDARD, Collections.emptyList());
+                
+                analyzer.setAutocompleteAnalyzer(autocompleteAnalyzer);
+                analyzer.setAutocompleteSearchAnalyzer(autocompleteSearchAnalyzer);
+                analysis.setFilter(Collections.singletonMap(AUTOCOMPLETE_FILTER, buildEdgeNGramFilter(minGram, maxGram)));
                 break;
         }
         
@@ -32,12 +59,20 @@ public final class ElasticSearchAnalyzerFactory {
         return analysis;
     }
     
-    private static void configAnalyzerProperties(CustomAnalyzer customAnalyzer, List<String> customFilters) {
+    private static void configAnalyzerProperties(CustomAnalyzer customAnalyzer, Tokenizer tokenizer, List<String> customFilters) {
         List<String> tokenFilter = buildTokenFilters(customFilters);
-        customAnalyzer.setTokenizer(Tokenizer.KEYWORD.tokenName);
+        customAnalyzer.setTokenizer(tokenizer.tokenName);
         customAnalyzer.setFilter(tokenFilter.toArray(new String[tokenFilter.size()]));
     }
     
+    private static Filter buildEdgeNGramFilter(int minGram, int maxGram) {
+        Filter filter = new Filter();
+        filter.setType(TokenFilter.EDGE_NGRAM.filterName);
+        filter.setMinGram(minGram);
+        filter.setMaxGram(maxGram);
+        return filter;
+    }
+    
     private static List<String> buildTokenFilters(List<String> customFilters) {
         List<String> filters = new ArrayList<>(Arrays.asList(TokenFilter.ASCII_FOLDING.filterName, TokenFilter.LOWERCASE.filterName));
         if (!CollectionUtils.isEmpty(customFilters)) {
@@ -68,7 +103,7 @@ public final class ElasticSearchAnalyzerFactory {
     }
     
     public static enum TokenFilter {
-        STANDARD("standard"), ASCII_FOLDING("asciifolding"), LOWERCASE("lowercase");
+        STANDARD("standard"), ASCII_FOLDING("asciifolding"), LOWERCASE("lowercase"), EDGE_NGRAM("edge_ngram");
         
         private String filterName;
         
@@ -1,12 +1,15 @@
 package com.wse.common.elasticsearch.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 
 import com.google.gson.JsonObject;
 import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
 
 /**
  * @author dat.tt2
@@ -51,19 +54,70 @@ public interface ElasticSearchService <E> {
      */
     void initData(final String indexName, final String documentType, final Object mappings, final Map<String, E> entityMapWithId);
     
+    /**
+     * <pre>
+     * Delete index (if exists), create a new one with the settings of a profile and then make bulk indexing
+     * By default, this uses asynchronous operations
+     * </pre>
+     * @param indexName         the name of the index
+     * @param documentType      the document type of the index
+     * @param mappings          the field mappings for the index (either in Map format or JSON format)
+     * @param profile           the index settings of the workload (See {@link IndexSettingsProfile})
+     * @param entityMapWithId   a map contains the documents with keys are entity IDs
+     */
+    void initData(final String indexName, final String documentType, final Object mappings, final IndexSettingsProfile profile, 
+            final Map<String, E> entityMapWithId);
+    
     /**
      * <pre>
      * Configure index settings with a specific type. Usually one index has only one type.
      * By default, calling this function first before other document manipulation related functions
+     * It replaces the default index handle (See {@link #getIndexHandle()}), the handles taken before keep their index
      * </pre>
      * @param indexName     the name of the index that will be used for all later actions
      * @param documentType  the document type for this index.
      */
     void configureIndex(final String indexName, final String documentType);
     
+    /**
+     * <pre>
+     * Create a handle of an index, with the refresh policy of the service, the default routing and the Gson mapper of the service
+     * A handle is immutable and does not change the index configured on the service, so a service can work on many indices
+     * from many threads at the same time
+     * </pre>
+     * @param indexName     the name of the index
+     * @param documentType  the document type of the index
+     * @return the handle of the index
+     */
+    IndexHandle<E> indexHandle(final String indexName, final String documentType);
+    
+    /**
+     * <pre>
+     * Get the handle of the index configured by {@link #configureIndex(String, String)}, used by all the functions without a handle
+     * Throw ElasticSearchServiceException if no index is configured
+     * </pre>
+     * @return the default index handle
+     */
+    IndexHandle<E> getIndexHandle();
+    
+    /**
+     * <pre>
+     * Open a time partitioned index: the documents are written to monthly or yearly indices (alias-yyyy.MM or alias-yyyy)
+     * picked by their date property, and the searches read only the partitions overlapping the ranges of that property
+     * The partitions are created on their first write and are all behind the alias, which the other searches can read
+     * See {@link TimePartitionedIndex}
+     * </pre>
+     * @param alias         the alias over all the partitions, also the prefix of their names
+     * @param documentType  the document type of the partitions
+     * @param options       the date property, the granularity, the retention and the mappings of the partitions
+     * @return the time partitioned index, with the partitions which already exist
+     */
+    TimePartitionedIndex<E> timePartitionedIndex(final String alias, final String documentType, final TimePartitionOptions options);
+    
     /**
      * <pre>
      * Check if an index exists or not
+     * It does not change the index configured on the service
      * </pre>
      * @param indexName     the name of the index
      * @param documentType  the document type of the index
@@ -90,6 +144,40 @@ public interface ElasticSearchService <E> {
      */
     boolean existDocument(final String documentName, final String documentType, final String documentId);
     
+    /**
+     * <pre>
+     * Get a document by id, real-time (the document is found as soon as it is written, without waiting for a refresh)
+     * The document is read from the near cache if it is enabled, see {@link #setNearCacheOptions(NearCacheOptions)}
+     * </pre>
+     * @param id    the id of the document
+     * @return  the entity, null if the document does not exist
+     */
+    E get(final String id);
+    
+    /**
+     * <pre>
+     * Get documents by id with one multi-get request, real-time
+     * The documents found in the near cache are not requested
+     * </pre>
+     * @param ids   the ids of the documents
+     * @return  the entities by id in the order of the ids, without the documents which do not exist
+     */
+    Map<String, E> getAll(final Collection<String> ids);
+    
+    /**
+     * <pre>
+     * Get a document by id asynchronously, real-time
+     * The concurrent calls are batched: the gets arriving within a short delay are sent as one multi-get request,
+     * so many threads looking up single documents at the same time share a few requests
+     * The document is read from the near cache if it is enabled, without waiting for a batch
+     * Example:
+     *     EnrollmentDocument enrollment = service.getAsync(id).join();
+     * </pre>
+     * @param id    the id of the document
+     * @return  the entity, completed with null if the document does not exist
+     */
+    CompletableFuture<E> getAsync(final String id);
+    
     /**
      * <pre>
      * Create a new index with mappings
@@ -101,6 +189,20 @@ public interface ElasticSearchService <E> {
      * @param mappings      mappings for the index with the document type (either in Map format or JSON format)
      */
     void createIndexWithMappings(final String indexName, final String documentType, final Object mappings);
+    
+    /**
+     * <pre>
+     * Create a new index with mappings and the settings of a workload profile: shards, replicas, refresh interval,
+     * translog durability, codec and merge policy, next to the analysis settings
+     * An index whose mappings have a long or date "updated_at" field is sorted on it in descending order, the default order
+     * of the searches, unless the profile sets another index sort or disables it (See {@link IndexSettingsProfile#setTimestampSort(boolean)})
+     * </pre>
+     * @param indexName     the name of the index
+     * @param documentType  the document type
+     * @param mappings      mappings for the index with the document type (either in Map format or JSON format)
+     * @param profile       the index settings of the workload, for example {@link IndexSettingsProfile#writeHeavy()}
+     */
+    void createIndexWithMappings(final String indexName, final String documentType, final Object mappings, final IndexSettingsProfile profile);
 
     /**
      * <pre>
@@ -258,6 +360,60 @@ public interface ElasticSearchService <E> {
      */
     long count(final JsonObject request);
     
+    /**
+     * <pre>
+     * Compute grouped counts (terms, date histogram, range and cardinality aggregations) in one size-0 request
+     * Use this over issuing one {@link #count(SearchQueryData)} per group
+     * This function gets default indexName and documentType from {@link #configureIndex(String, String)}
+     * </pre>
+     * @param aggregationData   the aggregations and the search query restricting the documents (See {@link AggregationQueryData})
+     * @return                  the buckets and values of each aggregation, by aggregation name
+     * @exception               ElasticSearchServiceException
+     */
+    AggregationResultData aggregate(final AggregationQueryData aggregationData);
+    
+    /**
+     * <pre>
+     * Type-ahead suggestions from a completion field, a precomputed lookup instead of a prefix query
+     * Fields mapped with the "autocomplete" type by {@link #createMappingInfo(Map)} have a completion sub-field named "suggest"
+     * This function gets default indexName and documentType from {@link #configureIndex(String, String)}
+     * </pre>
+     * @param field     the completion field, for example "courseName.suggest"
+     * @param prefix    the text typed so far
+     * @param size      the maximum number of suggestions
+     * @return          the distinct suggested values
+     * @exception       ElasticSearchServiceException
+     */
+    List<String> suggest(final String field, final String prefix, final int size);
+    
+    /**
+     * <pre>
+     * Build an in-process prefix index for low cardinality fields, loaded from a terms aggregation
+     * Then the values written successfully through this service to the same index are added to it
+     * Usually called once at startup, calling it again reloads the values from the cluster
+     * The fields must be aggregatable (keyword) and be readable properties of the entity
+     * This function gets default indexName and documentType from {@link #configureIndex(String, String)}
+     * </pre>
+     * @param maxValuesPerField the maximum number of distinct values loaded for each field
+     * @param fields            the fields to index locally
+     * @exception               ElasticSearchServiceException
+     */
+    void enableLocalSuggestions(final int maxValuesPerField, final String... fields);
+    
+    /**
+     * <pre>
+     * Type-ahead suggestions answered from memory, without any request to the cluster
+     * Only the fields enabled for the current default index are answered
+     * See {@link #enableLocalSuggestions(int, String...)}
+     * </pre>
+     * @param field     a field enabled for local suggestions
+     * @param prefix    the text typed so far (case and accent insensitive)
+     * @param size      the maximum number of suggestions
+     * @return          the matching values in alphabetical order
+     * @exception       ElasticSearchServiceException if the field is not enabled
+     */
+    List<String> suggestLocally(final String field, final String prefix, final int size);
+    
     /**
      * <pre>
      * Search all
@@ -287,6 +443,7 @@ public interface ElasticSearchService <E> {
      * Multiple field matching search
      * This function gets default indexName and documentType from {@link #configureIndex(String, String)}
      * Can only search against indexed fields
+     * The matches are not counted, so a search sorted like the index stops early. Use {@link #searchWithRecordCount(SearchQueryData)} for the total
      * @param queryData     the search query. Example:
      * {
           "searchParams" : [ {
@@ -316,6 +473,31 @@ public interface ElasticSearchService <E> {
      */
     SearchResultData<E> searchWithRecordCount(final SearchQueryData queryData);
     
+    /**
+     * <pre>
+     * Same as {@link #searchWithRecordCount(SearchQueryData)}, but the hits are decoded directly from the HTTP response stream
+     * Recommend using this for large pages: less allocation and a bounded response buffer
+     * This function gets default indexName and documentType from {@link #configureIndex(String, String)}
+     * See {@link #setStreamingSearchOptions(StreamingSearchOptions)} for the buffer limit and parallel decoding
+     * </pre>
+     * @param queryData the search query    (See {@link #search(SearchQueryData)})
+     * @return          all the documents that match the search criteria
+     * @exception       ElasticSearchServiceException
+     */
+    SearchResultData<E> streamSearch(final SearchQueryData queryData);
+    
+    /**
+     * <pre>
+     * Multiple field match search which keeps the raw source of each hit and decodes it only when accessed
+     * Recommend using this for wide pages when only a few rows or fields are read (See {@link LazySearchResultData})
+     * This function gets default indexName and documentType from {@link #configureIndex(String, String)}
+     * </pre>
+     * @param queryData the search query    (See {@link #search(SearchQueryData)})
+     * @return          all the documents that match the search criteria, not decoded yet
+     * @exception       ElasticSearchServiceException
+     */
+    LazySearchResultData<E> searchLazily(final SearchQueryData queryData);
+    
     /**
      * <pre>
      * Delete the entity if exists, then index a new one
@@ -350,6 +532,18 @@ public interface ElasticSearchService <E> {
      */
     Map<String, Map<String, Object>> createMappingInfo(final List<String> fieldsToIndex);
     
+    /**
+     * <pre>
+     * Generate the mappings of the current document entity from its fields and their {@link MappedField} annotations:
+     * keyword or text (with a keyword sub-field to sort on), doc values, norms and index options, ISO or epoch_millis dates
+     * and objects kept only in the source. The mappings are generated once per entity type
+     * The entities with java.util.Date fields are written with a handle using {@link EntityMappingGenerator#epochMillisCodec()}
+     * See {@link EntityMappingGenerator}
+     * </pre>
+     * @return  a map containing index mapping information, which must not be modified
+     */
+    Map<String, Map<String, Object>> createMappingInfo();
+    
     /**
      * <pre>
      * Create a mapping file for the current document entity, specifying which field would be indexed
@@ -411,7 +605,7 @@ public interface ElasticSearchService <E> {
     
     /**
      * <pre>
-     * Set the refresh policy for the entire service
+     * Set the refresh policy for the entire service: the default index handle and the handles created later
      * By default, it should be NONE for better performance
      * </pre>
      * @param policy    the refresh policy
@@ -419,4 +613,102 @@ public interface ElasticSearchService <E> {
      */
     void setRefreshPolicy(RefreshPolicy policy);
     
+    /**
+     * <pre>
+     * Set the granularity which RANGE_MATCH date bounds are rounded to
+     * Rounded bounds make identical queries produce the same request, so the cluster caches can be reused
+     * A "now" expression with a finer offset keeps its precision ("now-15m" is not rounded to the day)
+     * By default (or null), it is NONE: the bounds are sent as they are
+     * </pre>
+     * @param rounding  the date rounding. @See DateRounding
+     */
+    void setDateRangeRounding(DateRounding rounding);
+    
+    /**
+     * <pre>
+     * Set the options used by {@link #streamSearch(SearchQueryData)}
+     * </pre>
+     * @param options   the maximum response buffer, the parallel decoding threshold and pool
+     */
+    void setStreamingSearchOptions(StreamingSearchOptions options);
+    
+    /**
+     * <pre>
+     * Enable hedged requests for {@link #search(SearchQueryData)}, {@link #searchWithRecordCount(SearchQueryData)}
+     * and {@link #count(SearchQueryData)}: a search slower than a percentile of the recent latencies is duplicated
+     * through another coordinating node and the first response wins
+     * The duplicate may read the same shard copies as the first request, adaptive replica selection makes it likelier
+     * to avoid a busy copy
+     * This trades a few percent of extra search load for a lower tail latency
+     * By default, it is disabled
+     * </pre>
+     * @param options   the latency percentile, the delay bounds and the maximum number of concurrent duplicates, null to disable
+     */
+    void setHedgedSearchOptions(HedgedSearchOptions options);
+    
+    /**
+     * <pre>
+     * Set the resilience layer around the cluster calls: a circuit breaker per operation driven by the error rate and latency,
+     * the rejection of the searches over a concurrency limit and, optionally, the last result of
+     * {@link #searchWithRecordCount(SearchQueryData)} and {@link #streamSearch(SearchQueryData)} served as stale
+     * (See {@link SearchResultData#isStale()}) while the cluster is unavailable
+     * The rejected calls fail immediately with ElasticSearchServiceUnavailableException
+     * By default, the cluster is called without any protection; with options the breakers are enabled, while the concurrency
+     * limit (which applies to the searches returning hits) and the stale results must be enabled explicitly
+     * </pre>
+     * @param options   the thresholds and limits, null to call the cluster without any protection
+     */
+    void setResilienceOptions(ResilienceOptions options);
+    
+    /**
+     * <pre>
+     * Set the slow query log: a sample of the searches slower than the threshold is logged with the translated query,
+     * the index, the took and round trip times and the shard counts, and a sample of those is profiled in the background
+     * By default, the searches over 1 second are logged and none is profiled
+     * </pre>
+     * @param options   the threshold and the sampling rates, null to disable the log
+     */
+    void setSlowQueryLogOptions(SlowQueryLogOptions options);
+    
+    /**
+     * <pre>
+     * The recent slow searches recorded by the slow query log, with their profile if they were profiled
+     * See {@link #setSlowQueryLogOptions(SlowQueryLogOptions)}
+     * </pre>
+     * @return  the slow searches, the most recent first
+     */
+    List<SlowQueryRecord> getSlowQueries();
+    
+    /**
+     * <pre>
+     * Set the near cache of the documents read by id: the sources read by get() and getAll() are kept in memory,
+     * bounded in number and time to live
+     * The documents indexed synchronously by this instance replace the cached sources, the other writes of this instance
+     * evict them, the writes of the other instances are seen once the cached sources expire
+     * The near cache is disabled by default
+     * </pre>
+     * @param options   the size and the time to live, null to disable the near cache
+     */
+    void setNearCacheOptions(NearCacheOptions options);
+    
+    /**
+     * <pre>
+     * Set the batching of getAsync(): the maximum number of gets of a multi-get request and the maximum delay before sending it
+     * By default, up to 100 gets are sent together after at most 2 milliseconds, and the futures are completed on the common
+     * fork join pool (never on the I/O threads of the client)
+     * </pre>
+     * @param options   the batch size and delay, null to restore the defaults
+     */
+    void setGetBatchingOptions(GetBatchingOptions options);
+    
+    /**
+     * <pre>
+     * Enable adaptive replica selection on the cluster (a persistent cluster setting)
+     * The coordinating nodes then send each shard request to the copy with the best response time and queue size
+     * instead of round robin, which avoids the slow or busy nodes
+     * </pre>
+     * @exception   ElasticSearchServiceException
+     */
+    void enableAdaptiveReplicaSelection();
+    
 }
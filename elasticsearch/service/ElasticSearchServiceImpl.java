@@ -1,21 +1,28 @@
 package com.wse.common.elasticsearch.service;
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.DocWriteRequest;
@@ -28,35 +35,39 @@ import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.HttpAsyncResponseConsumerFactory.HeapBufferedResponseConsumerFactory;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.DisMaxQueryBuilder;
-import org.elasticsearch.index.query.ExistsQueryBuilder;
-import org.elasticsearch.index.query.MatchPhrasePrefixQueryBuilder;
-import org.elasticsearch.index.query.MatchPhraseQueryBuilder;
-import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.index.query.RangeQueryBuilder;
-import org.elasticsearch.index.query.TermQueryBuilder;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilders;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestionBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,12 +77,17 @@ import org.springframework.util.StringUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.wse.common.elasticsearch.config.ElasticSearchClientRegistry;
 import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
-import com.wse.common.elasticsearch.helper.DateFormatter;
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceUnavailableException;
+import com.wse.common.elasticsearch.metrics.ElasticSearchMetrics;
+import com.wse.common.elasticsearch.metrics.NoOpElasticSearchMetrics;
+import com.wse.common.elasticsearch.service.AggregationQueryData.AggregationParams;
 import com.wse.common.elasticsearch.service.ElasticSearchAnalyzerFactory.AnalyzerType;
-import com.wse.common.elasticsearch.service.SearchQueryData.SearchCondition;
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
 import com.wse.common.elasticsearch.service.SearchQueryData.SearchParams;
 import com.wse.common.elasticsearch.service.SearchQueryData.SortParams;
 
@@ -81,18 +97,54 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
 	private static final String FIELD_INDEX = "index";
 	private static final String FIELD_TIMESTAMP = "updated_at";
 	private static final String FIELD_DATE_FORMAT = "format";
+	private static final String FIELD_NORMS = "norms";
+	private static final String FIELD_DOC_VALUES = "doc_values";
+	private static final String FIELD_PROPERTIES = "properties";
+	private static final String INDEX_SETTINGS = "index";
+	private static final String INDEX_SORT_FIELD = "sort.field";
+	private static final String INDEX_SORT_ORDER = "sort.order";
+	private static final String SUGGESTION_NAME = "suggestion";
 	private static final String DATE_FORMAT = "yyyy-MM-dd";
 	private static final long DEFAULT_TIMEOUT_IN_MINUTES = 1;
-	private static RefreshPolicy REFRESH_POLICY = RefreshPolicy.NONE;
 	private static final int DEFAULT_CONFLICT_RETRY_TIMES = 3;
+	private static final String CLUSTER_SETTINGS_ENDPOINT = "/_cluster/settings";
+	private static final String ADAPTIVE_REPLICA_SELECTION_SETTING = "cluster.routing.use_adaptive_replica_selection";
+	
+	// the operation names of the circuit breakers and the metrics
+	private static final String OPERATION_SEARCH = "search";
+	private static final String OPERATION_COUNT = "count";
+	private static final String OPERATION_AGGREGATE = "aggregate";
+	private static final String OPERATION_SUGGEST = "suggest";
+	private static final String OPERATION_INDEX = "index";
+	private static final String OPERATION_BULK = "bulk";
+	private static final String OPERATION_UPDATE = "update";
+	private static final String OPERATION_DELETE = "delete";
+	private static final String OPERATION_GET = "get";
+	private static final String OPERATION_MULTI_GET = "multi_get";
+	private static final String OPERATION_GET_CACHED = "get_cached";
+	private static final String OPERATION_SUGGEST_LOCALLY = "suggest_locally";
+	private static final String OPERATION_EXIST_INDEX = "exist_index";
+	private static final String OPERATION_EXIST_DOCUMENT = "exist_document";
+	private static final String OPERATION_CREATE_INDEX = "create_index";
+	private static final String OPERATION_DELETE_INDEX = "delete_index";
+	private static final String OPERATION_PUT_MAPPING = "put_mapping";
+	private static final String OPERATION_PUT_SETTINGS = "put_settings";
+	private static final String OPERATION_ALIASES = "aliases";
+	private static final String OPERATION_REFRESH = "refresh";
+	private static final String OPERATION_FLUSH = "flush";
+	private static final String OPERATION_CLUSTER_SETTINGS = "cluster_settings";
 	
 	private static final Gson GSON_MAPPER = new Gson();
     private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
     
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchServiceImpl.class);
+    
+    private static final Map<Class<?>, PropertyDescriptor[]> PROPERTY_DESCRIPTORS = new ConcurrentHashMap<>();
 
 	private static enum FieldType {
-	    TEXT("text"), LONG("long"), DATE("date"), INTEGER("integer"), TIMESTAMP("long"), OBJECT("object");
+	    TEXT("text"), LONG("long"), DATE("date"), INTEGER("integer"), TIMESTAMP("long"), OBJECT("object"), COMPLETION("completion"),
+	    // not an Elastic Search type: a text field analyzed with edge n-grams, with a completion sub-field for suggest()
+	    AUTO_COMPLETE("autocomplete");
 	    
 	    private String type;
 	    
@@ -150,13 +202,45 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
 	}
 	
 
-    private String indexName;
+    // the index of the operations called without a handle, replaced as a whole by configureIndex and setRefreshPolicy
+    private volatile IndexHandle<E> defaultHandle;
+    
+    // the refresh policy of the new handles
+    private volatile RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+    
+    private volatile DateRounding dateRangeRounding = DateRounding.NONE;
+    
+    private volatile StreamingSearchOptions streamingSearchOptions = new StreamingSearchOptions();
+    
+    // null when hedging is disabled
+    private volatile HedgedSearchExecutor hedgedSearchExecutor;
+    
+    // without options every call goes straight to the cluster, the resilience layer is opt-in
+    private volatile ClusterCallGuard clusterCallGuard = new ClusterCallGuard(null);
+    
+    // null when the slow query log is disabled
+    private volatile SlowQueryLog slowQueryLog = new SlowQueryLog(new SlowQueryLogOptions());
+    
+    // null when the near cache is disabled
+    private volatile DocumentNearCache nearCache;
+    
+    private volatile GetBatcher getBatcher = new GetBatcher(new GetBatchingOptions(), this::multiGetAsync);
     
-    private String documentType;
+    // keyed by index name, the values written to an index are only suggested for that index
+    private final Map<String, LocalSuggestionIndex> localSuggestionIndices = new ConcurrentHashMap<>();
+    
+    private final Map<String, Method> localSuggestionReaders = new ConcurrentHashMap<>();
     
     @Autowired
     private RestHighLevelClient client;
     
+    // when a read cluster is registered the searches go to it, the writes always use the client of the primary cluster
+    @Autowired(required = false)
+    private ElasticSearchClientRegistry clientRegistry;
+    
+    @Autowired(required = false)
+    private ElasticSearchMetrics metrics = NoOpElasticSearchMetrics.INSTANCE;
+    
     protected Class<? extends E> entityType;
 
     @SuppressWarnings("unchecked")
@@ -169,35 +253,131 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
         return client.getLowLevelClient();
     }
     
+    private interface ReadOperation<T> {
+        T execute(RestHighLevelClient readClient) throws IOException;
+    }
+    
+    private RestHighLevelClient getReadClient() {
+        return clientRegistry != null ? clientRegistry.getReadClient() : client;
+    }
+    
+    // run on the read cluster, and once more on the primary cluster if the read cluster is unreachable and failover is enabled
+    // only the searches returning hits are subject to the concurrency limit, not the counts, aggregations and suggestions
+    private <T> T read(String operationName, String index, ReadOperation<T> operation) throws IOException {
+        return guardedCall(operationName, index, OPERATION_SEARCH.equals(operationName), () -> {
+            RestHighLevelClient readClient = getReadClient();
+            try {
+                return operation.execute(readClient);
+            }
+            catch (IOException e) {
+                if (readClient == client || !clientRegistry.failOver(readClient)) {
+                    throw e;
+                }
+                return operation.execute(client);
+            }
+        });
+    }
+    
+    // a cluster call through the resilience layer, timed and with its rejections counted
+    // a rejected call is only counted as a rejection, its latency would skew the latencies of the errors
+    private <T> T guardedCall(String operationName, String index, boolean search, ClusterCallGuard.GuardedCall<T> call) throws IOException {
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        boolean rejected = false;
+        try {
+            T result = clusterCallGuard.call(operationName, search, call);
+            success = true;
+            return result;
+        }
+        catch (ElasticSearchServiceUnavailableException e) {
+            rejected = true;
+            metrics.recordRejection(operationName, index);
+            throw e;
+        }
+        finally {
+            if (!rejected) {
+                metrics.recordLatency(operationName, index, System.nanoTime() - startNanos, success);
+            }
+        }
+    }
+    
+    // a timed cluster call outside the resilience layer (index administration)
+    private <T> T measuredCall(String operationName, String index, ClusterCallGuard.GuardedCall<T> call) throws IOException {
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.execute();
+            success = true;
+            return result;
+        }
+        finally {
+            metrics.recordLatency(operationName, index, System.nanoTime() - startNanos, success);
+        }
+    }
+    
     @Override
     public void initData(final String indexName, final String documentType, final Object mappings, final Map<String, E> entityMapWithId) {
-        if (existIndex()) {
+        initData(indexName, documentType, mappings, IndexSettingsProfile.defaults(), entityMapWithId);
+    }
+    
+    @Override
+    public void initData(final String indexName, final String documentType, final Object mappings, final IndexSettingsProfile profile, 
+            final Map<String, E> entityMapWithId) {
+        IndexHandle<E> handle = indexHandle(indexName, documentType);
+        if (handle.existIndex()) {
             deleteIndex(indexName);
         }
 
-        createIndexWithMappings(indexName, documentType, mappings);
+        createIndexWithMappings(indexName, documentType, mappings, profile);
         
         if (!CollectionUtils.isEmpty(entityMapWithId)) {
-            bulkIndex(entityMapWithId, ServiceMode.ASYNC);
+            handle.bulkIndex(entityMapWithId, ServiceMode.ASYNC);
         }
     }
     
+    @Override
+    public IndexHandle<E> indexHandle(final String indexName, final String documentType) {
+        return new IndexHandle<>(this, indexName, documentType, refreshPolicy, null, GSON_MAPPER);
+    }
+    
+    @Override
+    public IndexHandle<E> getIndexHandle() {
+        IndexHandle<E> handle = defaultHandle;
+        if (handle == null) {
+            throw new ElasticSearchServiceException("No index is configured. Call configureIndex or use an index handle");
+        }
+        return handle;
+    }
+    
+    @Override
+    public TimePartitionedIndex<E> timePartitionedIndex(final String alias, final String documentType, final TimePartitionOptions options) {
+        if (StringUtils.isEmpty(options.getDateProperty()) || options.getMappings() == null) {
+            throw new ElasticSearchServiceException("A time partitioned index needs a date property and the mappings of its partitions");
+        }
+        TimePartitionedIndex<E> partitionedIndex = new TimePartitionedIndex<>(this, indexHandle(alias, documentType), options, 
+                getPropertyReader(options.getDateProperty()));
+        partitionedIndex.refreshPartitions();
+        return partitionedIndex;
+    }
+    
     @Override
     public void configureIndex(String indexName, String documentType) {
-        this.indexName = indexName;
-        this.documentType = documentType;
+        this.defaultHandle = indexHandle(indexName, documentType);
     }
     
     @Override
     public boolean existIndex(final String indexName, final String documentType) {
-        configureIndex(indexName, documentType);
-        return existIndex();
+        return existIndex(indexHandle(indexName, documentType));
     }
     
     @Override
     public boolean existIndex() {
+        return existIndex(getIndexHandle());
+    }
+    
+    boolean existIndex(IndexHandle<E> handle) {
         try {
-            return client.indices().exists(buildGetIndexRequest(indexName));
+            return measuredCall(OPERATION_EXIST_INDEX, handle.getIndexName(), () -> client.indices().exists(buildGetIndexRequest(handle.getIndexName())));
         } catch (IOException e) {
             return false;
         }
@@ -205,19 +385,184 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     @Override
     public boolean existDocument(final String indexName, final String documentType, final String documentId) {
+        return existDocument(indexHandle(indexName, documentType), documentId);
+    }
+    
+    boolean existDocument(IndexHandle<E> handle, String documentId) {
         try {
-            return client.exists(buildGetIndexRequest(indexName, documentType, documentId));
+            return measuredCall(OPERATION_EXIST_DOCUMENT, handle.getIndexName(), 
+                    () -> client.exists(buildGetRequest(handle, documentId)));
         }   
         catch (IOException e) {
-            throw new ElasticSearchServiceException("The index: " + indexName + " does not exist.");
+            throw new ElasticSearchServiceException("The index: " + handle.getIndexName() + " does not exist.");
         }
     }
 
-    private GetRequest buildGetIndexRequest(String indexName, final String documentType, final String documentId) { 
-        return new GetRequest(indexName, documentType, documentId).fetchSourceContext(new FetchSourceContext(false))
+    private GetRequest buildGetRequest(IndexHandle<E> handle, final String documentId) { 
+        return new GetRequest(handle.getIndexName(), handle.getDocumentType(), documentId).routing(handle.getRouting())
+                .fetchSourceContext(new FetchSourceContext(false))
                 .storedFields("_none_"); // use only for checking document existence, so no need to fetch source
     }
     
+    @Override
+    public E get(final String id) {
+        return get(getIndexHandle(), id);
+    }
+    
+    E get(IndexHandle<E> handle, String id) {
+        DocumentNearCache cache = nearCache;
+        String source = getCachedSource(cache, handle, id);
+        if (source == null) {
+            long generation = cache != null ? cache.getGeneration() : 0;
+            // real-time read on the primary cluster, the read cluster may lag behind the writes of this instance
+            GetRequest getRequest = new GetRequest(handle.getIndexName(), handle.getDocumentType(), id).routing(handle.getRouting());
+            GetResponse getResponse;
+            try {
+                getResponse = guardedCall(OPERATION_GET, handle.getIndexName(), false, () -> client.get(getRequest));
+            }
+            catch (IOException e) {
+                throw new ElasticSearchServiceException("Unable to get the document: " + id + ". Exception: " + e.getMessage());
+            }
+            if (!getResponse.isExists()) {
+                return null;
+            }
+            source = getResponse.getSourceAsString();
+            if (cache != null) {
+                cache.put(handle.getIndexName(), id, source, generation);
+            }
+        }
+        return handle.getCodec().fromJson(source, entityType);
+    }
+    
+    @Override
+    public Map<String, E> getAll(final Collection<String> ids) {
+        return getAll(getIndexHandle(), ids);
+    }
+    
+    Map<String, E> getAll(IndexHandle<E> handle, Collection<String> ids) {
+        DocumentNearCache cache = nearCache;
+        long generation = cache != null ? cache.getGeneration() : 0;
+        Map<String, String> sources = new HashMap<>();
+        MultiGetRequest multiGetRequest = new MultiGetRequest();
+        for (String id : ids) {
+            String source = getCachedSource(cache, handle, id);
+            if (source != null) {
+                sources.put(id, source);
+            }
+            else if (!sources.containsKey(id)) {
+                sources.put(id, null);
+                multiGetRequest.add(new MultiGetRequest.Item(handle.getIndexName(), handle.getDocumentType(), id).routing(handle.getRouting()));
+            }
+        }
+        if (!multiGetRequest.getItems().isEmpty()) {
+            MultiGetResponse multiGetResponse;
+            try {
+                multiGetResponse = guardedCall(OPERATION_MULTI_GET, handle.getIndexName(), false, () -> client.multiGet(multiGetRequest));
+            }
+            catch (IOException e) {
+                throw new ElasticSearchServiceException("Unable to get the documents. Exception: " + e.getMessage());
+            }
+            for (MultiGetItemResponse item : multiGetResponse.getResponses()) {
+                if (item.isFailed()) {
+                    throw new ElasticSearchServiceException("Unable to get the document: " + item.getId() + ". Exception: " + item.getFailure().getMessage());
+                }
+                GetResponse getResponse = item.getResponse();
+                if (getResponse.isExists()) {
+                    sources.put(getResponse.getId(), getResponse.getSourceAsString());
+                    if (cache != null) {
+                        cache.put(handle.getIndexName(), getResponse.getId(), getResponse.getSourceAsString(), generation);
+                    }
+                }
+            }
+        }
+        
+        // in the order of the ids, without the missing documents
+        Map<String, E> entities = new LinkedHashMap<>();
+        for (String id : ids) {
+            String source = sources.get(id);
+            if (source != null && !entities.containsKey(id)) {
+                entities.put(id, handle.getCodec().fromJson(source, entityType));
+            }
+        }
+        return entities;
+    }
+    
+    @Override
+    public CompletableFuture<E> getAsync(final String id) {
+        return getAsync(getIndexHandle(), id);
+    }
+    
+    CompletableFuture<E> getAsync(IndexHandle<E> handle, String id) {
+        DocumentNearCache cache = nearCache;
+        String cachedSource = getCachedSource(cache, handle, id);
+        if (cachedSource != null) {
+            return CompletableFuture.completedFuture(handle.getCodec().fromJson(cachedSource, entityType));
+        }
+        long generation = cache != null ? cache.getGeneration() : 0;
+        MultiGetRequest.Item item = new MultiGetRequest.Item(handle.getIndexName(), handle.getDocumentType(), id).routing(handle.getRouting());
+        return getBatcher.get(item).thenApply(source -> {
+            if (source == null) {
+                return null;
+            }
+            if (cache != null) {
+                cache.put(handle.getIndexName(), id, source, generation);
+            }
+            return handle.getCodec().fromJson(source, entityType);
+        });
+    }
+    
+    // the batches of getAsync(), the index of their first item names the metrics
+    private void multiGetAsync(MultiGetRequest multiGetRequest, ActionListener<MultiGetResponse> listener) {
+        String index = multiGetRequest.getItems().get(0).index();
+        ClusterCallGuard.Permit permit = acquirePermit(OPERATION_MULTI_GET, index);
+        long startNanos = System.nanoTime();
+        metrics.asyncStarted(OPERATION_MULTI_GET);
+        client.multiGetAsync(multiGetRequest, new ActionListener<MultiGetResponse>() {
+            @Override
+            public void onResponse(MultiGetResponse response) {
+                permit.release(false);
+                metrics.asyncFinished(OPERATION_MULTI_GET);
+                metrics.recordLatency(OPERATION_MULTI_GET, index, System.nanoTime() - startNanos, true);
+                listener.onResponse(response);
+            }
+            @Override
+            public void onFailure(Exception e) {
+                permit.release(ClusterCallGuard.isServerError(e));
+                metrics.asyncFinished(OPERATION_MULTI_GET);
+                metrics.recordLatency(OPERATION_MULTI_GET, index, System.nanoTime() - startNanos, false);
+                listener.onFailure(e);
+            }
+        });
+    }
+    
+    private String getCachedSource(DocumentNearCache cache, IndexHandle<E> handle, String id) {
+        if (cache == null) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        String source = cache.get(handle.getIndexName(), id);
+        if (source != null) {
+            metrics.recordLatency(OPERATION_GET_CACHED, handle.getIndexName(), System.nanoTime() - startNanos, true);
+        }
+        return source;
+    }
+    
+    // the writes of this instance replace or evict the cached sources, the other instances rely on the time to live
+    // the sources are evicted before a write and once more when it completes, the reads sent meanwhile cannot cache the old source
+    private void cacheSource(IndexRequest indexRequest) {
+        DocumentNearCache cache = nearCache;
+        if (cache != null) {
+            cache.write(indexRequest.index(), indexRequest.id(), indexRequest.source().utf8ToString());
+        }
+    }
+    
+    private void evictSource(DocWriteRequest<?> request) {
+        DocumentNearCache cache = nearCache;
+        if (cache != null) {
+            cache.invalidate(request.index(), request.id());
+        }
+    }
+    
     private GetIndexRequest buildGetIndexRequest(String indexName) { 
         return new GetIndexRequest().indices(indexName)
                 .local(false)
@@ -225,21 +570,32 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
                 .includeDefaults(false);
     }
     
-    @SuppressWarnings("unchecked")
     @Override
     public void createIndexWithMappings(final String indexName, final String documentType, final Object mappings) {
-        if (existIndex()) {
+        createIndexWithMappings(indexName, documentType, mappings, IndexSettingsProfile.defaults());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public void createIndexWithMappings(final String indexName, final String documentType, final Object mappings, 
+            final IndexSettingsProfile profile) {
+        if (existIndex(indexName, documentType)) {
             return;
         }
+        IndexSettingsProfile settingsProfile = profile != null ? profile : IndexSettingsProfile.defaults();
+        boolean sortByTimestamp = settingsProfile.isTimestampSort() && !settingsProfile.hasIndexSort() 
+                && hasSortableTimestamp(mappings, documentType);
+        String settings = buildIndexSettings(settingsProfile, sortByTimestamp);
         if (mappings instanceof Map) {
-            createIndexWithMappings(indexName, documentType, (Map<String, Map<String, Object>>) mappings);
+            createIndexWithMappings(indexName, documentType, (Map<String, Map<String, Object>>) mappings, settings);
         }
         else {
-            createIndexWithMappings(indexName, documentType, (String) mappings);
+            createIndexWithMappings(indexName, documentType, (String) mappings, settings);
         }
     }
     
-    private void createIndexWithMappings(final String indexName, final String documentType, final Map<String, Map<String, Object>> mappings) {
+    private void createIndexWithMappings(final String indexName, final String documentType, final Map<String, Map<String, Object>> mappings, 
+            final String settings) {
         Map<String, Object> jsonMap = new HashMap<>();
         Map<String, Object> typeMap = new HashMap<>();
         Map<String, Object> propertiesMap = new HashMap<>();
@@ -248,13 +604,13 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
             propertiesMap.put(field.getKey(), field.getValue());
         }
         
-        typeMap.put("properties", propertiesMap);
+        typeMap.put(FIELD_PROPERTIES, propertiesMap);
         jsonMap.put(documentType, typeMap);
-        createIndex(buildCreateIndexRequest(indexName, documentType, jsonMap));
+        createIndex(buildCreateIndexRequest(indexName, documentType, jsonMap, settings));
     }
     
-    private void createIndexWithMappings(final String indexName, final String documentType, final String jsonMappings) {
-        createIndex(buildCreateIndexRequest(indexName, documentType, jsonMappings));
+    private void createIndexWithMappings(final String indexName, final String documentType, final String jsonMappings, final String settings) {
+        createIndex(buildCreateIndexRequest(indexName, documentType, jsonMappings, settings));
     }
     
     @Override
@@ -264,9 +620,10 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     private void createIndex(CreateIndexRequest createIndexRequest) {
         try {
-            CreateIndexResponse createIndexResponse = client.indices().create(createIndexRequest);
+            CreateIndexResponse createIndexResponse = measuredCall(OPERATION_CREATE_INDEX, createIndexRequest.index(), 
+                    () -> client.indices().create(createIndexRequest));
             if (!createIndexResponse.isAcknowledged()) {
-                throw new ElasticSearchServiceException("Unable to create the index: " + indexName);
+                throw new ElasticSearchServiceException("Unable to create the index: " + createIndexRequest.index());
             }
         }
         catch (IOException e) {
@@ -278,25 +635,62 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
         return new CreateIndexRequest(indexName).timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES));
     }
     
-    private CreateIndexRequest buildCreateIndexRequest(String indexName, String documentType, Map<String, Object> mappings) {
+    private CreateIndexRequest buildCreateIndexRequest(String indexName, String documentType, Map<String, Object> mappings, String settings) {
         return buildCreateIndexRequest(indexName).mapping(documentType, mappings)
-                .settings(buildDefaultIndexSettings(), XContentType.JSON);
+                .settings(settings, XContentType.JSON);
     }
     
-    private CreateIndexRequest buildCreateIndexRequest(String indexName, String documentType, String mappings) {
+    private CreateIndexRequest buildCreateIndexRequest(String indexName, String documentType, String mappings, String settings) {
         return buildCreateIndexRequest(indexName).mapping(documentType, mappings, XContentType.JSON)
-                .settings(buildDefaultIndexSettings(), XContentType.JSON);
+                .settings(settings, XContentType.JSON);
     }
     
     
-    private String buildDefaultIndexSettings() {
+    private String buildIndexSettings(IndexSettingsProfile profile, boolean sortByTimestamp) {
         try {
-            return JACKSON_MAPPER.writeValueAsString(ElasticSearchAnalyzerFactory.getAnalyzer(AnalyzerType.DEFAULT));
-        } catch (JsonProcessingException e) {
+            // the auto complete analyzers are only defined here, they are used only by the fields mapped as AUTO_COMPLETE
+            ObjectNode settings = JACKSON_MAPPER.valueToTree(ElasticSearchAnalyzerFactory.getAnalyzer(AnalyzerType.AUTO_COMPLETE, 
+                    profile.getAutocompleteMinGram(), profile.getAutocompleteMaxGram()));
+            Map<String, Object> indexSettings = new LinkedHashMap<>(profile.getSettings());
+            if (sortByTimestamp) {
+                // the order of the default sort of the searches (See buildSortOption), so that they can stop early
+                indexSettings.put(INDEX_SORT_FIELD, FIELD_TIMESTAMP);
+                indexSettings.put(INDEX_SORT_ORDER, SortOrder.DESC.toString());
+            }
+            if (!indexSettings.isEmpty()) {
+                // the analysis block stays as it is, the profile only adds the index level settings next to it
+                settings.set(INDEX_SETTINGS, JACKSON_MAPPER.valueToTree(indexSettings));
+            }
+            return JACKSON_MAPPER.writeValueAsString(settings);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
             throw new ElasticSearchServiceException("Unable to create index setting configuration for the index. Exception: " + e.getMessage());
         }
     }
     
+    // an index can only be sorted on a field with doc values: updated_at mapped as a long or a date, doc values not disabled
+    @SuppressWarnings("unchecked")
+    private boolean hasSortableTimestamp(Object mappings, String documentType) {
+        JsonNode timestamp;
+        if (mappings instanceof Map) {
+            timestamp = JACKSON_MAPPER.valueToTree(((Map<String, Object>) mappings).get(FIELD_TIMESTAMP));
+        }
+        else {
+            try {
+                JsonNode root = JACKSON_MAPPER.readTree((String) mappings);
+                JsonNode properties = root.has(documentType) ? root.path(documentType).path(FIELD_PROPERTIES) : root.path(FIELD_PROPERTIES);
+                timestamp = properties.path(FIELD_TIMESTAMP);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        if (timestamp == null || !timestamp.isObject()) {
+            return false;
+        }
+        String fieldType = timestamp.path(FIELD_TYPE).asText();
+        return (FieldType.LONG.getType().equals(fieldType) || FieldType.DATE.getType().equals(fieldType)) 
+                && timestamp.path(FIELD_DOC_VALUES).asBoolean(true);
+    }
+    
     @Override
     public void createIndexMapping(final String indexName, final String documentType, final Object mappings) {
         PutMappingRequest request = new PutMappingRequest(indexName).type(documentType).timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES));
@@ -306,7 +700,7 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
         }
         
         try {
-            client.indices().putMapping(request);
+            measuredCall(OPERATION_PUT_MAPPING, indexName, () -> client.indices().putMapping(request));
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to create mappings for the index: " + indexName);
         }
@@ -318,7 +712,7 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
                 .settings(settings, XContentType.JSON)
                 .timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES));
         try {
-            client.indices().putSettings(request);
+            measuredCall(OPERATION_PUT_SETTINGS, indexName, () -> client.indices().putSettings(request));
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to create settings for the index: " + indexName);
         }
@@ -327,7 +721,8 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     @Override
     public void deleteIndex(final String indexName) {
         try {
-            DeleteIndexResponse deleteIndexResponse = client.indices().delete(buildDeleteIndexRequest(indexName));
+            DeleteIndexResponse deleteIndexResponse = measuredCall(OPERATION_DELETE_INDEX, indexName, 
+                    () -> client.indices().delete(buildDeleteIndexRequest(indexName)));
             if (!deleteIndexResponse.isAcknowledged()) {
                 throw new ElasticSearchServiceException("Unable to delete the index: " + indexName);
             }
@@ -347,132 +742,214 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     @Override
     public void index(final E entity, final String id) {
-        index(buildIndexRequest(entity, id));
+        index(getIndexHandle(), entity, id);
     }
     
-    private IndexRequest buildIndexRequest(E entity, String id) {
-        return new IndexRequest(indexName, documentType, id)
-                .source(GSON_MAPPER.toJson(entity), XContentType.JSON)
+    void index(IndexHandle<E> handle, E entity, String id) {
+        index(buildIndexRequest(handle, entity, id), readLocalSuggestions(handle, entity));
+    }
+    
+    private IndexRequest buildIndexRequest(IndexHandle<E> handle, E entity, String id) {
+        return new IndexRequest(handle.getIndexName(), handle.getDocumentType(), id)
+                .source(toJson(OPERATION_INDEX, handle, entity), XContentType.JSON)
+                .routing(handle.getRouting())
                 .opType(DocWriteRequest.OpType.CREATE)
                 .timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES))
-                .setRefreshPolicy(REFRESH_POLICY);
+                .setRefreshPolicy(handle.getRefreshPolicy());
     }
     
-    private BeanInfo getBeanInfo(Class<? extends E> entityType) {
-        BeanInfo beanInfo = null;
-        try {
-            beanInfo = Introspector.getBeanInfo(entityType);
-        } 
-        catch (IntrospectionException e) {
-            throw new ElasticSearchServiceException("Unable to retrieve the information of the entity. Exception: " + e.getMessage());
-        }
-        return beanInfo;
+    private String toJson(String operationName, IndexHandle<E> handle, E entity) {
+        long startNanos = System.nanoTime();
+        String json = handle.getCodec().toJson(entity);
+        metrics.recordSerialization(operationName, handle.getIndexName(), System.nanoTime() - startNanos);
+        return json;
+    }
+    
+    // the properties of the entity type, introspected once per type
+    private PropertyDescriptor[] getPropertyDescriptors(Class<? extends E> entityType) {
+        return PROPERTY_DESCRIPTORS.computeIfAbsent(entityType, type -> {
+            try {
+                return Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors();
+            } 
+            catch (IntrospectionException e) {
+                throw new ElasticSearchServiceException("Unable to retrieve the information of the entity. Exception: " + e.getMessage());
+            }
+        });
     }
     
     @Override
     public void bulkIndex(final Map<String, E> entityMapWithId) {
-        bulk(entityMapWithId, Collections.emptyMap(), Collections.emptyMap(), ServiceMode.SYNC);
+        bulk(getIndexHandle(), entityMapWithId, Collections.emptyMap(), Collections.emptyMap(), ServiceMode.SYNC);
     }
     
     @Override
     public void bulkIndex(final Map<String, E> entityMapWithId, final ServiceMode mode) {
-        bulk(entityMapWithId, Collections.emptyMap(), Collections.emptyMap(), mode);
+        bulk(getIndexHandle(), entityMapWithId, Collections.emptyMap(), Collections.emptyMap(), mode);
     }
     
     @Override
     public void bulk(final Map<String, E> entityMapToIndex, final Map<String, E> entityMapToDelete, 
             final Map<String, E> entityMapToUpdate, final ServiceMode mode) {
-        BulkRequest bulkRequest = buildBulkRequest();
+        bulk(getIndexHandle(), entityMapToIndex, entityMapToDelete, entityMapToUpdate, mode);
+    }
+    
+    void bulk(IndexHandle<E> handle, Map<String, E> entityMapToIndex, Map<String, E> entityMapToDelete, 
+            Map<String, E> entityMapToUpdate, ServiceMode mode) {
+        BulkRequest bulkRequest = buildBulkRequest(handle);
         
         if (!CollectionUtils.isEmpty(entityMapToIndex)) {
-            bulkRequest = buildBulkRequest(entityMapToIndex, RequestType.INDEX, bulkRequest);
+            bulkRequest = buildBulkRequest(handle, entityMapToIndex, RequestType.INDEX, bulkRequest);
         }
         if (!CollectionUtils.isEmpty(entityMapToUpdate)) {
-            bulkRequest = buildBulkRequest(entityMapToUpdate, RequestType.UPDATE, bulkRequest);
+            bulkRequest = buildBulkRequest(handle, entityMapToUpdate, RequestType.UPDATE, bulkRequest);
         }
         if (!CollectionUtils.isEmpty(entityMapToDelete)) {
-            bulkRequest = buildBulkRequest(entityMapToDelete, RequestType.DELETE, bulkRequest);
+            bulkRequest = buildBulkRequest(handle, entityMapToDelete, RequestType.DELETE, bulkRequest);
         }
+        Map<String, Map<String, String>> localSuggestions = new HashMap<>();
+        readLocalSuggestions(handle, entityMapToIndex, localSuggestions);
+        readLocalSuggestions(handle, entityMapToUpdate, localSuggestions);
         
         if (ServiceMode.isSync(mode)) {
-            bulk(bulkRequest);
+            bulk(handle.getIndexName(), bulkRequest, localSuggestions);
             return;
         }
-        bulkAsync(bulkRequest);
+        bulkAsync(handle.getIndexName(), bulkRequest, localSuggestions);
     }
     
-    private BulkRequest buildBulkRequest(Map<String, E> entityMapWithId, RequestType requestType, BulkRequest bulkRequest) {
-        bulkRequest = bulkRequest != null ? bulkRequest : buildBulkRequest();
+    // package-private for the benchmarks
+    BulkRequest buildBulkRequest(IndexHandle<E> handle, Map<String, E> entityMapWithId, RequestType requestType, BulkRequest bulkRequest) {
+        bulkRequest = bulkRequest != null ? bulkRequest : buildBulkRequest(handle);
         for (Map.Entry<String, E> entry : entityMapWithId.entrySet()) {
-            bulkRequest.add(buildRequest(requestType, entry.getValue(), entry.getKey()));
+            bulkRequest.add(buildRequest(handle, requestType, entry.getValue(), entry.getKey()));
         }
         return bulkRequest;
     }
     
-    private BulkRequest buildBulkRequest() {
+    // a single bulk request over several indices, the metrics are recorded under the given index (usually their alias)
+    void bulkIndex(String index, Map<IndexHandle<E>, Map<String, E>> entityMapsByHandle, ServiceMode mode) {
+        BulkRequest bulkRequest = null;
+        Map<String, Map<String, String>> localSuggestions = new HashMap<>();
+        for (Map.Entry<IndexHandle<E>, Map<String, E>> entry : entityMapsByHandle.entrySet()) {
+            bulkRequest = buildBulkRequest(entry.getKey(), entry.getValue(), RequestType.INDEX, bulkRequest);
+            readLocalSuggestions(entry.getKey(), entry.getValue(), localSuggestions);
+        }
+        if (bulkRequest == null) {
+            return;
+        }
+        
+        if (ServiceMode.isSync(mode)) {
+            bulk(index, bulkRequest, localSuggestions);
+            return;
+        }
+        bulkAsync(index, bulkRequest, localSuggestions);
+    }
+    
+    private BulkRequest buildBulkRequest(IndexHandle<E> handle) {
         return new BulkRequest().timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES))
-                .setRefreshPolicy(REFRESH_POLICY);
+                .setRefreshPolicy(handle.getRefreshPolicy());
     }
     
     @SuppressWarnings("rawtypes")
-    private DocWriteRequest buildRequest(RequestType requestType, E entity, String entityId) {
+    private DocWriteRequest buildRequest(IndexHandle<E> handle, RequestType requestType, E entity, String entityId) {
         switch (requestType) {
             case INDEX:
-                return buildIndexRequest(entity, entityId);
+                return buildIndexRequest(handle, entity, entityId);
             case DELETE:
-                return buildDeleteRequest(entityId);
+                return buildDeleteRequest(handle, entityId);
             case UPDATE:
             default:
-                return buildUpdateRequest(entity, entityId, true);
+                return buildUpdateRequest(handle, entity, entityId, true);
         }
     }
     
-    private void bulk(BulkRequest bulkRequest) {
+    private void bulk(String index, BulkRequest bulkRequest, Map<String, Map<String, String>> localSuggestions) {
+        evictSources(bulkRequest);
         try {
-            client.bulk(bulkRequest);
+            BulkResponse bulkResponse = guardedCall(OPERATION_BULK, index, false, () -> client.bulk(bulkRequest));
+            recordBulkItems(index, bulkResponse);
+            recordLocalSuggestions(bulkRequest, bulkResponse, localSuggestions);
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to make bulk operations. Exception: " + e.getMessage());
+        } finally {
+            evictSources(bulkRequest);
         }
     }
     
-    private void bulkAsync(BulkRequest bulkRequest) {
-        client.bulkAsync(bulkRequest, buildAsyncListener());
+    private void bulkAsync(String index, BulkRequest bulkRequest, Map<String, Map<String, String>> localSuggestions) {
+        evictSources(bulkRequest);
+        client.bulkAsync(bulkRequest, buildAsyncListener(OPERATION_BULK, index, () -> evictSources(bulkRequest), 
+                response -> recordLocalSuggestions(bulkRequest, response, localSuggestions)));
+    }
+    
+    private void evictSources(BulkRequest bulkRequest) {
+        if (nearCache != null) {
+            for (DocWriteRequest<?> request : bulkRequest.requests()) {
+                evictSource(request);
+            }
+        }
+    }
+    
+    private void recordBulkItems(String index, BulkResponse bulkResponse) {
+        int failedItems = 0;
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            if (item.isFailed()) {
+                failedItems++;
+            }
+        }
+        metrics.recordBulkItems(index, bulkResponse.getItems().length, failedItems);
     }
     
     @Override
     public void update(final E entity, final String id) {
-        upsert(buildUpdateRequest(entity, id, false));
+        update(getIndexHandle(), entity, id);
+    }
+    
+    void update(IndexHandle<E> handle, E entity, String id) {
+        upsert(buildUpdateRequest(handle, entity, id, false), readLocalSuggestions(handle, entity));
     }
     
     @Override
     public void upsert(final E entity, final String id, final ServiceMode mode) {
-        UpdateRequest upsertRequest = buildUpdateRequest(entity, id, true);
+        upsert(getIndexHandle(), entity, id, mode);
+    }
+    
+    void upsert(IndexHandle<E> handle, E entity, String id, ServiceMode mode) {
+        UpdateRequest upsertRequest = buildUpdateRequest(handle, entity, id, true);
+        Map<String, String> localSuggestions = readLocalSuggestions(handle, entity);
         if (ServiceMode.isSync(mode)) {
-            upsert(upsertRequest);
+            upsert(upsertRequest, localSuggestions);
             return;
         }
-        upsertAsync(upsertRequest);
+        upsertAsync(upsertRequest, localSuggestions);
     }
     
-    private UpdateRequest buildUpdateRequest(E entity, String id, boolean shouldUpsert) {
-        return new UpdateRequest(indexName, documentType, id)
-                .doc(GSON_MAPPER.toJson(entity), XContentType.JSON)
+    private UpdateRequest buildUpdateRequest(IndexHandle<E> handle, E entity, String id, boolean shouldUpsert) {
+        return new UpdateRequest(handle.getIndexName(), handle.getDocumentType(), id)
+                .doc(toJson(OPERATION_UPDATE, handle, entity), XContentType.JSON)
                 .docAsUpsert(shouldUpsert)
+                .routing(handle.getRouting())
                 .timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES))
-                .setRefreshPolicy(REFRESH_POLICY)
+                .setRefreshPolicy(handle.getRefreshPolicy())
                 .retryOnConflict(DEFAULT_CONFLICT_RETRY_TIMES);
     }
     
-    private void upsert(UpdateRequest upsertRequest) {
+    private void upsert(UpdateRequest upsertRequest, Map<String, String> localSuggestions) {
+        evictSource(upsertRequest);
         try {
-            client.update(upsertRequest);
+            guardedCall(OPERATION_UPDATE, upsertRequest.index(), false, () -> client.update(upsertRequest));
+            recordLocalSuggestions(upsertRequest.index(), localSuggestions);
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to update the document. Exception: " + e.getMessage());
+        } finally {
+            evictSource(upsertRequest);
         }
     }
 
-    private void upsertAsync(UpdateRequest upsertRequest) {
-        client.updateAsync(upsertRequest, buildAsyncListener());
+    private void upsertAsync(UpdateRequest upsertRequest, Map<String, String> localSuggestions) {
+        evictSource(upsertRequest);
+        client.updateAsync(upsertRequest, buildAsyncListener(OPERATION_UPDATE, upsertRequest.index(), () -> evictSource(upsertRequest), 
+                response -> recordLocalSuggestions(upsertRequest.index(), localSuggestions)));
     }
     
     private void commonElasticSearchException(ElasticsearchException e) {
@@ -486,28 +963,34 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
 
     @Override
     public void delete(final E entity, final String id) {
-        delete(buildDeleteRequest(id));
+        delete(getIndexHandle(), id, ServiceMode.SYNC);
     }
     
     @Override
     public void delete(final E entity, final String id, final ServiceMode mode) {
-        DeleteRequest deleteRequest = buildDeleteRequest(id);
+        delete(getIndexHandle(), id, mode);
+    }
+    
+    void delete(IndexHandle<E> handle, String id, ServiceMode mode) {
+        DeleteRequest deleteRequest = buildDeleteRequest(handle, id);
         if (ServiceMode.isSync(mode)) {
             delete(deleteRequest);
             return;
         }
-        deleteAsync(buildDeleteRequest(id));
+        deleteAsync(deleteRequest);
     }
     
-    private DeleteRequest buildDeleteRequest(final String entityId) {
-        return new DeleteRequest(indexName, documentType, entityId)
+    private DeleteRequest buildDeleteRequest(IndexHandle<E> handle, final String entityId) {
+        return new DeleteRequest(handle.getIndexName(), handle.getDocumentType(), entityId)
+                .routing(handle.getRouting())
                 .timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES))
-                .setRefreshPolicy(REFRESH_POLICY);
+                .setRefreshPolicy(handle.getRefreshPolicy());
     }
     
     private void delete(DeleteRequest deleteRequest) {
+        evictSource(deleteRequest);
         try {
-            client.delete(deleteRequest);
+            guardedCall(OPERATION_DELETE, deleteRequest.index(), false, () -> client.delete(deleteRequest));
         }
         catch (ElasticsearchException e) {
             commonElasticSearchException(e);
@@ -515,16 +998,24 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
         catch (IOException e){
             throw new ElasticSearchServiceException("Unable to delete the entity document. Exception: " + e.getMessage());
         }
+        finally {
+            evictSource(deleteRequest);
+        }
     } 
     
     private void deleteAsync(DeleteRequest deleteRequest) {
-        client.deleteAsync(deleteRequest, buildAsyncListener());
+        evictSource(deleteRequest);
+        client.deleteAsync(deleteRequest, buildAsyncListener(OPERATION_DELETE, deleteRequest.index(), () -> evictSource(deleteRequest)));
     }
 
     @Override
     public long count(final SearchQueryData queryData) {
+        return count(getIndexHandle(), queryData);
+    }
+    
+    long count(IndexHandle<E> handle, SearchQueryData queryData) {
         try {
-            return client.search(buildSearchRequest(queryData)).getHits().getTotalHits();
+            return executeSearch(OPERATION_COUNT, handle, buildSearchRequest(handle, buildSearchSource(queryData, 0, 0)), true).getHits().getTotalHits();
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to count the number of total documents. Exception: " + e.getMessage());
         }
@@ -532,11 +1023,13 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     @Override
     public long count(final JsonObject request) {
-        String countEndpoint = String.format("/%s/_count", indexName);
+        IndexHandle<E> handle = getIndexHandle();
+        String countEndpoint = String.format("/%s/_count", handle.getSearchIndices());
         HttpEntity countEntity = new NStringEntity(GSON_MAPPER.toJson(request), ContentType.APPLICATION_JSON);
         
         try {
-            Response response = getLowLevelClient().performRequest("POST", countEndpoint, new HashMap<String, String>(), countEntity);
+            Response response = read(OPERATION_COUNT, handle.getIndexName(), readClient -> readClient.getLowLevelClient().performRequest("POST", countEndpoint, 
+                    buildRoutingParams(handle), countEntity));
             JsonNode responseBody = JACKSON_MAPPER.readTree(response.getEntity().getContent());
             return responseBody.path("count").asLong();
         } 
@@ -545,6 +1038,162 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
         }
     }
     
+    @Override
+    public AggregationResultData aggregate(final AggregationQueryData aggregationData) {
+        return aggregate(getIndexHandle(), aggregationData);
+    }
+    
+    AggregationResultData aggregate(IndexHandle<E> handle, AggregationQueryData aggregationData) {
+        SearchQueryData queryData = aggregationData.getQueryData() != null ? aggregationData.getQueryData() : new SearchQueryData();
+        SearchSourceBuilder searchSource = buildSearchSource(queryData, 0, 0);
+        for (AggregationParams params : aggregationData.getAggregations()) {
+            searchSource.aggregation(SearchAggregations.buildAggregation(params));
+        }
+        
+        try {
+            return SearchAggregations.extractResult(executeSearch(OPERATION_AGGREGATE, handle, buildSearchRequest(handle, searchSource), false), 
+                    aggregationData.getAggregations());
+        }
+        catch (IOException e) {
+            throw new ElasticSearchServiceException("Unable to aggregate. Exception: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public List<String> suggest(final String field, final String prefix, final int size) {
+        return suggest(getIndexHandle(), field, prefix, size);
+    }
+    
+    List<String> suggest(IndexHandle<E> handle, String field, String prefix, int size) {
+        CompletionSuggestionBuilder suggestion = SuggestBuilders.completionSuggestion(field).prefix(prefix).size(size)
+                .skipDuplicates(true);
+        SearchSourceBuilder searchSource = new SearchSourceBuilder().size(0).fetchSource(false)
+                .suggest(new SuggestBuilder().addSuggestion(SUGGESTION_NAME, suggestion))
+                .timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES));
+        
+        SearchResponse response = null;
+        try {
+            response = executeSearch(OPERATION_SUGGEST, handle, buildSearchRequest(handle, searchSource), false);
+        }
+        catch (IOException e) {
+            throw new ElasticSearchServiceException("Unable to suggest. Exception: " + e.getMessage());
+        }
+        
+        List<String> suggestions = new ArrayList<>();
+        if (response.getSuggest() == null) {
+            return suggestions;
+        }
+        CompletionSuggestion completion = response.getSuggest().getSuggestion(SUGGESTION_NAME);
+        for (CompletionSuggestion.Entry entry : completion.getEntries()) {
+            for (CompletionSuggestion.Entry.Option option : entry.getOptions()) {
+                suggestions.add(option.getText().string());
+            }
+        }
+        return suggestions;
+    }
+    
+    @Override
+    public void enableLocalSuggestions(final int maxValuesPerField, final String... fields) {
+        String indexName = getIndexHandle().getIndexName();
+        AggregationQueryData aggregationData = new AggregationQueryData();
+        for (String field : fields) {
+            aggregationData.terms(field, field, maxValuesPerField);
+        }
+        AggregationResultData resultData = aggregate(aggregationData);
+        
+        LocalSuggestionIndex localSuggestionIndex = localSuggestionIndices.computeIfAbsent(indexName, name -> new LocalSuggestionIndex());
+        for (String field : fields) {
+            List<String> values = new ArrayList<>();
+            for (AggregationResultData.Bucket bucket : resultData.getBuckets(field)) {
+                values.add(bucket.getKey());
+            }
+            localSuggestionReaders.put(field, getPropertyReader(field));
+            localSuggestionIndex.load(field, values);
+        }
+    }
+    
+    private Method getPropertyReader(String field) {
+        for (PropertyDescriptor propertyDesc : getPropertyDescriptors(entityType)) {
+            if (propertyDesc.getName().equals(field) && propertyDesc.getReadMethod() != null) {
+                return propertyDesc.getReadMethod();
+            }
+        }
+        throw new ElasticSearchServiceException("The entity has no readable property: " + field);
+    }
+    
+    // the values of the fields indexed locally for the index of the handle, added once the write succeeded
+    private Map<String, String> readLocalSuggestions(IndexHandle<E> handle, E entity) {
+        if (entity == null || !localSuggestionIndices.containsKey(handle.getIndexName())) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> values = new HashMap<>();
+        for (Map.Entry<String, Method> reader : localSuggestionReaders.entrySet()) {
+            try {
+                Object value = reader.getValue().invoke(entity);
+                if (value != null) {
+                    values.put(reader.getKey(), value.toString());
+                }
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Unable to read the property {} for local suggestions", reader.getKey());
+            }
+        }
+        return values;
+    }
+    
+    // keyed by the index and the id of the documents in the bulk request
+    private void readLocalSuggestions(IndexHandle<E> handle, Map<String, E> entityMapWithId, Map<String, Map<String, String>> localSuggestions) {
+        if (CollectionUtils.isEmpty(entityMapWithId) || !localSuggestionIndices.containsKey(handle.getIndexName())) {
+            return;
+        }
+        for (Map.Entry<String, E> entry : entityMapWithId.entrySet()) {
+            localSuggestions.put(localSuggestionKey(handle.getIndexName(), entry.getKey()), readLocalSuggestions(handle, entry.getValue()));
+        }
+    }
+    
+    private void recordLocalSuggestions(String index, Map<String, String> values) {
+        LocalSuggestionIndex localSuggestionIndex = localSuggestionIndices.get(index);
+        if (localSuggestionIndex == null) {
+            return;
+        }
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            localSuggestionIndex.add(value.getKey(), value.getValue());
+        }
+    }
+    
+    // only the items written successfully, the response items are in the order of the requests
+    private void recordLocalSuggestions(BulkRequest bulkRequest, BulkResponse bulkResponse, Map<String, Map<String, String>> localSuggestions) {
+        if (localSuggestions.isEmpty()) {
+            return;
+        }
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            if (item.isFailed() || item.getOpType() == DocWriteRequest.OpType.DELETE) {
+                continue;
+            }
+            DocWriteRequest<?> request = bulkRequest.requests().get(item.getItemId());
+            Map<String, String> values = localSuggestions.get(localSuggestionKey(request.index(), request.id()));
+            if (values != null) {
+                recordLocalSuggestions(request.index(), values);
+            }
+        }
+    }
+    
+    private static String localSuggestionKey(String index, String id) {
+        return index + '/' + id;
+    }
+    
+    @Override
+    public List<String> suggestLocally(final String field, final String prefix, final int size) {
+        String indexName = getIndexHandle().getIndexName();
+        LocalSuggestionIndex localSuggestionIndex = localSuggestionIndices.get(indexName);
+        if (localSuggestionIndex == null || !localSuggestionIndex.contains(field)) {
+            throw new ElasticSearchServiceException("Local suggestions are not enabled for the field: " + field);
+        }
+        long startNanos = System.nanoTime();
+        List<String> suggestions = localSuggestionIndex.suggest(field, prefix, size);
+        metrics.recordLatency(OPERATION_SUGGEST_LOCALLY, indexName, System.nanoTime() - startNanos, true);
+        return suggestions;
+    }
+    
     @Override
     public List<E> search() {
         return search(new SearchQueryData().setSize(0));
@@ -561,34 +1210,73 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     @Override
     public List<E> search(final SearchQueryData queryData) {
+        return search(getIndexHandle(), queryData);
+    }
+    
+    List<E> search(IndexHandle<E> handle, SearchQueryData queryData) {
+        SearchRequest searchRequest = buildSearchRequest(handle, queryData);
+        // a list of hits needs no total: without counting all the matches, a search sorted like the index stops early
+        searchRequest.source().trackTotalHits(false);
         try {
-            return extractResultFromSearchResponse(client.search(buildSearchRequest(queryData)));
+            return extractResultFromSearchResponse(handle, executeSearch(OPERATION_SEARCH, handle, searchRequest, true));
         } 
         catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to search. Exception: " + e.getMessage());
         }
     }
         
-    private SearchRequest buildSearchRequest(SearchQueryData queryData) {
-        return new SearchRequest().source(buildSearchSource(queryData)).indices(indexName);
+    private SearchResponse executeSearch(String operationName, IndexHandle<E> handle, SearchRequest searchRequest, boolean hedged) throws IOException {
+        HedgedSearchExecutor executor = hedged ? hedgedSearchExecutor : null;
+        // the client which answered, the primary one after a fail over
+        AtomicReference<RestHighLevelClient> servingClient = new AtomicReference<>();
+        long startNanos = System.nanoTime();
+        SearchResponse response = read(operationName, handle.getIndexName(), readClient -> {
+            servingClient.set(readClient);
+            return executor != null ? executor.search(operationName, readClient, searchRequest) : readClient.search(searchRequest);
+        });
+        long roundTripNanos = System.nanoTime() - startNanos;
+        SlowQueryLog log = slowQueryLog;
+        if (log != null && log.isSlow(roundTripNanos)) {
+            log.onSlowSearch(operationName, handle.getIndexName(), handle.getSearchIndices(), handle.getRouting(), 
+                    searchRequest.source().toString(), response, roundTripNanos, servingClient.get().getLowLevelClient());
+        }
+        return response;
+    }
+    
+    private SearchRequest buildSearchRequest(IndexHandle<E> handle, SearchQueryData queryData) {
+        return buildSearchRequest(handle, buildSearchSource(queryData));
+    }
+    
+    private SearchRequest buildSearchRequest(IndexHandle<E> handle, SearchSourceBuilder searchSource) {
+        SearchRequest searchRequest = new SearchRequest().source(searchSource).indices(handle.getSearchIndices()).routing(handle.getRouting());
+        // the shard request cache only serves requests without hits (counts, aggregations)
+        if (searchSource.size() == 0) {
+            searchRequest.requestCache(true);
+        }
+        return searchRequest;
+    }
+    
+    // package-private for the benchmarks
+    SearchSourceBuilder buildSearchSource(SearchQueryData queryData) {
+        return buildSearchSource(queryData, queryData.getFrom(), queryData.getSize());
     }
     
-    private SearchSourceBuilder buildSearchSource(SearchQueryData queryData) {
+    private SearchSourceBuilder buildSearchSource(SearchQueryData queryData, int from, int size) {
         SearchSourceBuilder search = new SearchSourceBuilder();
         search.query(buildQuery(queryData))
-            .sort(buildSortOption(queryData.getSortBy()))
-            .from(queryData.getFrom())
-            .size(queryData.getSize())
+            .from(from)
+            .size(size)
             .timeout(TimeValue.timeValueMinutes(DEFAULT_TIMEOUT_IN_MINUTES));
+        // sorting is meaningless without hits and would only make the request differ from the cached one
+        if (size > 0) {
+            search.sort(buildSortOption(queryData.getSortBy()));
+        }
         return search;
     }
     
     private QueryBuilder buildQuery(SearchQueryData queryData) {
-        if (CollectionUtils.isEmpty(queryData.getSearchParams())) {
-            return QueryBuilders.matchAllQuery();
-        }
-        
-        return getDisMaxQueryBuilder(queryData.getSearchParams());
+        SearchQuery query = SearchQuery.from(queryData);
+        return query != null ? query.toQueryBuilder(dateRangeRounding) : QueryBuilders.matchAllQuery();
     }
     
     // Basically, we should sort by default Elastic Search field like "_id"
@@ -604,111 +1292,128 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
         return new FieldSortBuilder(FIELD_TIMESTAMP).unmappedType(FieldType.LONG.getType()).order(SortOrder.DESC);
     }
     
-    private DisMaxQueryBuilder getDisMaxQueryBuilder(List<SearchParams> searchParamsList) {
-        DisMaxQueryBuilder queryList = QueryBuilders.disMaxQuery();
-    	BoolQueryBuilder boolQuery =  QueryBuilders.boolQuery();
-
-        for (SearchParams params : searchParamsList) {
-            queryList.add(getBoolQueryBuilder(boolQuery, params));
-        }
-        return queryList;
-    }
-    
-    private BoolQueryBuilder getBoolQueryBuilder(BoolQueryBuilder boolQuery, SearchParams params) {
-        switch (SearchCondition.valueOf(params.getCondition())) {
-            case AND:
-                boolQuery.must().add(getQueryBuilder(params));
-                break;
-            case NOT:
-                boolQuery.mustNot().add(getQueryBuilder(params));
-                break;
-            case FILTER:
-                boolQuery.filter().add(getQueryBuilder(params));
-                break;
-            case OR:
-            default:
-                boolQuery.should().add(getQueryBuilder(params));
-                break;
-        }
-        
-        return boolQuery;
-    }
-    
-    private QueryBuilder getQueryBuilder(SearchParams params) {
-        if (params.getSearchType() == null) {
-            return getMatchPhrasePrefixQueryBuilder(params.getSearchParams()[0], params.getSearchParams()[1]);
-        }
-        switch (params.getSearchType()) {
-            case MULTI_MATCH:
-                return getMultiMatchQueryBuilder(params.getSearchParams()[0], Arrays.copyOfRange(params.getSearchParams(), 1, params.getSearchParams().length - 1));
-            case EXACT_MATCH:
-                return getTemQueryBuilder(params.getSearchParams()[0], params.getSearchParams()[1]);
-            case EXIST_MATCH:
-                return getExistFieldQueryBuilder(params.getSearchParams()[0]);
-            // TODO this is not a very good implementation since we have to convert back and forth 
-            // between String (because of my stupid design at first, all parameters are string!), Date (this old Java library is being used currently) 
-            // and Joda API (ElasticSearch uses Joda and the modern preferred way to do with date manipulation)
-            // Also we can investigate on the document_mapping.json, justify the format of date field => decrease the conversion complex
-            // Also this RANGE_MATCH can be used for number type: try to convert to Date, if null -> it's a number range query
-            case RANGE_MATCH: 
-                final String fromDate = DateFormatter.fromDateToJoda(params.getSearchParams()[1]);
-                final String toDate = DateFormatter.fromDateToJoda(params.getSearchParams()[2]);
-                final String fromValue = fromDate != null ? fromDate : params.getSearchParams()[1];
-                final String toValue = toDate != null ? toDate : params.getSearchParams()[2];
-                return getRangeQueryBuilder(params.getSearchParams()[0], fromValue, toValue);
-            case PREFIX_MATCH:
-            default:
-                return getMatchPhrasePrefixQueryBuilder(params.getSearchParams()[0], params.getSearchParams()[1]);
+    private List<E> extractResultFromSearchResponse(IndexHandle<E> handle, SearchResponse response) {
+        long startNanos = System.nanoTime();
+        List<E> entityList = new ArrayList<>();
+        Gson codec = handle.getCodec();
+        for (SearchHit searchHit : response.getHits().getHits()) {
+            entityList.add(codec.fromJson(searchHit.getSourceAsString(), entityType));
         }
+        metrics.recordSerialization(OPERATION_SEARCH, handle.getIndexName(), System.nanoTime() - startNanos);
+        return entityList;
     }
     
-    private <T> MultiMatchQueryBuilder getMultiMatchQueryBuilder(T searchText, String... searchFields) {
-        return QueryBuilders.multiMatchQuery(searchText, searchFields);
-    }
-    
-    private <T> MatchPhrasePrefixQueryBuilder getMatchPhrasePrefixQueryBuilder(String searchField, T searchText) {
-        return QueryBuilders.matchPhrasePrefixQuery(searchField, searchText);
+    @Override
+    public SearchResultData<E> searchWithRecordCount(final SearchQueryData queryData) {
+        return searchWithRecordCount(getIndexHandle(), queryData);
     }
     
-    // why error? match_phrase not supports zero_term_query? -> switch to term query instead
-    private <T> MatchPhraseQueryBuilder getMatchPhraseQueryBuilder(String searchField, T searchValue) {
-        return QueryBuilders.matchPhraseQuery(searchField, searchValue);
+    SearchResultData<E> searchWithRecordCount(IndexHandle<E> handle, SearchQueryData queryData) {
+        return searchWithStaleFallback(handle, queryData, () -> {
+            SearchResponse searchResponse = executeSearch(OPERATION_SEARCH, handle, buildSearchRequest(handle, queryData), true);
+            SearchResultData<E> searchResultData = new SearchResultData<>();
+            searchResultData.setNumberOfRecords(searchResponse.getHits().getTotalHits());
+            searchResultData.setResultList(extractResultFromSearchResponse(handle, searchResponse));
+            return searchResultData;
+        });
     }
     
-    private <T> TermQueryBuilder getTemQueryBuilder(String searchField, T searchValue) {
-        return QueryBuilders.termQuery(searchField, searchValue);
+    @Override
+    public SearchResultData<E> streamSearch(final SearchQueryData queryData) {
+        return streamSearch(getIndexHandle(), queryData);
     }
     
-    private <T> RangeQueryBuilder getRangeQueryBuilder(String searchField, T fromValue, T toValue) {
-        return QueryBuilders.rangeQuery(searchField).gte(fromValue).lte(toValue);
+    SearchResultData<E> streamSearch(IndexHandle<E> handle, SearchQueryData queryData) {
+        StreamingSearchOptions options = streamingSearchOptions;
+        return searchWithStaleFallback(handle, queryData, () -> {
+            Response response = performRawSearch(handle, queryData, options);
+            long startNanos = System.nanoTime();
+            SearchResultData<E> searchResultData = new SearchHitStreamReader<E>(handle.getCodec(), entityType, options)
+                    .read(response.getEntity().getContent(), queryData.getSize());
+            metrics.recordSerialization(OPERATION_SEARCH, handle.getIndexName(), System.nanoTime() - startNanos);
+            return searchResultData;
+        });
     }
     
-    private ExistsQueryBuilder getExistFieldQueryBuilder(String searchField) {
-        return QueryBuilders.existsQuery(searchField);
-    }
-
-    private List<E> extractResultFromSearchResponse(SearchResponse response) {
-        List<E> entityList = new ArrayList<>();
-        for (SearchHit searchHit : response.getHits().getHits()) {
-            entityList.add(GSON_MAPPER.fromJson(searchHit.getSourceAsString(), entityType));
+    // when the cluster is unavailable, serve the last result of the same search marked as stale (if enabled by the resilience options)
+    @SuppressWarnings("unchecked")
+    private SearchResultData<E> searchWithStaleFallback(IndexHandle<E> handle, SearchQueryData queryData, 
+            ClusterCallGuard.GuardedCall<SearchResultData<E>> search) {
+        ClusterCallGuard guard = clusterCallGuard;
+        String staleKey = guard.isServingStaleResults() 
+                ? handle.getSearchIndices() + "/" + handle.getRouting() + ":" + buildSearchSource(queryData) : null;
+        try {
+            SearchResultData<E> searchResultData = search.execute();
+            guard.putStaleResult(staleKey, searchResultData);
+            return searchResultData;
+        }
+        catch (IOException | RuntimeException e) {
+            SearchResultData<E> staleResult = ClusterCallGuard.isServerError(e) ? (SearchResultData<E>) guard.getStaleResult(staleKey) : null;
+            if (staleResult == null) {
+                if (e instanceof RuntimeException) {
+                    throw (RuntimeException) e;
+                }
+                throw new ElasticSearchServiceException("Unable to search. Exception: " + e.getMessage());
+            }
+            LOGGER.warn("Serving a stale search result, the search failed: {}", e.getMessage());
+            SearchResultData<E> searchResultData = new SearchResultData<>();
+            searchResultData.setNumberOfRecords(staleResult.getNumberOfRecords());
+            searchResultData.setResultList(new ArrayList<>(staleResult.getResultList()));
+            searchResultData.setStale(true);
+            return searchResultData;
         }
-        return entityList;
     }
     
     @Override
-    public SearchResultData<E> searchWithRecordCount(final SearchQueryData queryData) {
-        SearchResultData<E> searchResultData = new SearchResultData<>();
-        SearchResponse searchResponse = null;
+    public LazySearchResultData<E> searchLazily(final SearchQueryData queryData) {
+        return searchLazily(getIndexHandle(), queryData);
+    }
+    
+    LazySearchResultData<E> searchLazily(IndexHandle<E> handle, SearchQueryData queryData) {
         try {
-            searchResponse = client.search(buildSearchRequest(queryData));
+            Response response = performRawSearch(handle, queryData, streamingSearchOptions);
+            long startNanos = System.nanoTime();
+            LazySearchResultData<E> searchResultData = LazySearchResultData.of(EntityUtils.toByteArray(response.getEntity()), 
+                    handle.getCodec(), entityType);
+            metrics.recordSerialization(OPERATION_SEARCH, handle.getIndexName(), System.nanoTime() - startNanos);
+            return searchResultData;
         }
         catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to search. Exception: " + e.getMessage());
         }
+    }
+    
+    // search through the low-level client, so the response body can be read without building a SearchResponse
+    private Response performRawSearch(IndexHandle<E> handle, SearchQueryData queryData, StreamingSearchOptions options) throws IOException {
+        String searchEndpoint = String.format("/%s/_search", handle.getSearchIndices());
+        Map<String, String> params = buildRoutingParams(handle);
+        params.put("filter_path", SearchHitStreamReader.FILTER_PATH);
+        String searchSource = buildSearchSource(queryData).toString();
+        HttpEntity searchEntity = new NStringEntity(searchSource, ContentType.APPLICATION_JSON);
         
-        searchResultData.setNumberOfRecords(searchResponse.getHits().getTotalHits());
-        searchResultData.setResultList(extractResultFromSearchResponse(searchResponse));
-        return searchResultData;
+        AtomicReference<RestHighLevelClient> servingClient = new AtomicReference<>();
+        long startNanos = System.nanoTime();
+        Response response = read(OPERATION_SEARCH, handle.getIndexName(), readClient -> {
+            servingClient.set(readClient);
+            return readClient.getLowLevelClient().performRequest(AliasRequestType.HttpMethod.POST.getMethod(), 
+                    searchEndpoint, params, searchEntity, new HeapBufferedResponseConsumerFactory(options.getMaxResponseBufferBytes()));
+        });
+        long roundTripNanos = System.nanoTime() - startNanos;
+        SlowQueryLog log = slowQueryLog;
+        if (log != null && log.isSlow(roundTripNanos)) {
+            log.onSlowSearch(OPERATION_SEARCH, handle.getIndexName(), handle.getSearchIndices(), handle.getRouting(), searchSource, null, 
+                    roundTripNanos, servingClient.get().getLowLevelClient());
+        }
+        return response;
+    }
+    
+    // the query string parameters of the low-level requests, with the routing of the handle
+    private Map<String, String> buildRoutingParams(IndexHandle<E> handle) {
+        Map<String, String> params = new HashMap<>();
+        if (handle.getRouting() != null) {
+            params.put("routing", handle.getRouting());
+        }
+        return params;
     }
     
     @Override
@@ -718,43 +1423,86 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     @Override
     public void saveOrUpdate(final E entity, final String id, final ServiceMode mode) {
-        if (existDocument(indexName, documentType, id)) {
-            delete(entity, id, ServiceMode.SYNC);
+        saveOrUpdate(getIndexHandle(), entity, id, mode);
+    }
+    
+    void saveOrUpdate(IndexHandle<E> handle, E entity, String id, ServiceMode mode) {
+        if (existDocument(handle, id)) {
+            delete(handle, id, ServiceMode.SYNC);
         }
         
-        IndexRequest indexRequest = buildIndexRequest(entity, id);
+        IndexRequest indexRequest = buildIndexRequest(handle, entity, id);
+        Map<String, String> localSuggestions = readLocalSuggestions(handle, entity);
         if (ServiceMode.isSync(mode)) {
-            index(indexRequest);
+            index(indexRequest, localSuggestions);
             return;
         }
 
-        indexAsync(indexRequest);
+        indexAsync(indexRequest, localSuggestions);
     }
     
-    private void index(IndexRequest indexRequest) {
+    private void index(IndexRequest indexRequest, Map<String, String> localSuggestions) {
+        evictSource(indexRequest);
         try {
-            client.index(indexRequest);
+            guardedCall(OPERATION_INDEX, indexRequest.index(), false, () -> client.index(indexRequest));
+            cacheSource(indexRequest);
+            recordLocalSuggestions(indexRequest.index(), localSuggestions);
         }
         catch (ElasticsearchException e) {
+            evictSource(indexRequest);
             commonElasticSearchException(e);
         }
         catch (IOException e) {
+            // the document may have been written before the call failed
+            evictSource(indexRequest);
             throw new ElasticSearchServiceException("Unable to index the entity document. Exception: " + e.getMessage());
         }
     }
     
-    private void indexAsync(IndexRequest indexRequest) {
-        client.indexAsync(indexRequest, buildAsyncListener());
+    private void indexAsync(IndexRequest indexRequest, Map<String, String> localSuggestions) {
+        evictSource(indexRequest);
+        client.indexAsync(indexRequest, buildAsyncListener(OPERATION_INDEX, indexRequest.index(), () -> evictSource(indexRequest), 
+                response -> recordLocalSuggestions(indexRequest.index(), localSuggestions)));
     }
     
-    private <T> ActionListener<T> buildAsyncListener() {
+    private ClusterCallGuard.Permit acquirePermit(String operationName, String index) {
+        try {
+            return clusterCallGuard.acquire(operationName, false);
+        }
+        catch (ElasticSearchServiceUnavailableException e) {
+            metrics.recordRejection(operationName, index);
+            throw e;
+        }
+    }
+    
+    private <T> ActionListener<T> buildAsyncListener(String operationName, String index, Runnable completion) {
+        return buildAsyncListener(operationName, index, completion, response -> { });
+    }
+    
+    // the completion runs when the call answered, successfully or not, the success only with its response
+    private <T> ActionListener<T> buildAsyncListener(String operationName, String index, Runnable completion, Consumer<T> success) {
+        ClusterCallGuard.Permit permit = acquirePermit(operationName, index);
+        long startNanos = System.nanoTime();
+        metrics.asyncStarted(operationName);
         return new ActionListener<T>() {
             @Override
             public void onResponse(T response) {
+                permit.release(false);
+                metrics.asyncFinished(operationName);
+                metrics.recordLatency(operationName, index, System.nanoTime() - startNanos, true);
+                completion.run();
+                if (response instanceof BulkResponse) {
+                    recordBulkItems(index, (BulkResponse) response);
+                }
+                success.accept(response);
                 LOGGER.info("Asynchronous operation has been done successfully");
             }
             @Override
             public void onFailure(Exception e) {
+                permit.release(ClusterCallGuard.isServerError(e));
+                metrics.asyncFinished(operationName);
+                metrics.recordLatency(operationName, index, System.nanoTime() - startNanos, false);
+                completion.run();
                 throw new ElasticSearchServiceException("Unable to operate asynchronous action. Exception: " + e.getMessage());
             }
         };
@@ -763,11 +1511,14 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     @Override
     public Map<String, Map<String, Object>> createMappingInfo(final Map<String, String> fieldsToIndex) {
         Map<String, Map<String, Object>> mappings = new HashMap<>();
-        for (PropertyDescriptor propertyDesc : getBeanInfo(entityType).getPropertyDescriptors()) {
+        for (PropertyDescriptor propertyDesc : getPropertyDescriptors(entityType)) {
             Map<String, Object> fieldMapppingInfo = new HashMap<>();
             String fieldType = StringUtils.isEmpty(fieldsToIndex.get(propertyDesc.getName())) ? FieldType.TEXT.getType() 
                     : fieldsToIndex.get(propertyDesc.getName());
             fieldMapppingInfo.put(FIELD_TYPE, fieldType);
+            if (FieldType.AUTO_COMPLETE.getType().equals(fieldType)) {
+                fieldMapppingInfo.putAll(EntityMappingGenerator.buildAutoCompleteMapping());
+            }
             if (FieldType.DATE.getType().equals(fieldType)) {
                 fieldMapppingInfo.put(FIELD_DATE_FORMAT, DATE_FORMAT);
             }
@@ -776,11 +1527,20 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
             if (fieldsToIndex.containsKey(propertyDesc.getName())) {
                 fieldMapppingInfo.put(FIELD_INDEX, true);
             }
+            else if (FieldType.TEXT.getType().equals(fieldType)) {
+                // the length norms are only used for scoring, a field which is not indexed never is
+                fieldMapppingInfo.put(FIELD_NORMS, false);
+            }
             mappings.put(propertyDesc.getName(), fieldMapppingInfo);
         }
         return mappings;
     }
-        
+    
+    @Override
+    public Map<String, Map<String, Object>> createMappingInfo() {
+        return EntityMappingGenerator.generate(entityType);
+    }
+    
     @Override
     public Map<String, Map<String, Object>> createMappingInfo(final List<String> fieldsToIndex) {
         final Map<String, String> fieldsToIndexMap = new HashMap<>();
@@ -798,7 +1558,8 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     public void createIndexAlias(final String indexName, final String alias) {
         HttpEntity entity = new NStringEntity(buildJsonAliasRequest(AliasRequestType.ADD, indexName, alias), ContentType.APPLICATION_JSON);
         try {
-            getLowLevelClient().performRequest(AliasRequestType.HttpMethod.POST.getMethod(), AliasRequestType.AliasActions.ALIAS_ENDPOINT, new HashMap<>(), entity);
+            measuredCall(OPERATION_ALIASES, indexName, () -> getLowLevelClient().performRequest(AliasRequestType.HttpMethod.POST.getMethod(), 
+                    AliasRequestType.AliasActions.ALIAS_ENDPOINT, new HashMap<>(), entity));
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to create alias for the index. Exception: " + e.getMessage());
         }
@@ -808,12 +1569,32 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     public void removeIndexAlias(final String indexName, final String alias) {
         HttpEntity entity = new NStringEntity(buildJsonAliasRequest(AliasRequestType.REMOVE, indexName, alias), ContentType.APPLICATION_JSON);
         try {
-            getLowLevelClient().performRequest(AliasRequestType.HttpMethod.POST.getMethod(), AliasRequestType.AliasActions.ALIAS_ENDPOINT, new HashMap<>(), entity);
+            measuredCall(OPERATION_ALIASES, indexName, () -> getLowLevelClient().performRequest(AliasRequestType.HttpMethod.POST.getMethod(), 
+                    AliasRequestType.AliasActions.ALIAS_ENDPOINT, new HashMap<>(), entity));
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to remove alias for the index. Exception: " + e.getMessage());
         }
     }
     
+    // the indices behind an alias, empty if the alias does not exist
+    List<String> getAliasIndices(String alias) {
+        String aliasEndpoint = String.format("/_alias/%s", alias);
+        try {
+            Response response = measuredCall(OPERATION_ALIASES, alias, () -> getLowLevelClient().performRequest(AliasRequestType.HttpMethod.GET.getMethod(), 
+                    aliasEndpoint, new HashMap<>()));
+            List<String> indices = new ArrayList<>();
+            JACKSON_MAPPER.readTree(response.getEntity().getContent()).fieldNames().forEachRemaining(indices::add);
+            return indices;
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() == RestStatus.NOT_FOUND.getStatus()) {
+                return Collections.emptyList();
+            }
+            throw new ElasticSearchServiceException("Unable to get the indices of the alias. Exception: " + e.getMessage());
+        } catch (IOException e) {
+            throw new ElasticSearchServiceException("Unable to get the indices of the alias. Exception: " + e.getMessage());
+        }
+    }
+    
     private String buildJsonAliasRequest(AliasRequestType type, String index, String alias) {
         String jsonAliasRequest = type.getJsonRequest();
         jsonAliasRequest = jsonAliasRequest.replace("sampleIndex", index);
@@ -830,7 +1611,7 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     public void refresh(String... indexList) {
         RefreshRequest request = new RefreshRequest(indexList); 
         try {
-            client.indices().refresh(request);
+            measuredCall(OPERATION_REFRESH, null, () -> client.indices().refresh(request));
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to refresh the index. Exception: " + e.getMessage());
         }
@@ -840,7 +1621,7 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     public void flush(String... indexList) {
         FlushRequest request = new FlushRequest(indexList);
         try {
-            client.indices().flush(request);
+            measuredCall(OPERATION_FLUSH, null, () -> client.indices().flush(request));
         } catch (IOException e) {
             throw new ElasticSearchServiceException("Unable to flush the index. Exception: " + e.getMessage());
         }
@@ -848,7 +1629,67 @@ public abstract class ElasticSearchServiceImpl<E> implements ElasticSearchServic
     
     @Override
     public void setRefreshPolicy(RefreshPolicy policy) {
-        REFRESH_POLICY = policy;
+        this.refreshPolicy = policy != null ? policy : RefreshPolicy.NONE;
+        IndexHandle<E> handle = defaultHandle;
+        if (handle != null) {
+            this.defaultHandle = handle.withRefreshPolicy(policy);
+        }
+    }
+    
+    @Override
+    public void setDateRangeRounding(DateRounding rounding) {
+        this.dateRangeRounding = rounding != null ? rounding : DateRounding.NONE;
+    }
+    
+    @Override
+    public void setStreamingSearchOptions(StreamingSearchOptions options) {
+        this.streamingSearchOptions = options != null ? options : new StreamingSearchOptions();
+    }
+    
+    @Override
+    public void setHedgedSearchOptions(HedgedSearchOptions options) {
+        this.hedgedSearchExecutor = options != null ? new HedgedSearchExecutor(options) : null;
+    }
+    
+    @Override
+    public void setResilienceOptions(ResilienceOptions options) {
+        this.clusterCallGuard = new ClusterCallGuard(options);
+    }
+    
+    @Override
+    public void setSlowQueryLogOptions(SlowQueryLogOptions options) {
+        this.slowQueryLog = options != null ? new SlowQueryLog(options) : null;
+    }
+    
+    @Override
+    public void setNearCacheOptions(NearCacheOptions options) {
+        this.nearCache = options != null ? new DocumentNearCache(options) : null;
+    }
+    
+    @Override
+    public void setGetBatchingOptions(GetBatchingOptions options) {
+        this.getBatcher = new GetBatcher(options != null ? options : new GetBatchingOptions(), this::multiGetAsync);
+    }
+    
+    @Override
+    public List<SlowQueryRecord> getSlowQueries() {
+        SlowQueryLog log = slowQueryLog;
+        return log != null ? log.getRecords() : Collections.emptyList();
+    }
+    
+    @Override
+    public void enableAdaptiveReplicaSelection() {
+        JsonObject setting = new JsonObject();
+        setting.addProperty(ADAPTIVE_REPLICA_SELECTION_SETTING, true);
+        JsonObject request = new JsonObject();
+        request.add("persistent", setting);
+        HttpEntity entity = new NStringEntity(GSON_MAPPER.toJson(request), ContentType.APPLICATION_JSON);
+        try {
+            measuredCall(OPERATION_CLUSTER_SETTINGS, null, () -> getLowLevelClient().performRequest(AliasRequestType.HttpMethod.PUT.getMethod(), 
+                    CLUSTER_SETTINGS_ENDPOINT, new HashMap<>(), entity));
+        } catch (IOException e) {
+            throw new ElasticSearchServiceException("Unable to enable adaptive replica selection. Exception: " + e.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,283 @@
+package com.wse.common.elasticsearch.service;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.wse.common.elasticsearch.service.MappedField.IndexOptions;
+
+/**
+ * <pre>
+ * Generate the mappings of an entity class from its fields and their {@link MappedField} annotations
+ * The fields are the ones Gson writes (the non static, non transient fields of the class and its superclasses, named by
+ * {@link SerializedName} if present), so the mappings always match the documents
+ * The date fields accept ISO dates (as sent by the date ranges of the queries) and epoch milliseconds, a plain Gson writes
+ * java.util.Date in a locale format which neither parses: entities with dates are written with {@link #epochMillisCodec()}
+ * The defaults keep the index small: strings are keywords (doc values, no norms), text fields have no doc values and get
+ * a keyword sub-field only when sortable, and the fields which are not indexed have neither norms nor doc values unless sortable
+ * The mappings are generated once per class and shared, they must not be modified
+ * </pre>
+ */
+public final class EntityMappingGenerator {
+
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_INDEX = "index";
+    private static final String FIELD_DOC_VALUES = "doc_values";
+    private static final String FIELD_NORMS = "norms";
+    private static final String FIELD_INDEX_OPTIONS = "index_options";
+    private static final String FIELD_FORMAT = "format";
+    private static final String FIELD_ENABLED = "enabled";
+    private static final String FIELD_PROPERTIES = "properties";
+    private static final String FIELD_SUB_FIELDS = "fields";
+    private static final String FIELD_ANALYZER = "analyzer";
+    private static final String FIELD_SEARCH_ANALYZER = "search_analyzer";
+    private static final String FIELD_IGNORE_ABOVE = "ignore_above";
+    private static final String KEYWORD_SUB_FIELD = "keyword";
+    private static final String SUGGEST_SUB_FIELD = "suggest";
+    private static final String COMPLETION_TYPE = "completion";
+    private static final String DEFAULT_DATE_FORMAT = "strict_date_optional_time||epoch_millis";
+    // longer values are not indexed by the keyword sub-field, they are rarely sorted on and would bloat the terms
+    private static final int KEYWORD_IGNORE_ABOVE = 256;
+
+    private static final Map<Class<?>, Map<String, Map<String, Object>>> MAPPINGS = new ConcurrentHashMap<>();
+
+    private static final Gson EPOCH_MILLIS_CODEC = new GsonBuilder().registerTypeAdapter(Date.class, new EpochMillisAdapter().nullSafe()).create();
+
+    private EntityMappingGenerator() {
+    }
+
+    /**
+     * @return the mappings of the fields of the class by field name, to be used with
+     * {@link ElasticSearchService#createIndexWithMappings(String, String, Object)}
+     */
+    public static Map<String, Map<String, Object>> generate(Class<?> entityType) {
+        return MAPPINGS.computeIfAbsent(entityType, type -> Collections.unmodifiableMap(generateProperties(type, new HashSet<>())));
+    }
+
+    /**
+     * @return a Gson instance which writes java.util.Date as epoch milliseconds, one of the default formats of the generated date fields
+     * (See {@link IndexHandle#withCodec(Gson)}), it still reads the dates formatted by a plain Gson
+     */
+    public static Gson epochMillisCodec() {
+        return EPOCH_MILLIS_CODEC;
+    }
+
+    // the text field with edge n-grams and a completion sub-field, also used by the mappings built from field names
+    static Map<String, Object> buildAutoCompleteMapping() {
+        Map<String, Object> mapping = new LinkedHashMap<>();
+        mapping.put(FIELD_TYPE, MappedField.Type.AUTO_COMPLETE.getType());
+        mapping.put(FIELD_ANALYZER, ElasticSearchAnalyzerFactory.AUTOCOMPLETE_ANALYZER);
+        mapping.put(FIELD_SEARCH_ANALYZER, ElasticSearchAnalyzerFactory.AUTOCOMPLETE_SEARCH_ANALYZER);
+        mapping.put(FIELD_SUB_FIELDS, Collections.singletonMap(SUGGEST_SUB_FIELD, Collections.singletonMap(FIELD_TYPE, COMPLETION_TYPE)));
+        return mapping;
+    }
+
+    // the classes of the path are tracked so that a recursive structure ends with an object which is not mapped further
+    private static Map<String, Map<String, Object>> generateProperties(Class<?> type, Set<Class<?>> path) {
+        Map<String, Map<String, Object>> properties = new LinkedHashMap<>();
+        path.add(type);
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                String name = serializedName != null ? serializedName.value() : field.getName();
+                properties.putIfAbsent(name, generateField(field, path));
+            }
+        }
+        path.remove(type);
+        return properties;
+    }
+
+    private static Map<String, Object> generateField(Field field, Set<Class<?>> path) {
+        MappedField annotation = field.getAnnotation(MappedField.class);
+        Class<?> valueType = getValueType(field);
+        MappedField.Type type = annotation != null && annotation.type() != MappedField.Type.AUTO ? annotation.type() : inferType(valueType);
+
+        Map<String, Object> mapping;
+        switch (type) {
+            case AUTO_COMPLETE:
+                mapping = buildAutoCompleteMapping();
+                break;
+            case OBJECT:
+                mapping = buildObjectMapping(valueType, annotation, path);
+                break;
+            case TEXT:
+                mapping = buildTextMapping(annotation);
+                break;
+            default:
+                mapping = buildValueMapping(type, annotation);
+                break;
+        }
+        return mapping;
+    }
+
+    private static Map<String, Object> buildTextMapping(MappedField annotation) {
+        Map<String, Object> mapping = new LinkedHashMap<>();
+        mapping.put(FIELD_TYPE, MappedField.Type.TEXT.getType());
+        if (annotation == null) {
+            return mapping;
+        }
+        if (!annotation.index()) {
+            mapping.put(FIELD_INDEX, false);
+            mapping.put(FIELD_NORMS, false);
+        }
+        else {
+            if (!annotation.norms()) {
+                mapping.put(FIELD_NORMS, false);
+            }
+            putIndexOptions(mapping, annotation);
+        }
+        if (annotation.sortable()) {
+            Map<String, Object> keyword = new LinkedHashMap<>();
+            keyword.put(FIELD_TYPE, MappedField.Type.KEYWORD.getType());
+            keyword.put(FIELD_IGNORE_ABOVE, KEYWORD_IGNORE_ABOVE);
+            mapping.put(FIELD_SUB_FIELDS, Collections.singletonMap(KEYWORD_SUB_FIELD, keyword));
+        }
+        return mapping;
+    }
+
+    // keywords, numbers, booleans and dates: they all have doc values, keywords have no norms by default
+    private static Map<String, Object> buildValueMapping(MappedField.Type type, MappedField annotation) {
+        Map<String, Object> mapping = new LinkedHashMap<>();
+        mapping.put(FIELD_TYPE, type.getType());
+        if (type == MappedField.Type.DATE) {
+            mapping.put(FIELD_FORMAT, annotation != null && !annotation.format().isEmpty() ? annotation.format() : DEFAULT_DATE_FORMAT);
+        }
+        if (annotation == null) {
+            return mapping;
+        }
+        if (!annotation.index()) {
+            mapping.put(FIELD_INDEX, false);
+        }
+        // a field which is not indexed keeps its doc values only to be sorted or aggregated on
+        if (!annotation.docValues() || (!annotation.index() && !annotation.sortable())) {
+            mapping.put(FIELD_DOC_VALUES, false);
+        }
+        if (type == MappedField.Type.KEYWORD && annotation.index()) {
+            putIndexOptions(mapping, annotation);
+        }
+        return mapping;
+    }
+
+    private static Map<String, Object> buildObjectMapping(Class<?> valueType, MappedField annotation, Set<Class<?>> path) {
+        Map<String, Object> mapping = new LinkedHashMap<>();
+        mapping.put(FIELD_TYPE, MappedField.Type.OBJECT.getType());
+        if ((annotation != null && !annotation.enabled()) || path.contains(valueType) || isOpaque(valueType)) {
+            mapping.put(FIELD_ENABLED, false);
+        }
+        else if (!Map.class.isAssignableFrom(valueType)) {
+            mapping.put(FIELD_PROPERTIES, generateProperties(valueType, path));
+        }
+        return mapping;
+    }
+
+    private static void putIndexOptions(Map<String, Object> mapping, MappedField annotation) {
+        if (annotation.indexOptions() != IndexOptions.DEFAULT) {
+            mapping.put(FIELD_INDEX_OPTIONS, annotation.indexOptions().name().toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    private static MappedField.Type inferType(Class<?> valueType) {
+        if (valueType == String.class || valueType == Character.class || valueType == char.class || valueType.isEnum()) {
+            return MappedField.Type.KEYWORD;
+        }
+        if (valueType == Long.class || valueType == long.class || valueType == BigInteger.class) {
+            return MappedField.Type.LONG;
+        }
+        if (valueType == Integer.class || valueType == int.class) {
+            return MappedField.Type.INTEGER;
+        }
+        if (valueType == Short.class || valueType == short.class) {
+            return MappedField.Type.SHORT;
+        }
+        if (valueType == Byte.class || valueType == byte.class) {
+            return MappedField.Type.BYTE;
+        }
+        if (valueType == Double.class || valueType == double.class || valueType == BigDecimal.class) {
+            return MappedField.Type.DOUBLE;
+        }
+        if (valueType == Float.class || valueType == float.class) {
+            return MappedField.Type.FLOAT;
+        }
+        if (valueType == Boolean.class || valueType == boolean.class) {
+            return MappedField.Type.BOOLEAN;
+        }
+        if (Date.class.isAssignableFrom(valueType)) {
+            return MappedField.Type.DATE;
+        }
+        return MappedField.Type.OBJECT;
+    }
+
+    // the JDK classes other than maps are written by Gson from their private fields, they are kept in the source only
+    private static boolean isOpaque(Class<?> valueType) {
+        return valueType == Object.class || (valueType.getName().startsWith("java.") && !Map.class.isAssignableFrom(valueType));
+    }
+
+    // an array or a collection is mapped as its elements, Elastic Search has no array type
+    private static Class<?> getValueType(Field field) {
+        Class<?> fieldType = field.getType();
+        if (fieldType.isArray()) {
+            return fieldType.getComponentType();
+        }
+        if (Collection.class.isAssignableFrom(fieldType)) {
+            Type genericType = field.getGenericType();
+            if (genericType instanceof ParameterizedType) {
+                Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                if (elementType instanceof Class) {
+                    return (Class<?>) elementType;
+                }
+            }
+            return Object.class;
+        }
+        return fieldType;
+    }
+
+    private static final class EpochMillisAdapter extends TypeAdapter<Date> {
+        @Override
+        public void write(JsonWriter out, Date date) throws IOException {
+            out.value(date.getTime());
+        }
+
+        // the documents written before by a plain Gson have their dates formatted in the default locale
+        private static final TypeAdapter<Date> FORMATTED_DATE_ADAPTER = new Gson().getAdapter(Date.class);
+
+        @Override
+        public Date read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NUMBER) {
+                return new Date(in.nextLong());
+            }
+            String value = in.nextString();
+            try {
+                return new Date(Long.parseLong(value));
+            }
+            catch (NumberFormatException e) {
+                return FORMATTED_DATE_ADAPTER.fromJsonTree(new JsonPrimitive(value));
+            }
+        }
+    }
+
+}
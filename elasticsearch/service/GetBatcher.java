@@ -0,0 +1,176 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+
+/**
+ * <pre>
+ * Collect the gets by id of the concurrent callers and send them as one multi-get request, when the batch is full or
+ * when the first get of the batch waited for the configured delay. Each caller gets the source of its own document.
+ * The items keep their index, type and routing, so the gets of different indices share the same batch.
+ * The same document requested several times in a batch is requested once.
+ * The futures are completed on the callback executor, never on the I/O threads of the client.
+ * </pre>
+ */
+final class GetBatcher {
+
+    interface BatchSender {
+        void send(MultiGetRequest request, ActionListener<MultiGetResponse> listener);
+    }
+
+    private final GetBatchingOptions options;
+    private final BatchSender sender;
+
+    private final Object lock = new Object();
+    // guarded by the lock
+    private List<PendingGet> pendingGets = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    GetBatcher(GetBatchingOptions options, BatchSender sender) {
+        this.options = options;
+        this.sender = sender;
+    }
+
+    /**
+     * @return the source of the document, null if it does not exist
+     */
+    CompletableFuture<String> get(MultiGetRequest.Item item) {
+        PendingGet pendingGet = new PendingGet(item);
+        List<PendingGet> batch = null;
+        synchronized (lock) {
+            // the first get of a batch is queued only once its flush is scheduled, a get queued without one would never complete
+            if (pendingGets.isEmpty() && options.getMaxBatchSize() > 1) {
+                try {
+                    scheduledFlush = options.getScheduler().schedule(this::flush, options.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+                }
+                catch (RejectedExecutionException e) {
+                    pendingGet.result.completeExceptionally(new ElasticSearchServiceException("Unable to schedule the batch of gets. Exception: "
+                            + e.getMessage()));
+                    return pendingGet.result;
+                }
+            }
+            pendingGets.add(pendingGet);
+            if (pendingGets.size() >= options.getMaxBatchSize()) {
+                batch = takePendingGets();
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        return pendingGet.result;
+    }
+
+    private void flush() {
+        List<PendingGet> batch;
+        synchronized (lock) {
+            if (pendingGets.isEmpty()) {
+                return;
+            }
+            batch = takePendingGets();
+        }
+        send(batch);
+    }
+
+    // called with the lock held
+    private List<PendingGet> takePendingGets() {
+        List<PendingGet> batch = pendingGets;
+        pendingGets = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(List<PendingGet> batch) {
+        // the callers by document, in the order of the items of the request
+        Map<String, List<PendingGet>> callers = new LinkedHashMap<>();
+        MultiGetRequest request = new MultiGetRequest();
+        for (PendingGet pendingGet : batch) {
+            callers.computeIfAbsent(pendingGet.getKey(), key -> {
+                request.add(pendingGet.item);
+                return new ArrayList<>();
+            }).add(pendingGet);
+        }
+        List<List<PendingGet>> callersByItem = new ArrayList<>(callers.values());
+
+        try {
+            sender.send(request, new ActionListener<MultiGetResponse>() {
+                @Override
+                public void onResponse(MultiGetResponse response) {
+                    MultiGetItemResponse[] items = response.getResponses();
+                    runCallbacks(batch, () -> {
+                        for (int i = 0; i < items.length; i++) {
+                            complete(callersByItem.get(i), items[i]);
+                        }
+                    });
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    runCallbacks(batch, () -> fail(batch, new ElasticSearchServiceException("Unable to get the documents. Exception: "
+                            + e.getMessage())));
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            // rejected before being sent, by the resilience layer for example
+            fail(batch, e);
+        }
+    }
+
+    // the listener runs on an I/O thread of the client, which must not decode the documents nor run the continuations of the callers
+    private void runCallbacks(List<PendingGet> batch, Runnable callbacks) {
+        try {
+            options.getCallbackExecutor().execute(callbacks);
+        }
+        catch (RejectedExecutionException e) {
+            fail(batch, new ElasticSearchServiceException("Unable to complete the batch of gets. Exception: " + e.getMessage()));
+        }
+    }
+
+    private static void complete(List<PendingGet> pendingGets, MultiGetItemResponse item) {
+        if (item.isFailed()) {
+            fail(pendingGets, new ElasticSearchServiceException("Unable to get the document: " + item.getId()
+                    + ". Exception: " + item.getFailure().getMessage()));
+            return;
+        }
+        String source = item.getResponse().isExists() ? item.getResponse().getSourceAsString() : null;
+        for (PendingGet pendingGet : pendingGets) {
+            pendingGet.result.complete(source);
+        }
+    }
+
+    private static void fail(List<PendingGet> pendingGets, Exception e) {
+        for (PendingGet pendingGet : pendingGets) {
+            pendingGet.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class PendingGet {
+        private final MultiGetRequest.Item item;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        PendingGet(MultiGetRequest.Item item) {
+            this.item = item;
+        }
+
+        String getKey() {
+            return item.index() + '/' + item.type() + '/' + item.id() + '/' + item.routing();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * <pre>
+ * Options of the batching of the asynchronous gets by id: the gets arriving within the delay are sent as one multi-get
+ * request, earlier if the batch is full
+ * See {@link ElasticSearchService#setGetBatchingOptions(GetBatchingOptions)}
+ * </pre>
+ */
+public class GetBatchingOptions {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 2;
+
+    private static final ScheduledExecutorService DEFAULT_SCHEDULER = DaemonExecutors.newScheduler("get-batching");
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    // the longest time the first get of a batch waits for the others, added to its latency
+    private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+    private ScheduledExecutorService scheduler = DEFAULT_SCHEDULER;
+
+    // completes the futures of the callers (decoding and their own continuations) off the I/O threads of the client
+    private Executor callbackExecutor = ForkJoinPool.commonPool();
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public GetBatchingOptions setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public GetBatchingOptions setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public GetBatchingOptions setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    public GetBatchingOptions setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.wse.common.elasticsearch.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+
+/**
+ * <pre>
+ * Send a search, and a duplicate of it if the first one is slower than the configured percentile of the recent latencies.
+ * The duplicate is coordinated by the next node of the client (its hosts are used in turn) and keeps the preference of the
+ * first request, so without a preference its shard copies are picked by adaptive replica selection when it is enabled
+ * (See {@link ElasticSearchService#enableAdaptiveReplicaSelection()}), otherwise in turn. It is not steered away from the
+ * copies of the first request, which it may hit again. The first response wins.
+ * The latencies are kept per operation, so the fast cached counts do not lower the delay of the searches of hits.
+ * The client of this Elastic Search version cannot cancel a request, so the slower one is only ignored.
+ * </pre>
+ */
+final class HedgedSearchExecutor {
+
+    private final HedgedSearchOptions options;
+    // by operation name
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Semaphore hedgePermits;
+
+    HedgedSearchExecutor(HedgedSearchOptions options) {
+        this.options = options;
+        this.hedgePermits = new Semaphore(options.getMaxConcurrentHedges());
+    }
+
+    SearchResponse search(String operationName, RestHighLevelClient client, SearchRequest searchRequest) throws IOException {
+        LatencyWindow operationLatencies = latencies.computeIfAbsent(operationName, name -> new LatencyWindow(options.getSampleSize()));
+        HedgedCall call = new HedgedCall(operationLatencies);
+        long startNanos = System.nanoTime();
+        client.searchAsync(searchRequest, call.listener(startNanos, true));
+
+        ScheduledFuture<?> hedge = options.getScheduler().schedule(() -> sendHedge(client, searchRequest, call),
+                getHedgeDelayMillis(operationLatencies), TimeUnit.MILLISECONDS);
+        call.result.whenComplete((response, failure) -> hedge.cancel(false));
+        return call.await();
+    }
+
+    private void sendHedge(RestHighLevelClient client, SearchRequest searchRequest, HedgedCall call) {
+        if (!hedgePermits.tryAcquire()) {
+            return;
+        }
+        if (!call.startHedge()) {
+            hedgePermits.release();
+            return;
+        }
+        SearchRequest hedgeRequest = new SearchRequest(searchRequest.indices(), searchRequest.source())
+                .types(searchRequest.types())
+                .routing(searchRequest.routing())
+                .indicesOptions(searchRequest.indicesOptions())
+                .requestCache(searchRequest.requestCache())
+                .preference(searchRequest.preference());
+        client.searchAsync(hedgeRequest, call.listener(System.nanoTime(), false));
+    }
+
+    private long getHedgeDelayMillis(LatencyWindow operationLatencies) {
+        long percentile = operationLatencies.getPercentile(options.getLatencyPercentile());
+        if (percentile < 0) {
+            return options.getMaxDelayMillis();
+        }
+        return Math.max(options.getMinDelayMillis(), Math.min(options.getMaxDelayMillis(), percentile));
+    }
+
+    private final class HedgedCall {
+        private final LatencyWindow latencies;
+        private final CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+        // the requests sent and not answered yet, the call fails only when all of them failed
+        private final AtomicInteger inFlight = new AtomicInteger(1);
+
+        HedgedCall(LatencyWindow latencies) {
+            this.latencies = latencies;
+        }
+
+        ActionListener<SearchResponse> listener(long startNanos, boolean first) {
+            return new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    // only the first request is recorded, the hedged ones would hide the slow responses we hedge against
+                    if (first) {
+                        latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    }
+                    else {
+                        hedgePermits.release();
+                    }
+                    inFlight.decrementAndGet();
+                    result.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    if (!first) {
+                        hedgePermits.release();
+                    }
+                    if (inFlight.decrementAndGet() == 0) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            };
+        }
+
+        // no duplicate once a response arrived or every request failed
+        boolean startHedge() {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current == 0 || result.isDone()) {
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        SearchResponse await() throws IOException {
+            try {
+                return result.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the search response", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof ElasticsearchException) {
+                    throw (ElasticsearchException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    // a ring of the most recent latencies, the percentile is recomputed every few records instead of on each request
+    static final class LatencyWindow {
+        private static final int MIN_SAMPLES = 100;
+        private static final int RECOMPUTE_INTERVAL = 50;
+
+        private final long[] samples;
+        private int next;
+        private int count;
+        private int recordsSinceSort;
+        private long[] sorted = new long[0];
+
+        LatencyWindow(int size) {
+            samples = new long[Math.max(size, MIN_SAMPLES)];
+        }
+
+        synchronized void record(long latencyMillis) {
+            samples[next] = latencyMillis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count >= MIN_SAMPLES && ++recordsSinceSort >= RECOMPUTE_INTERVAL) {
+                long[] copy = Arrays.copyOf(samples, count);
+                Arrays.sort(copy);
+                sorted = copy;
+                recordsSinceSort = 0;
+            }
+        }
+
+        /**
+         * @return the latency at the percentile (0-100), or -1 while there are not enough samples
+         */
+        synchronized long getPercentile(double percentile) {
+            if (sorted.length == 0) {
+                return -1;
+            }
+            int position = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, position))];
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * <pre>
+ * Options for hedged search requests: when a search has not answered after the given percentile of the recent latencies,
+ * a duplicate is sent to another node and the first response wins
+ * See {@link ElasticSearchService#setHedgedSearchOptions(HedgedSearchOptions)}
+ * </pre>
+ */
+public class HedgedSearchOptions {
+
+    private static final double DEFAULT_LATENCY_PERCENTILE = 95;
+    private static final long DEFAULT_MIN_DELAY_MILLIS = 5;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+    private static final int DEFAULT_SAMPLE_SIZE = 1000;
+    private static final int DEFAULT_MAX_CONCURRENT_HEDGES = 32;
+
+    private static final ScheduledExecutorService DEFAULT_SCHEDULER = DaemonExecutors.newScheduler("hedged-search");
+
+    private double latencyPercentile = DEFAULT_LATENCY_PERCENTILE;
+
+    private long minDelayMillis = DEFAULT_MIN_DELAY_MILLIS;
+
+    // also the delay used until enough latencies are recorded
+    private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    // the duplicates are not cancelled (not supported by the client), so their number is bounded to protect the cluster
+    private int maxConcurrentHedges = DEFAULT_MAX_CONCURRENT_HEDGES;
+
+    private ScheduledExecutorService scheduler = DEFAULT_SCHEDULER;
+
+    public double getLatencyPercentile() {
+        return latencyPercentile;
+    }
+
+    public HedgedSearchOptions setLatencyPercentile(double latencyPercentile) {
+        this.latencyPercentile = latencyPercentile;
+        return this;
+    }
+
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    public HedgedSearchOptions setMinDelayMillis(long minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public HedgedSearchOptions setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public HedgedSearchOptions setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    public int getMaxConcurrentHedges() {
+        return maxConcurrentHedges;
+    }
+
+    public HedgedSearchOptions setMaxConcurrentHedges(int maxConcurrentHedges) {
+        this.maxConcurrentHedges = maxConcurrentHedges;
+        return this;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public HedgedSearchOptions setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+
+import com.google.gson.Gson;
+import com.wse.common.elasticsearch.service.ElasticSearchService.ServiceMode;
+
+/**
+ * <pre>
+ * An index of a service with everything its operations need: the index name, the document type, the refresh policy,
+ * the routing and the codec (the Gson instance which writes and reads the documents)
+ * A handle is immutable, the with* methods return a new handle, so the handles of many indices can be shared by many threads
+ * without any lock. The operations of a handle never read the index configured on the service (See {@link ElasticSearchService#configureIndex(String, String)})
+ * The circuit breakers, the metrics and the search options are the ones of the service
+ * Example:
+ *     IndexHandle&lt;AccountDocument&gt; accounts = service.indexHandle("account-2019", "_doc").withRefreshPolicy(RefreshPolicy.WAIT_UNTIL);
+ *     accounts.index(account, account.getId());
+ *     accounts.withRouting(centerId).search(queryData);
+ * </pre>
+ */
+public final class IndexHandle<E> {
+
+    private final ElasticSearchServiceImpl<E> service;
+    private final String indexName;
+    private final String documentType;
+    private final RefreshPolicy refreshPolicy;
+    private final String routing;
+    private final Gson codec;
+
+    // the comma separated indices which the searches read, the index name itself if null
+    private final String searchIndices;
+
+    IndexHandle(ElasticSearchServiceImpl<E> service, String indexName, String documentType, RefreshPolicy refreshPolicy,
+            String routing, Gson codec) {
+        this(service, indexName, documentType, refreshPolicy, routing, codec, null);
+    }
+
+    private IndexHandle(ElasticSearchServiceImpl<E> service, String indexName, String documentType, RefreshPolicy refreshPolicy,
+            String routing, Gson codec, String searchIndices) {
+        this.service = service;
+        this.indexName = indexName;
+        this.documentType = documentType;
+        this.refreshPolicy = refreshPolicy;
+        this.routing = routing;
+        this.codec = codec;
+        this.searchIndices = searchIndices;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String getDocumentType() {
+        return documentType;
+    }
+
+    public RefreshPolicy getRefreshPolicy() {
+        return refreshPolicy;
+    }
+
+    /**
+     * @return the routing value of the writes and the searches, null for the default routing (the document id)
+     */
+    public String getRouting() {
+        return routing;
+    }
+
+    public Gson getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return the indices which the searches read, the index name unless a subset of the indices behind an alias is searched
+     */
+    String getSearchIndices() {
+        return searchIndices != null ? searchIndices : indexName;
+    }
+
+    /**
+     * @param refreshPolicy     the refresh policy of the writes, null for NONE
+     */
+    public IndexHandle<E> withRefreshPolicy(RefreshPolicy refreshPolicy) {
+        return new IndexHandle<>(service, indexName, documentType, refreshPolicy != null ? refreshPolicy : RefreshPolicy.NONE, routing, codec,
+                searchIndices);
+    }
+
+    /**
+     * @param routing   the routing value (for example the tenant of the documents), null for the default routing
+     */
+    public IndexHandle<E> withRouting(String routing) {
+        return new IndexHandle<>(service, indexName, documentType, refreshPolicy, routing, codec, searchIndices);
+    }
+
+    /**
+     * @param codec     the Gson instance (type adapters, date format, naming policy) which writes and reads the documents
+     */
+    public IndexHandle<E> withCodec(Gson codec) {
+        return new IndexHandle<>(service, indexName, documentType, refreshPolicy, routing, codec, searchIndices);
+    }
+
+    /**
+     * @return a handle of another index with the same document type, refresh policy, routing and codec
+     */
+    IndexHandle<E> withIndexName(String indexName) {
+        return new IndexHandle<>(service, indexName, documentType, refreshPolicy, routing, codec);
+    }
+
+    /**
+     * The searches of the returned handle read only the given indices, the index name (an alias) still names the metrics
+     */
+    IndexHandle<E> withSearchIndices(Collection<String> indices) {
+        return new IndexHandle<>(service, indexName, documentType, refreshPolicy, routing, codec, String.join(",", indices));
+    }
+
+    /**
+     * See {@link ElasticSearchService#existIndex()}
+     */
+    public boolean existIndex() {
+        return service.existIndex(this);
+    }
+
+    /**
+     * See {@link ElasticSearchService#existDocument(String, String, String)}
+     */
+    public boolean existDocument(String id) {
+        return service.existDocument(this, id);
+    }
+
+    /**
+     * See {@link ElasticSearchService#get(String)}
+     */
+    public E get(String id) {
+        return service.get(this, id);
+    }
+
+    /**
+     * See {@link ElasticSearchService#getAll(Collection)}
+     */
+    public Map<String, E> getAll(Collection<String> ids) {
+        return service.getAll(this, ids);
+    }
+
+    /**
+     * See {@link ElasticSearchService#getAsync(String)}
+     */
+    public CompletableFuture<E> getAsync(String id) {
+        return service.getAsync(this, id);
+    }
+
+    /**
+     * Index a new document, fails if it exists
+     */
+    public void index(E entity, String id) {
+        service.index(this, entity, id);
+    }
+
+    /**
+     * See {@link ElasticSearchService#saveOrUpdate(Object, String, ServiceMode)}
+     */
+    public void saveOrUpdate(E entity, String id, ServiceMode mode) {
+        service.saveOrUpdate(this, entity, id, mode);
+    }
+
+    /**
+     * See {@link ElasticSearchService#bulkIndex(Map, ServiceMode)}
+     */
+    public void bulkIndex(Map<String, E> entityMapWithId, ServiceMode mode) {
+        service.bulk(this, entityMapWithId, Collections.emptyMap(), Collections.emptyMap(), mode);
+    }
+
+    /**
+     * See {@link ElasticSearchService#bulk(Map, Map, Map, ServiceMode)}
+     */
+    public void bulk(Map<String, E> entityMapToIndex, Map<String, E> entityMapToDelete, Map<String, E> entityMapToUpdate, ServiceMode mode) {
+        service.bulk(this, entityMapToIndex, entityMapToDelete, entityMapToUpdate, mode);
+    }
+
+    /**
+     * Update an existing document, fails if it does not exist
+     */
+    public void update(E entity, String id) {
+        service.update(this, entity, id);
+    }
+
+    /**
+     * See {@link ElasticSearchService#upsert(Object, String, ServiceMode)}
+     */
+    public void upsert(E entity, String id, ServiceMode mode) {
+        service.upsert(this, entity, id, mode);
+    }
+
+    public void delete(String id, ServiceMode mode) {
+        service.delete(this, id, mode);
+    }
+
+    public long count(SearchQueryData queryData) {
+        return service.count(this, queryData);
+    }
+
+    public List<E> search(SearchQueryData queryData) {
+        return service.search(this, queryData);
+    }
+
+    public SearchResultData<E> searchWithRecordCount(SearchQueryData queryData) {
+        return service.searchWithRecordCount(this, queryData);
+    }
+
+    /**
+     * See {@link ElasticSearchService#streamSearch(SearchQueryData)}
+     */
+    public SearchResultData<E> streamSearch(SearchQueryData queryData) {
+        return service.streamSearch(this, queryData);
+    }
+
+    /**
+     * See {@link ElasticSearchService#searchLazily(SearchQueryData)}
+     */
+    public LazySearchResultData<E> searchLazily(SearchQueryData queryData) {
+        return service.searchLazily(this, queryData);
+    }
+
+    public AggregationResultData aggregate(AggregationQueryData aggregationData) {
+        return service.aggregate(this, aggregationData);
+    }
+
+    /**
+     * See {@link ElasticSearchService#suggest(String, String, int)}
+     */
+    public List<String> suggest(String field, String prefix, int size) {
+        return service.suggest(this, field, prefix, size);
+    }
+
+    public void refresh() {
+        service.refresh(indexName);
+    }
+
+    public void flush() {
+        service.flush(indexName);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexHandle [indexName=" + indexName + ", documentType=" + documentType + ", refreshPolicy=" + refreshPolicy
+                + ", routing=" + routing + ", searchIndices=" + searchIndices + "]";
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.elasticsearch.search.sort.SortOrder;
+
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+
+/**
+ * <pre>
+ * The index settings of a workload, applied when an index is created, next to the analysis settings
+ * (See {@link ElasticSearchService#createIndexWithMappings(String, String, Object, IndexSettingsProfile)})
+ * Each factory method returns a new profile, which can then be adjusted with the setters
+ * Example:
+ *     service.createIndexWithMappings("enrollment", "_doc", mappings, IndexSettingsProfile.writeHeavy().setNumberOfShards(3));
+ * </pre>
+ */
+public class IndexSettingsProfile {
+
+    private static final String NUMBER_OF_SHARDS = "number_of_shards";
+    private static final String NUMBER_OF_REPLICAS = "number_of_replicas";
+    private static final String REFRESH_INTERVAL = "refresh_interval";
+    private static final String TRANSLOG_DURABILITY = "translog.durability";
+    private static final String TRANSLOG_SYNC_INTERVAL = "translog.sync_interval";
+    private static final String TRANSLOG_FLUSH_THRESHOLD_SIZE = "translog.flush_threshold_size";
+    private static final String CODEC = "codec";
+    private static final String MERGE_SEGMENTS_PER_TIER = "merge.policy.segments_per_tier";
+    private static final String MERGE_MAX_MERGE_AT_ONCE = "merge.policy.max_merge_at_once";
+    private static final String REQUESTS_CACHE_ENABLE = "requests.cache.enable";
+    private static final String SORT_FIELD = "sort.field";
+    private static final String SORT_ORDER = "sort.order";
+
+    private final String name;
+
+    // the index level settings, without the "index." prefix
+    private final Map<String, Object> settings = new LinkedHashMap<>();
+
+    // sort the index on updated_at desc when its mappings have a sortable updated_at field and no other index sort is set
+    private boolean timestampSort = true;
+
+    // the edge n-grams of the "autocomplete" analyzer, the prefixes longer than the max gram are not matched
+    private int autocompleteMinGram = ElasticSearchAnalyzerFactory.DEFAULT_MIN_GRAM;
+    private int autocompleteMaxGram = ElasticSearchAnalyzerFactory.DEFAULT_MAX_GRAM;
+
+    private IndexSettingsProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The cluster defaults, only the analysis settings are set
+     */
+    public static IndexSettingsProfile defaults() {
+        return new IndexSettingsProfile("DEFAULT");
+    }
+
+    /**
+     * <pre>
+     * Ingest throughput over freshness: the new documents are searchable after 30 seconds, the translog is synced
+     * every 5 seconds instead of on every request (an acknowledged write can be lost if a node crashes meanwhile)
+     * and flushed in larger generations
+     * </pre>
+     */
+    public static IndexSettingsProfile writeHeavy() {
+        return new IndexSettingsProfile("WRITE_HEAVY")
+                .setRefreshInterval("30s")
+                .setTranslogDurability("async")
+                .setSetting(TRANSLOG_SYNC_INTERVAL, "5s")
+                .setSetting(TRANSLOG_FLUSH_THRESHOLD_SIZE, "1gb");
+    }
+
+    /**
+     * <pre>
+     * Query latency and throughput: an extra replica to spread the searches, fewer segments to visit per shard,
+     * and the shard request cache for the size-0 requests (counts, aggregations)
+     * </pre>
+     */
+    public static IndexSettingsProfile searchHeavy() {
+        return new IndexSettingsProfile("SEARCH_HEAVY")
+                .setNumberOfReplicas(2)
+                .setSetting(MERGE_SEGMENTS_PER_TIER, 5)
+                .setSetting(MERGE_MAX_MERGE_AT_ONCE, 5)
+                .setSetting(REQUESTS_CACHE_ENABLE, true);
+    }
+
+    /**
+     * <pre>
+     * Rarely written and rarely searched data: stored fields compressed with DEFLATE (best_compression), which
+     * makes the fetch of the sources slower, and a slow refresh
+     * </pre>
+     */
+    public static IndexSettingsProfile archive() {
+        return new IndexSettingsProfile("ARCHIVE")
+                .setCodec("best_compression")
+                .setRefreshInterval("60s")
+                .setNumberOfReplicas(1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the index level settings, without the "index." prefix
+     */
+    public Map<String, Object> getSettings() {
+        return Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * Can only be set when the index is created
+     */
+    public IndexSettingsProfile setNumberOfShards(int numberOfShards) {
+        return setSetting(NUMBER_OF_SHARDS, numberOfShards);
+    }
+
+    public IndexSettingsProfile setNumberOfReplicas(int numberOfReplicas) {
+        return setSetting(NUMBER_OF_REPLICAS, numberOfReplicas);
+    }
+
+    /**
+     * @param refreshInterval   a time value ("1s", "30s"), or "-1" to refresh only on demand
+     */
+    public IndexSettingsProfile setRefreshInterval(String refreshInterval) {
+        return setSetting(REFRESH_INTERVAL, refreshInterval);
+    }
+
+    /**
+     * @param durability    "request" (fsync before acknowledging every write) or "async" (fsync every sync interval)
+     */
+    public IndexSettingsProfile setTranslogDurability(String durability) {
+        return setSetting(TRANSLOG_DURABILITY, durability);
+    }
+
+    /**
+     * @param codec     "default" (LZ4) or "best_compression" (DEFLATE), can only be set when the index is created or closed
+     */
+    public IndexSettingsProfile setCodec(String codec) {
+        return setSetting(CODEC, codec);
+    }
+
+    /**
+     * <pre>
+     * Sort the segments of the index, the field must have doc values and the sort can only be set when the index is created
+     * A search sorted the same way which does not track the total hits stops after the first page of every segment
+     * </pre>
+     * @param field     the field to sort on, null to remove the index sort from the profile
+     * @param order     the order of the index sort
+     */
+    public IndexSettingsProfile setIndexSort(String field, SortOrder order) {
+        setSetting(SORT_FIELD, field);
+        return setSetting(SORT_ORDER, field != null ? order.toString() : null);
+    }
+
+    public boolean hasIndexSort() {
+        return settings.containsKey(SORT_FIELD);
+    }
+
+    public boolean isTimestampSort() {
+        return timestampSort;
+    }
+
+    /**
+     * @param timestampSort     false to keep the indices created with this profile unsorted even if they have an updated_at field
+     */
+    public IndexSettingsProfile setTimestampSort(boolean timestampSort) {
+        this.timestampSort = timestampSort;
+        return this;
+    }
+
+    public int getAutocompleteMinGram() {
+        return autocompleteMinGram;
+    }
+
+    public int getAutocompleteMaxGram() {
+        return autocompleteMaxGram;
+    }
+
+    /**
+     * <pre>
+     * The edge n-grams of the fields mapped as AUTO_COMPLETE, 1 to 20 characters by default
+     * A larger min gram makes the index smaller but the shorter prefixes never match, a larger max gram matches longer prefixes
+     * Can only be set when the index is created
+     * </pre>
+     * @param minGram   the shortest prefix indexed, at least 1
+     * @param maxGram   the longest prefix indexed, at least minGram
+     */
+    public IndexSettingsProfile setAutocompleteGrams(int minGram, int maxGram) {
+        if (minGram < 1 || maxGram < minGram) {
+            throw new ElasticSearchServiceException("Invalid auto complete grams: " + minGram + " to " + maxGram);
+        }
+        this.autocompleteMinGram = minGram;
+        this.autocompleteMaxGram = maxGram;
+        return this;
+    }
+
+    /**
+     * @param key       an index level setting without the "index." prefix, for example "merge.scheduler.max_thread_count"
+     * @param value     the value of the setting, null to remove it from the profile
+     */
+    public IndexSettingsProfile setSetting(String key, Object value) {
+        if (value == null) {
+            settings.remove(key);
+        }
+        else {
+            settings.put(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexSettingsProfile [name=" + name + ", settings=" + settings + ", timestampSort=" + timestampSort
+                + ", autocompleteMinGram=" + autocompleteMinGram + ", autocompleteMaxGram=" + autocompleteMaxGram + "]";
+    }
+
+}
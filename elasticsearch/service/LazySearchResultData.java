@@ -0,0 +1,206 @@
+package com.wse.common.elasticsearch.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+
+/**
+ * <pre>
+ * Search result which keeps the raw response bytes and only decodes what is accessed.
+ * Every hit is a flyweight (an offset and a length) over the single response buffer.
+ * A document is decoded by {@link #get(int)} and cached, a single field is read by {@link #field(int, String)}
+ * without decoding the rest of the document.
+ * Use this over {@link SearchResultData} for wide pages where only a few rows or fields are read.
+ * </pre>
+ */
+public class LazySearchResultData<E> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String FIELD_HITS = "hits";
+    private static final String FIELD_TOTAL = "total";
+    private static final String FIELD_SOURCE = "_source";
+    private static final char PATH_SEPARATOR = '.';
+
+    private final byte[] buffer;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final AtomicReferenceArray<E> decoded;
+    private final long numberOfRecords;
+    private final Gson gson;
+    private final Class<? extends E> entityType;
+
+    private LazySearchResultData(byte[] buffer, int[] offsets, int[] lengths, long numberOfRecords, Gson gson, Class<? extends E> entityType) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.decoded = new AtomicReferenceArray<>(offsets.length);
+        this.numberOfRecords = numberOfRecords;
+        this.gson = gson;
+        this.entityType = entityType;
+    }
+
+    /**
+     * Locate the _source of every hit in a search response, without decoding any of them
+     */
+    static <E> LazySearchResultData<E> of(byte[] response, Gson gson, Class<? extends E> entityType) throws IOException {
+        int[] offsets = new int[16];
+        int[] lengths = new int[16];
+        int count = 0;
+        long total = 0;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The search response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (!FIELD_HITS.equals(name)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String hitsField = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if (FIELD_TOTAL.equals(hitsField) && value == JsonToken.VALUE_NUMBER_INT) {
+                        total = parser.getLongValue();
+                    }
+                    else if (FIELD_HITS.equals(hitsField) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String hitField = parser.getCurrentName();
+                                if (parser.nextToken() == JsonToken.START_OBJECT && FIELD_SOURCE.equals(hitField)) {
+                                    if (count == offsets.length) {
+                                        offsets = Arrays.copyOf(offsets, count * 2);
+                                        lengths = Arrays.copyOf(lengths, count * 2);
+                                    }
+                                    int start = (int) parser.getTokenLocation().getByteOffset();
+                                    parser.skipChildren();
+                                    offsets[count] = start;
+                                    lengths[count] = (int) parser.getTokenLocation().getByteOffset() + 1 - start;
+                                    count++;
+                                }
+                                else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+
+        return new LazySearchResultData<>(response, Arrays.copyOf(offsets, count), Arrays.copyOf(lengths, count), total, gson, entityType);
+    }
+
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Decode the document at the given position, or return it from the cache if already decoded
+     */
+    public E get(int index) {
+        E entity = decoded.get(index);
+        if (entity == null) {
+            entity = gson.fromJson(openSource(index), entityType);
+            // a concurrent reader may have decoded it first, keep the first one so every caller sees the same instance
+            if (!decoded.compareAndSet(index, null, entity)) {
+                entity = decoded.get(index);
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * <pre>
+     * Read a single field of the document at the given position without decoding the whole document
+     * Nested fields are separated by a dot, for example "address.city"
+     * </pre>
+     * @return the JSON value of the field, or null if the document has no such field
+     */
+    public JsonElement field(int index, String path) {
+        try (JsonReader reader = new JsonReader(openSource(index))) {
+            int start = 0;
+            while (true) {
+                int end = path.indexOf(PATH_SEPARATOR, start);
+                String name = end < 0 ? path.substring(start) : path.substring(start, end);
+                if (!seekField(reader, name)) {
+                    return null;
+                }
+                if (end < 0) {
+                    return gson.fromJson(reader, JsonElement.class);
+                }
+                start = end + 1;
+            }
+        }
+        catch (IOException e) {
+            throw new ElasticSearchServiceException("Unable to read the field " + path + " of the search hit. Exception: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Same as {@link #field(int, String)}, converting the value to the given type
+     */
+    public <T> T field(int index, String path, Class<T> type) {
+        JsonElement value = field(index, path);
+        return value == null ? null : gson.fromJson(value, type);
+    }
+
+    /**
+     * A list view over the documents, each one is decoded on first access
+     */
+    public List<E> getResultList() {
+        return new AbstractList<E>() {
+            @Override
+            public E get(int index) {
+                return LazySearchResultData.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return LazySearchResultData.this.size();
+            }
+        };
+    }
+
+    private Reader openSource(int index) {
+        return new InputStreamReader(new ByteArrayInputStream(buffer, offsets[index], lengths[index]), StandardCharsets.UTF_8);
+    }
+
+    private static boolean seekField(JsonReader reader, String name) throws IOException {
+        if (reader.peek() != com.google.gson.stream.JsonToken.BEGIN_OBJECT) {
+            return false;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (name.equals(reader.nextName())) {
+                return true;
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.wse.common.elasticsearch.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * <pre>
+ * In-process prefix index for low cardinality fields (course, center, group names, ...)
+ * Type-ahead lookups are answered from memory in microseconds, without a request to the cluster.
+ * Each field keeps an immutable sorted array of folded keys (lower case, no accents) searched by binary search,
+ * plus a small concurrent delta of values added by this service's writes, merged into the array once it grows.
+ * Values are never removed until the next {@link #load(String, Collection)}, since other documents may still hold them.
+ * </pre>
+ */
+public class LocalSuggestionIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final int MIN_COMPACTION_THRESHOLD = 64;
+
+    private final Map<String, FieldIndex> fieldIndices = new ConcurrentHashMap<>();
+
+    /**
+     * Replace all the values of a field, usually from a terms aggregation
+     */
+    public void load(String field, Collection<String> values) {
+        fieldIndices.put(field, new FieldIndex(values));
+    }
+
+    public boolean contains(String field) {
+        return fieldIndices.containsKey(field);
+    }
+
+    public Collection<String> getFields() {
+        return Collections.unmodifiableSet(fieldIndices.keySet());
+    }
+
+    /**
+     * Add a value written by this service, ignored if the field is not indexed locally
+     */
+    public void add(String field, String value) {
+        FieldIndex fieldIndex = fieldIndices.get(field);
+        if (fieldIndex != null && value != null && !value.isEmpty()) {
+            fieldIndex.add(value);
+        }
+    }
+
+    /**
+     * @return at most size values of the field starting with the prefix (case and accent insensitive), in alphabetical order
+     */
+    public List<String> suggest(String field, String prefix, int size) {
+        FieldIndex fieldIndex = fieldIndices.get(field);
+        if (fieldIndex == null || size <= 0) {
+            return Collections.emptyList();
+        }
+        return fieldIndex.suggest(fold(prefix == null ? "" : prefix), size);
+    }
+
+    static String fold(String value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // the keys and values are swapped together, so a reader never sees the keys of one array with the values of another
+    private static final class Snapshot {
+        private final String[] keys;
+        private final String[] values;
+
+        Snapshot(NavigableMap<String, String> sorted) {
+            keys = sorted.keySet().toArray(new String[sorted.size()]);
+            values = sorted.values().toArray(new String[sorted.size()]);
+        }
+    }
+
+    private static final class FieldIndex {
+        private volatile Snapshot snapshot;
+        private final ConcurrentSkipListMap<String, String> delta = new ConcurrentSkipListMap<>();
+
+        FieldIndex(Collection<String> initialValues) {
+            NavigableMap<String, String> sorted = new TreeMap<>();
+            for (String value : initialValues) {
+                if (value != null && !value.isEmpty()) {
+                    sorted.putIfAbsent(fold(value), value);
+                }
+            }
+            snapshot = new Snapshot(sorted);
+        }
+
+        void add(String value) {
+            String key = fold(value);
+            if (Arrays.binarySearch(snapshot.keys, key) >= 0) {
+                return;
+            }
+            delta.putIfAbsent(key, value);
+            if (shouldCompact()) {
+                compact();
+            }
+        }
+
+        private boolean shouldCompact() {
+            return delta.size() > Math.max(MIN_COMPACTION_THRESHOLD, snapshot.keys.length / 8);
+        }
+
+        // fold the delta into a new sorted array, readers keep using the previous snapshot meanwhile
+        private synchronized void compact() {
+            if (!shouldCompact()) {
+                return;
+            }
+            Snapshot current = snapshot;
+            NavigableMap<String, String> merged = new TreeMap<>(delta);
+            for (int i = 0; i < current.keys.length; i++) {
+                merged.put(current.keys[i], current.values[i]);
+            }
+            snapshot = new Snapshot(merged);
+            delta.keySet().removeAll(merged.keySet());
+        }
+
+        List<String> suggest(String prefix, int size) {
+            Snapshot current = snapshot;
+            String[] currentKeys = current.keys;
+            String[] currentValues = current.values;
+            int position = Arrays.binarySearch(currentKeys, prefix);
+            int from = position >= 0 ? position : -position - 1;
+            Iterator<Map.Entry<String, String>> deltaEntries = delta.tailMap(prefix, true).entrySet().iterator();
+            Map.Entry<String, String> deltaEntry = nextMatching(deltaEntries, prefix);
+
+            // merge the two sorted sources
+            List<String> suggestions = new ArrayList<>(size);
+            String lastKey = null;
+            while (suggestions.size() < size) {
+                boolean arrayMatches = from < currentKeys.length && currentKeys[from].startsWith(prefix);
+                if (!arrayMatches && deltaEntry == null) {
+                    break;
+                }
+                String key;
+                String value;
+                if (arrayMatches && (deltaEntry == null || currentKeys[from].compareTo(deltaEntry.getKey()) <= 0)) {
+                    key = currentKeys[from];
+                    value = currentValues[from++];
+                }
+                else {
+                    key = deltaEntry.getKey();
+                    value = deltaEntry.getValue();
+                    deltaEntry = nextMatching(deltaEntries, prefix);
+                }
+                if (!key.equals(lastKey)) {
+                    suggestions.add(value);
+                    lastKey = key;
+                }
+            }
+            return suggestions;
+        }
+
+        private static Map.Entry<String, String> nextMatching(Iterator<Map.Entry<String, String>> entries, String prefix) {
+            if (!entries.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, String> entry = entries.next();
+            return entry.getKey().startsWith(prefix) ? entry : null;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.wse.common.elasticsearch.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <pre>
+ * The mapping of an entity field, read by {@link EntityMappingGenerator}
+ * Without the annotation the type is inferred from the Java type: strings and enums are keywords, numbers, booleans and
+ * dates keep their type, other classes are objects with the mappings of their own fields
+ * Example:
+ *     &#64;MappedField(type = Type.TEXT, sortable = true)
+ *     private String studentName;
+ *
+ *     &#64;MappedField(index = false, docValues = false)
+ *     private String serviceType;
+ *
+ *     &#64;MappedField(type = Type.OBJECT, enabled = false)
+ *     private Map&lt;String, Object&gt; rawPayload;
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface MappedField {
+
+    Type type() default Type.AUTO;
+
+    /**
+     * false for a field which is never searched, it is still returned in the source
+     */
+    boolean index() default true;
+
+    /**
+     * false for a field which is never sorted or aggregated on, not used by text fields which have no doc values
+     */
+    boolean docValues() default true;
+
+    /**
+     * false for a text field which is only filtered on, its length no longer changes the score
+     */
+    boolean norms() default true;
+
+    /**
+     * The postings of a text or keyword field, DOCS is enough for a field which is never scored
+     */
+    IndexOptions indexOptions() default IndexOptions.DEFAULT;
+
+    /**
+     * true to add a "keyword" sub-field to a text field, to sort and aggregate on it without fielddata,
+     * or to keep the doc values of a field which is not indexed
+     */
+    boolean sortable() default false;
+
+    /**
+     * The format of a date field, "strict_date_optional_time||epoch_millis" by default (See {@link EntityMappingGenerator#epochMillisCodec()})
+     */
+    String format() default "";
+
+    /**
+     * false to keep an object only in the source, its fields are then neither parsed nor mapped
+     */
+    boolean enabled() default true;
+
+    public static enum Type {
+        AUTO(null), TEXT("text"), KEYWORD("keyword"), LONG("long"), INTEGER("integer"), SHORT("short"), BYTE("byte"),
+        DOUBLE("double"), FLOAT("float"), BOOLEAN("boolean"), DATE("date"), OBJECT("object"),
+        // a text field analyzed with edge n-grams, with a completion sub-field for suggest()
+        AUTO_COMPLETE("text");
+
+        private String type;
+
+        Type(String type) {
+            this.type = type;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+    public static enum IndexOptions {
+        DEFAULT, DOCS, FREQS, POSITIONS, OFFSETS
+    }
+
+}
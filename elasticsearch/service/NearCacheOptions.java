@@ -0,0 +1,39 @@
+package com.wse.common.elasticsearch.service;
+
+/**
+ * <pre>
+ * Options of the near cache of the documents read by id: the sources are kept in memory, bounded by their number
+ * and by the time since they were read or written
+ * See {@link ElasticSearchService#setNearCacheOptions(NearCacheOptions)}
+ * </pre>
+ */
+public class NearCacheOptions {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60000;
+
+    // the number of documents kept, the least recently used ones are evicted first
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+    // also bounds how long a document changed by another instance or by an asynchronous write can be served stale
+    private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public NearCacheOptions setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    public NearCacheOptions setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        return this;
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.wse.common.elasticsearch.service;
+
+/**
+ * <pre>
+ * Options of the resilience layer around the cluster calls:
+ * a circuit breaker per operation, a limit of concurrent searches and the stale results served while the cluster is unavailable
+ * See {@link ElasticSearchService#setResilienceOptions(ResilienceOptions)}
+ * </pre>
+ */
+public class ResilienceOptions {
+
+    private static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    private static final long DEFAULT_SLOW_CALL_DURATION_MILLIS = 5000;
+    private static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    private static final int DEFAULT_MINIMUM_CALLS = 20;
+    private static final int DEFAULT_SLIDING_WINDOW_SIZE = 100;
+    private static final long DEFAULT_OPEN_DURATION_MILLIS = 30000;
+    private static final int DEFAULT_HALF_OPEN_TRIAL_CALLS = 5;
+    private static final int DEFAULT_STALE_RESULTS_SIZE = 1000;
+    private static final long DEFAULT_STALE_RESULTS_TTL_MILLIS = 10 * 60 * 1000;
+
+    // the breaker opens when this percentage of the recent calls failed...
+    private int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+    // ...or when this percentage of the recent calls took longer than the slow call duration
+    private long slowCallDurationMillis = DEFAULT_SLOW_CALL_DURATION_MILLIS;
+
+    private int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+    // no decision is taken on fewer calls
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+    // the number of recent calls the rates are computed on
+    private int slidingWindowSize = DEFAULT_SLIDING_WINDOW_SIZE;
+
+    // how long the calls fail fast before a few trial calls are let through
+    private long openDurationMillis = DEFAULT_OPEN_DURATION_MILLIS;
+
+    // the trial calls which must all succeed to close the breaker again
+    private int halfOpenTrialCalls = DEFAULT_HALF_OPEN_TRIAL_CALLS;
+
+    // the searches returning hits over this limit are rejected immediately instead of queueing, 0 (the default) means no limit
+    private int maxConcurrentSearches;
+
+    private boolean serveStaleResults;
+
+    private int staleResultsSize = DEFAULT_STALE_RESULTS_SIZE;
+
+    private long staleResultsTtlMillis = DEFAULT_STALE_RESULTS_TTL_MILLIS;
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public ResilienceOptions setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    public long getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+
+    public ResilienceOptions setSlowCallDurationMillis(long slowCallDurationMillis) {
+        this.slowCallDurationMillis = slowCallDurationMillis;
+        return this;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public ResilienceOptions setSlowCallRateThreshold(int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        return this;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public ResilienceOptions setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+        return this;
+    }
+
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public ResilienceOptions setSlidingWindowSize(int slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+        return this;
+    }
+
+    public long getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+
+    public ResilienceOptions setOpenDurationMillis(long openDurationMillis) {
+        this.openDurationMillis = openDurationMillis;
+        return this;
+    }
+
+    public int getHalfOpenTrialCalls() {
+        return halfOpenTrialCalls;
+    }
+
+    public ResilienceOptions setHalfOpenTrialCalls(int halfOpenTrialCalls) {
+        this.halfOpenTrialCalls = halfOpenTrialCalls;
+        return this;
+    }
+
+    public int getMaxConcurrentSearches() {
+        return maxConcurrentSearches;
+    }
+
+    public ResilienceOptions setMaxConcurrentSearches(int maxConcurrentSearches) {
+        this.maxConcurrentSearches = maxConcurrentSearches;
+        return this;
+    }
+
+    public boolean isServeStaleResults() {
+        return serveStaleResults;
+    }
+
+    public ResilienceOptions setServeStaleResults(boolean serveStaleResults) {
+        this.serveStaleResults = serveStaleResults;
+        return this;
+    }
+
+    public int getStaleResultsSize() {
+        return staleResultsSize;
+    }
+
+    public ResilienceOptions setStaleResultsSize(int staleResultsSize) {
+        this.staleResultsSize = staleResultsSize;
+        return this;
+    }
+
+    public long getStaleResultsTtlMillis() {
+        return staleResultsTtlMillis;
+    }
+
+    public ResilienceOptions setStaleResultsTtlMillis(long staleResultsTtlMillis) {
+        this.staleResultsTtlMillis = staleResultsTtlMillis;
+        return this;
+    }
+
+}
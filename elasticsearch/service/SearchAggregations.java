@@ -0,0 +1,125 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+import com.wse.common.elasticsearch.service.AggregationQueryData.AggregationParams;
+import com.wse.common.elasticsearch.service.AggregationQueryData.DateInterval;
+import com.wse.common.elasticsearch.service.AggregationQueryData.RangeBucketParams;
+import com.wse.common.elasticsearch.service.AggregationResultData.Bucket;
+
+/**
+ * Translate {@link AggregationQueryData} into Elastic Search aggregations and read their typed results back
+ */
+final class SearchAggregations {
+
+    private static final int DEFAULT_TERMS_SIZE = 10;
+
+    private SearchAggregations() {
+    }
+
+    static AggregationBuilder buildAggregation(AggregationParams params) {
+        switch (params.getType()) {
+            case DATE_HISTOGRAM:
+                return AggregationBuilders.dateHistogram(params.getName()).field(params.getField())
+                        .dateHistogramInterval(toDateHistogramInterval(params.getInterval()));
+            case RANGE:
+                RangeAggregationBuilder range = AggregationBuilders.range(params.getName()).field(params.getField());
+                for (RangeBucketParams bucket : params.getRanges()) {
+                    addRange(range, bucket);
+                }
+                return range;
+            case CARDINALITY:
+                return AggregationBuilders.cardinality(params.getName()).field(params.getField());
+            case TERMS:
+            default:
+                return AggregationBuilders.terms(params.getName()).field(params.getField())
+                        .size(params.getSize() > 0 ? params.getSize() : DEFAULT_TERMS_SIZE);
+        }
+    }
+
+    static AggregationResultData extractResult(SearchResponse response, List<AggregationParams> aggregationParams) {
+        AggregationResultData resultData = new AggregationResultData();
+        resultData.setNumberOfRecords(response.getHits().getTotalHits());
+        Aggregations aggregations = response.getAggregations();
+        if (aggregations == null) {
+            return resultData;
+        }
+
+        for (AggregationParams params : aggregationParams) {
+            switch (params.getType()) {
+                case CARDINALITY:
+                    Cardinality cardinality = aggregations.get(params.getName());
+                    resultData.setCardinality(params.getName(), cardinality.getValue());
+                    break;
+                case RANGE:
+                    Range range = aggregations.get(params.getName());
+                    List<Bucket> rangeBuckets = new ArrayList<>();
+                    for (Range.Bucket bucket : range.getBuckets()) {
+                        rangeBuckets.add(new Bucket(bucket.getKeyAsString(), bucket.getDocCount())
+                                .setFrom(bucket.getFrom()).setTo(bucket.getTo()));
+                    }
+                    resultData.setBuckets(params.getName(), rangeBuckets);
+                    break;
+                case TERMS:
+                case DATE_HISTOGRAM:
+                default:
+                    MultiBucketsAggregation multiBuckets = aggregations.get(params.getName());
+                    List<Bucket> buckets = new ArrayList<>();
+                    for (MultiBucketsAggregation.Bucket bucket : multiBuckets.getBuckets()) {
+                        buckets.add(new Bucket(bucket.getKeyAsString(), bucket.getDocCount()));
+                    }
+                    resultData.setBuckets(params.getName(), buckets);
+                    break;
+            }
+        }
+        return resultData;
+    }
+
+    private static void addRange(RangeAggregationBuilder range, RangeBucketParams bucket) {
+        if (bucket.getFrom() == null && bucket.getTo() == null) {
+            throw new ElasticSearchServiceException("The range bucket: " + bucket.getKey() + " of the aggregation: " + range.getName()
+                    + " has neither a from nor a to value");
+        }
+        if (bucket.getFrom() == null) {
+            range.addUnboundedTo(bucket.getKey(), bucket.getTo());
+        }
+        else if (bucket.getTo() == null) {
+            range.addUnboundedFrom(bucket.getKey(), bucket.getFrom());
+        }
+        else {
+            range.addRange(bucket.getKey(), bucket.getFrom(), bucket.getTo());
+        }
+    }
+
+    private static DateHistogramInterval toDateHistogramInterval(DateInterval interval) {
+        if (interval == null) {
+            return DateHistogramInterval.MONTH;
+        }
+        switch (interval) {
+            case DAY:
+                return DateHistogramInterval.DAY;
+            case WEEK:
+                return DateHistogramInterval.WEEK;
+            case QUARTER:
+                return DateHistogramInterval.QUARTER;
+            case YEAR:
+                return DateHistogramInterval.YEAR;
+            case MONTH:
+            default:
+                return DateHistogramInterval.MONTH;
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.wse.common.elasticsearch.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * <pre>
+ * Read the hits of a search response directly from the HTTP entity with a streaming JSON parser.
+ * No SearchResponse, SearchHit or intermediate source String is built, each _source is decoded straight into the entity.
+ * Large pages can be decoded on a ForkJoinPool (See {@link StreamingSearchOptions}).
+ * </pre>
+ */
+final class SearchHitStreamReader<E> {
+
+    // only the fields read below are sent back by the cluster
+    static final String FILTER_PATH = "hits.total,hits.hits._source";
+
+    private static final String FIELD_HITS = "hits";
+    private static final String FIELD_TOTAL = "total";
+    private static final String FIELD_SOURCE = "_source";
+
+    private final Gson gson;
+    private final Class<? extends E> entityType;
+    private final StreamingSearchOptions options;
+
+    SearchHitStreamReader(Gson gson, Class<? extends E> entityType, StreamingSearchOptions options) {
+        this.gson = gson;
+        this.entityType = entityType;
+        this.options = options;
+    }
+
+    SearchResultData<E> read(InputStream content, int expectedHits) throws IOException {
+        SearchResultData<E> searchResultData = new SearchResultData<>();
+        searchResultData.setResultList(new ArrayList<>());
+        boolean parallel = options.shouldDecodeInParallel(expectedHits);
+        List<JsonElement> sources = parallel ? new ArrayList<>(expectedHits) : null;
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (FIELD_HITS.equals(reader.nextName())) {
+                    readHits(reader, searchResultData, sources);
+                }
+                else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        if (parallel) {
+            searchResultData.setResultList(decodeInParallel(sources));
+        }
+        return searchResultData;
+    }
+
+    private void readHits(JsonReader reader, SearchResultData<E> searchResultData, List<JsonElement> sources) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (FIELD_TOTAL.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                searchResultData.setNumberOfRecords(reader.nextLong());
+            }
+            else if (FIELD_HITS.equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readHit(reader, searchResultData.getResultList(), sources);
+                }
+                reader.endArray();
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readHit(JsonReader reader, List<E> entityList, List<JsonElement> sources) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!FIELD_SOURCE.equals(reader.nextName())) {
+                reader.skipValue();
+            }
+            else if (sources != null) {
+                sources.add(new JsonParser().parse(reader));
+            }
+            else {
+                entityList.add(gson.fromJson(reader, entityType));
+            }
+        }
+        reader.endObject();
+    }
+
+    private List<E> decodeInParallel(List<JsonElement> sources) throws IOException {
+        try {
+            // a parallel stream started from a task of the pool runs on that pool instead of the common one
+            return options.getDecodePool().submit(() -> sources.parallelStream()
+                    .<E> map(source -> gson.fromJson(source, entityType))
+                    .collect(Collectors.toList())).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding the search hits", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Unable to decode the search hits", e.getCause());
+        }
+    }
+
+}
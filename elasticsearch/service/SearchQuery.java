@@ -0,0 +1,346 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
+
+/**
+ * <pre>
+ * Typed search query: term, prefix, multi-match, range and exists nodes combined with bool queries. Example:
+ * SearchQuery query = SearchQuery.bool()
+ *         .must(SearchQuery.prefix("studentName", "ng"))
+ *         .filter(SearchQuery.term("status", "ACTIVE"), SearchQuery.range("startDate", LocalDate.of(2018, 1, 1), null));
+ * Every node is immutable and safe to share between threads, so a query can be built once and reused.
+ * Values are kept with their type and are translated to a QueryBuilder without any parsing.
+ * Range bounds are numbers, LocalDate or "now" date math strings.
+ * See {@link #from(SearchQueryData)} for the mapping of the SearchQueryData form.
+ * </pre>
+ */
+public abstract class SearchQuery {
+
+    private final String key;
+
+    SearchQuery(String key) {
+        this.key = key;
+    }
+
+    public static Term term(String field, Object value) {
+        return new Term(field, value);
+    }
+
+    public static Prefix prefix(String field, String text) {
+        return new Prefix(field, text);
+    }
+
+    public static MultiMatch multiMatch(String text, String... fields) {
+        return new MultiMatch(text, fields);
+    }
+
+    /**
+     * @param from  the inclusive lower bound, null for no lower bound
+     * @param to    the inclusive upper bound, null for no upper bound
+     */
+    public static Range range(String field, Object from, Object to) {
+        return new Range(field, from, to);
+    }
+
+    public static Exists exists(String field) {
+        return new Exists(field);
+    }
+
+    public static Bool bool() {
+        return Bool.EMPTY;
+    }
+
+    /**
+     * <pre>
+     * Map the SearchQueryData form (search params, typed ranges and typed query) onto the typed model
+     * </pre>
+     * @return the query, or null if the data has no criteria (match all)
+     */
+    public static SearchQuery from(SearchQueryData queryData) {
+        return SearchQueryDataMapper.map(queryData);
+    }
+
+    /**
+     * @return true if the node contributes to the ranking, otherwise it can run in the filter context
+     */
+    public abstract boolean isScoring();
+
+    public final QueryBuilder toQueryBuilder() {
+        return toQueryBuilder(DateRounding.NONE);
+    }
+
+    abstract QueryBuilder toQueryBuilder(DateRounding rounding);
+
+    /**
+     * The canonical form of the node, used to sort and deduplicate clauses
+     */
+    final String key() {
+        return key;
+    }
+
+    @Override
+    public final boolean equals(Object other) {
+        return other instanceof SearchQuery && key.equals(((SearchQuery) other).key);
+    }
+
+    @Override
+    public final int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    public static final class Term extends SearchQuery {
+        private final String field;
+        private final Object value;
+
+        private Term(String field, Object value) {
+            super("term(" + field + "=" + value + ")");
+            this.field = Objects.requireNonNull(field);
+            this.value = Objects.requireNonNull(value);
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean isScoring() {
+            return false;
+        }
+
+        @Override
+        QueryBuilder toQueryBuilder(DateRounding rounding) {
+            return QueryBuilders.termQuery(field, value);
+        }
+    }
+
+    public static final class Prefix extends SearchQuery {
+        private final String field;
+        private final String text;
+
+        private Prefix(String field, String text) {
+            super("prefix(" + field + "=" + text + ")");
+            this.field = Objects.requireNonNull(field);
+            this.text = Objects.requireNonNull(text);
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public boolean isScoring() {
+            return true;
+        }
+
+        @Override
+        QueryBuilder toQueryBuilder(DateRounding rounding) {
+            return QueryBuilders.matchPhrasePrefixQuery(field, text);
+        }
+    }
+
+    public static final class MultiMatch extends SearchQuery {
+        private final String text;
+        private final String[] fields;
+
+        private MultiMatch(String text, String[] fields) {
+            super("multi_match(" + text + "=" + Arrays.toString(fields) + ")");
+            this.text = Objects.requireNonNull(text);
+            this.fields = fields.clone();
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<String> getFields() {
+            return Collections.unmodifiableList(Arrays.asList(fields));
+        }
+
+        @Override
+        public boolean isScoring() {
+            return true;
+        }
+
+        @Override
+        QueryBuilder toQueryBuilder(DateRounding rounding) {
+            // the builder keeps its own copy of the fields
+            return QueryBuilders.multiMatchQuery(text, fields);
+        }
+    }
+
+    public static final class Range extends SearchQuery {
+        private final String field;
+        private final Object from;
+        private final Object to;
+
+        private Range(String field, Object from, Object to) {
+            super("range(" + field + "=" + from + ".." + to + ")");
+            this.field = Objects.requireNonNull(field);
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Object getFrom() {
+            return from;
+        }
+
+        public Object getTo() {
+            return to;
+        }
+
+        @Override
+        public boolean isScoring() {
+            return false;
+        }
+
+        @Override
+        QueryBuilder toQueryBuilder(DateRounding rounding) {
+            RangeQueryBuilder rangeQuery = QueryBuilders.rangeQuery(field);
+            if (from != null) {
+                rangeQuery.gte(SearchQueryNormalizer.toRangeBound(from, rounding));
+            }
+            if (to != null) {
+                rangeQuery.lte(SearchQueryNormalizer.toRangeBound(to, rounding));
+            }
+            return rangeQuery;
+        }
+    }
+
+    public static final class Exists extends SearchQuery {
+        private final String field;
+
+        private Exists(String field) {
+            super("exists(" + field + ")");
+            this.field = Objects.requireNonNull(field);
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        @Override
+        public boolean isScoring() {
+            return false;
+        }
+
+        @Override
+        QueryBuilder toQueryBuilder(DateRounding rounding) {
+            return QueryBuilders.existsQuery(field);
+        }
+    }
+
+    /**
+     * Boolean composition, every method returns a new bool query and leaves this one unchanged
+     */
+    public static final class Bool extends SearchQuery {
+        private static final Bool EMPTY = new Bool(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+
+        private final List<SearchQuery> must;
+        private final List<SearchQuery> filter;
+        private final List<SearchQuery> should;
+        private final List<SearchQuery> mustNot;
+
+        private Bool(List<SearchQuery> must, List<SearchQuery> filter, List<SearchQuery> should, List<SearchQuery> mustNot) {
+            super("bool(must=" + must + ", filter=" + filter + ", should=" + should + ", must_not=" + mustNot + ")");
+            this.must = must;
+            this.filter = filter;
+            this.should = should;
+            this.mustNot = mustNot;
+        }
+
+        public Bool must(SearchQuery... queries) {
+            return new Bool(append(must, queries), filter, should, mustNot);
+        }
+
+        public Bool filter(SearchQuery... queries) {
+            return new Bool(must, append(filter, queries), should, mustNot);
+        }
+
+        public Bool should(SearchQuery... queries) {
+            return new Bool(must, filter, append(should, queries), mustNot);
+        }
+
+        public Bool mustNot(SearchQuery... queries) {
+            return new Bool(must, filter, should, append(mustNot, queries));
+        }
+
+        public List<SearchQuery> getMust() {
+            return must;
+        }
+
+        public List<SearchQuery> getFilter() {
+            return filter;
+        }
+
+        public List<SearchQuery> getShould() {
+            return should;
+        }
+
+        public List<SearchQuery> getMustNot() {
+            return mustNot;
+        }
+
+        public boolean isEmpty() {
+            return must.isEmpty() && filter.isEmpty() && should.isEmpty() && mustNot.isEmpty();
+        }
+
+        @Override
+        public boolean isScoring() {
+            return anyScoring(must) || anyScoring(should);
+        }
+
+        @Override
+        QueryBuilder toQueryBuilder(DateRounding rounding) {
+            Function<SearchQuery, QueryBuilder> translator = query -> query.toQueryBuilder(rounding);
+            return SearchQueryPlanner.plan(this, translator);
+        }
+
+        static boolean anyScoring(List<SearchQuery> queries) {
+            for (SearchQuery query : queries) {
+                if (query.isScoring()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static List<SearchQuery> append(List<SearchQuery> queries, SearchQuery[] others) {
+            List<SearchQuery> appended = new ArrayList<>(queries.size() + others.length);
+            appended.addAll(queries);
+            for (SearchQuery other : others) {
+                appended.add(Objects.requireNonNull(other));
+            }
+            return Collections.unmodifiableList(appended);
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.wse.common.elasticsearch.service;
 
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 
@@ -9,6 +10,10 @@ public class SearchQueryData {
     
     private List<SearchParams> searchParams;
     
+    private List<RangeParams> rangeParams;
+    
+    private SearchQuery query;
+    
     private int from;
     
     private int size;
@@ -42,6 +47,27 @@ public class SearchQueryData {
         return this;
     }
 
+    public List<RangeParams> getRangeParams() {
+        return rangeParams;
+    }
+
+    public SearchQueryData setRangeParams(List<RangeParams> rangeParams) {
+        this.rangeParams = rangeParams;
+        return this;
+    }
+
+    public SearchQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @param query a typed query (See {@link SearchQuery}), combined with the search params and ranges if any
+     */
+    public SearchQueryData setQuery(SearchQuery query) {
+        this.query = query;
+        return this;
+    }
+
     public SortParams getSortBy() {
         return sortBy;
     }
@@ -91,6 +117,76 @@ public class SearchQueryData {
         }
     }
     
+    /**
+     * <pre>
+     * A typed range, unlike RANGE_MATCH search parameters the bounds are never parsed to guess their type
+     * A null bound leaves the range open on that side. Both bounds are inclusive
+     * Ranges never affect the ranking, so they are always applied in the filter context
+     * </pre>
+     */
+    public static class RangeParams {
+        private String field;
+        private Object from;
+        private Object to;
+        private RangeType rangeType;
+        private boolean excluded;
+
+        public RangeParams() {}
+
+        private RangeParams(String field, Object from, Object to, RangeType rangeType) {
+            this.field = field;
+            this.from = from;
+            this.to = to;
+            this.rangeType = rangeType;
+        }
+
+        public static RangeParams ofDates(String field, LocalDate from, LocalDate to) {
+            return new RangeParams(field, from, to, RangeType.DATE);
+        }
+
+        public static RangeParams ofLongs(String field, Long from, Long to) {
+            return new RangeParams(field, from, to, RangeType.LONG);
+        }
+
+        public static RangeParams ofDoubles(String field, Double from, Double to) {
+            return new RangeParams(field, from, to, RangeType.DOUBLE);
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Object getFrom() {
+            return from;
+        }
+
+        public Object getTo() {
+            return to;
+        }
+
+        public RangeType getRangeType() {
+            return rangeType;
+        }
+
+        public boolean isExcluded() {
+            return excluded;
+        }
+
+        /**
+         * @param excluded  true to match the documents outside of the range (must_not)
+         */
+        public RangeParams setExcluded(boolean excluded) {
+            this.excluded = excluded;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "RangeParams [field=" + field + ", from=" + from + ", to=" + to + ", rangeType=" + rangeType
+                    + ", excluded=" + excluded + "]";
+        }
+    }
+    
     public static class SortParams {
         private String sortBy;
         private SortOrder order;
@@ -126,8 +222,29 @@ public class SearchQueryData {
         EXACT_MATCH, PREFIX_MATCH, MULTI_MATCH, EXIST_MATCH, RANGE_MATCH
     }
     
+    public static enum RangeType {
+        DATE, LONG, DOUBLE
+    }
+    
     public static enum SearchCondition {
         AND, OR, NOT, FILTER
     }
 
+    /**
+     * The granularity which date range bounds are rounded to (Elastic Search date math units)
+     */
+    public static enum DateRounding {
+        NONE(""), HOUR("h"), DAY("d"), MONTH("M"), YEAR("y");
+
+        private String unit;
+
+        DateRounding(String unit) {
+            this.unit = unit;
+        }
+
+        public String unit() {
+            return unit;
+        }
+    }
+
 }
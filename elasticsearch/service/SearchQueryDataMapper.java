@@ -0,0 +1,107 @@
+package com.wse.common.elasticsearch.service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.CollectionUtils;
+
+import com.wse.common.elasticsearch.helper.DateFormatter;
+import com.wse.common.elasticsearch.helper.NumberParser;
+import com.wse.common.elasticsearch.service.SearchQueryData.RangeParams;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchCondition;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchParams;
+
+/**
+ * Map the SearchQueryData form onto the typed {@link SearchQuery} model, the positional String values are parsed here only once
+ */
+final class SearchQueryDataMapper {
+
+    private SearchQueryDataMapper() {
+    }
+
+    static SearchQuery map(SearchQueryData queryData) {
+        List<SearchQuery> requiredQueries = new ArrayList<>();
+        List<SearchQuery> excludedQueries = new ArrayList<>();
+
+        if (!CollectionUtils.isEmpty(queryData.getSearchParams())) {
+            // kept as a nested bool: its should clauses must not become optional because of the other criteria
+            requiredQueries.add(mapSearchParams(queryData.getSearchParams()));
+        }
+        if (queryData.getQuery() != null) {
+            requiredQueries.add(queryData.getQuery());
+        }
+        if (!CollectionUtils.isEmpty(queryData.getRangeParams())) {
+            for (RangeParams rangeParams : queryData.getRangeParams()) {
+                SearchQuery range = SearchQuery.range(rangeParams.getField(), rangeParams.getFrom(), rangeParams.getTo());
+                if (rangeParams.isExcluded()) {
+                    excludedQueries.add(range);
+                }
+                else {
+                    requiredQueries.add(range);
+                }
+            }
+        }
+
+        if (excludedQueries.isEmpty() && requiredQueries.size() < 2) {
+            return requiredQueries.isEmpty() ? null : requiredQueries.get(0);
+        }
+        return SearchQuery.bool().must(requiredQueries.toArray(new SearchQuery[requiredQueries.size()]))
+                .mustNot(excludedQueries.toArray(new SearchQuery[excludedQueries.size()]));
+    }
+
+    private static SearchQuery.Bool mapSearchParams(List<SearchParams> searchParamsList) {
+        SearchQuery.Bool bool = SearchQuery.bool();
+        for (SearchParams params : searchParamsList) {
+            SearchQuery query = mapSearchParams(params);
+            switch (SearchCondition.valueOf(params.getCondition())) {
+                case AND:
+                    bool = bool.must(query);
+                    break;
+                case NOT:
+                    bool = bool.mustNot(query);
+                    break;
+                case FILTER:
+                    bool = bool.filter(query);
+                    break;
+                case OR:
+                default:
+                    bool = bool.should(query);
+                    break;
+            }
+        }
+        return bool;
+    }
+
+    private static SearchQuery mapSearchParams(SearchParams params) {
+        String[] values = params.getSearchParams();
+        if (params.getSearchType() == null) {
+            return SearchQuery.prefix(values[0], values[1]);
+        }
+        switch (params.getSearchType()) {
+            case MULTI_MATCH:
+                return SearchQuery.multiMatch(values[0], Arrays.copyOfRange(values, 1, values.length));
+            case EXACT_MATCH:
+                return SearchQuery.term(values[0], values[1]);
+            case EXIST_MATCH:
+                return SearchQuery.exists(values[0]);
+            case RANGE_MATCH:
+                return SearchQuery.range(values[0], toRangeBound(values[1]), toRangeBound(values[2]));
+            case PREFIX_MATCH:
+            default:
+                return SearchQuery.prefix(values[0], values[1]);
+        }
+    }
+
+    // RANGE_MATCH bounds are strings: a date math expression, a number or a date (See DateFormatter), otherwise sent as they are
+    private static Object toRangeBound(String value) {
+        if (value == null || SearchQueryNormalizer.isDateMath(value) || NumberParser.isNumber(value)) {
+            return value;
+        }
+        Instant date = DateFormatter.parseInstant(value, null);
+        return date != null ? date.atZone(ZoneId.systemDefault()).toLocalDate() : value;
+    }
+
+}
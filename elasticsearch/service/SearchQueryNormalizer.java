@@ -0,0 +1,91 @@
+package com.wse.common.elasticsearch.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.wse.common.elasticsearch.helper.DateFormatter;
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
+
+/**
+ * <pre>
+ * Bring logically identical queries to the same JSON so that the shard request cache and the node query cache can hit.
+ * Clauses are sorted and deduplicated, and date range bounds are rounded to a fixed granularity.
+ * </pre>
+ */
+final class SearchQueryNormalizer {
+
+    private static final String DATE_MATH_NOW = "now";
+    private static final String DATE_MATH_ANCHOR = "||";
+    private static final char DATE_MATH_ROUNDING = '/';
+    // from the finest to the coarsest, "H" is also the hour
+    private static final String DATE_MATH_UNITS = "smhdwMy";
+
+    private SearchQueryNormalizer() {
+    }
+
+    /**
+     * Sort the clauses by their canonical form, dropping the duplicated ones.
+     * The order of clauses inside a bool query does not change the result, only the generated JSON.
+     */
+    static List<SearchQuery> normalize(List<SearchQuery> queries) {
+        if (queries.size() < 2) {
+            return queries;
+        }
+        Map<String, SearchQuery> sortedQueries = new TreeMap<>();
+        for (SearchQuery query : queries) {
+            sortedQueries.putIfAbsent(query.key(), query);
+        }
+        return new ArrayList<>(sortedQueries.values());
+    }
+
+    /**
+     * Convert a typed range bound to the value sent to Elastic Search: dates are formatted and rounded
+     */
+    static Object toRangeBound(Object bound, DateRounding rounding) {
+        if (bound instanceof LocalDate) {
+            return round(DateFormatter.toDateString((LocalDate) bound), rounding);
+        }
+        if (bound instanceof String && isDateMath((String) bound)) {
+            return round((String) bound, rounding);
+        }
+        return bound;
+    }
+
+    /**
+     * Round a date range bound, either a formatted date or a "now" date math expression.
+     * With "gte" the bound is rounded down and with "lte" rounded up by Elastic Search itself.
+     */
+    static String round(String dateValue, DateRounding rounding) {
+        if (dateValue == null || rounding == null || rounding == DateRounding.NONE) {
+            return dateValue;
+        }
+        if (isDateMath(dateValue)) {
+            // an expression which is already rounded, or finer than the rounding, is left as it is
+            if (dateValue.indexOf(DATE_MATH_ROUNDING) >= 0 || hasFinerOffset(dateValue, rounding)) {
+                return dateValue;
+            }
+            return dateValue + DATE_MATH_ROUNDING + rounding.unit();
+        }
+        return dateValue + DATE_MATH_ANCHOR + DATE_MATH_ROUNDING + rounding.unit();
+    }
+
+    // "now-15m" rounded to the day would match the whole day instead of the last 15 minutes
+    private static boolean hasFinerOffset(String dateMath, DateRounding rounding) {
+        int roundingRank = DATE_MATH_UNITS.indexOf(rounding.unit());
+        for (int i = DATE_MATH_NOW.length(); i < dateMath.length(); i++) {
+            char c = dateMath.charAt(i);
+            if (Character.isLetter(c) && DATE_MATH_UNITS.indexOf(c == 'H' ? 'h' : c) < roundingRank) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isDateMath(String value) {
+        return value != null && value.startsWith(DATE_MATH_NOW);
+    }
+
+}
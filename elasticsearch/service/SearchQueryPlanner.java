@@ -0,0 +1,75 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * <pre>
+ * Decide which bool clause each query goes to.
+ * Term, range and exists queries never change the ranking, so they are put in the filter context
+ * where Elastic Search skips scoring and can cache them in the node query cache.
+ * Only the text queries (prefix and multi-match) are kept in the scoring clauses.
+ * The set of matching documents stays the same as putting every query in its requested clause.
+ * </pre>
+ */
+final class SearchQueryPlanner {
+
+    private SearchQueryPlanner() {
+    }
+
+    static QueryBuilder plan(SearchQuery.Bool bool, Function<SearchQuery, QueryBuilder> translator) {
+        List<SearchQuery> must = SearchQueryNormalizer.normalize(bool.getMust());
+        List<SearchQuery> filter = SearchQueryNormalizer.normalize(bool.getFilter());
+        List<SearchQuery> should = SearchQueryNormalizer.normalize(bool.getShould());
+        List<SearchQuery> mustNot = SearchQueryNormalizer.normalize(bool.getMustNot());
+
+        // a bool with a single scoring clause is the clause itself
+        if (must.size() == 1 && must.get(0).isScoring() && filter.isEmpty() && should.isEmpty() && mustNot.isEmpty()) {
+            return translator.apply(must.get(0));
+        }
+
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+        for (SearchQuery query : must) {
+            if (query.isScoring()) {
+                boolQuery.must(translator.apply(query));
+            }
+            else {
+                boolQuery.filter(translator.apply(query));
+            }
+        }
+        for (SearchQuery query : filter) {
+            boolQuery.filter(translator.apply(query));
+        }
+        for (SearchQuery query : mustNot) {
+            boolQuery.mustNot(translator.apply(query));
+        }
+        if (should.isEmpty()) {
+            return boolQuery;
+        }
+
+        // Without any must/filter clause, at least one should clause has to match.
+        // If none of them scores, the whole disjunction can be moved into the filter context as a nested bool.
+        // Otherwise the should clauses are either optional (only affect ranking) or mixed with text queries, so they stay.
+        boolean hasRequiredClause = !must.isEmpty() || !filter.isEmpty();
+        if (!hasRequiredClause && !SearchQuery.Bool.anyScoring(should)) {
+            if (should.size() == 1) {
+                return boolQuery.filter(translator.apply(should.get(0)));
+            }
+            BoolQueryBuilder disjunction = QueryBuilders.boolQuery();
+            for (SearchQuery query : should) {
+                disjunction.should(translator.apply(query));
+            }
+            return boolQuery.filter(disjunction);
+        }
+
+        for (SearchQuery query : should) {
+            boolQuery.should(translator.apply(query));
+        }
+        return boolQuery;
+    }
+
+}
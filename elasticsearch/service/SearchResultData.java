@@ -7,6 +7,9 @@ public class SearchResultData<E> {
     private List<E> resultList;
     
     private long numberOfRecords;
+    
+    // true when the cluster was unavailable and this is the last known result of the same search
+    private boolean stale;
 
     public List<E> getResultList() {
         return resultList;
@@ -24,4 +27,12 @@ public class SearchResultData<E> {
         this.numberOfRecords = numberOfRecords;
     }
 
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
 }
@@ -0,0 +1,142 @@
+package com.wse.common.elasticsearch.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wse.common.elasticsearch.service.SlowQueryRecord.ClauseProfile;
+
+/**
+ * <pre>
+ * Log a sample of the searches slower than the threshold with their query, took time and shard counts,
+ * on the logger "com.wse.common.elasticsearch.slowlog" so it can be routed to its own appender.
+ * A sample of them is run again with profile=true in the background, and the profile of each clause is added to the record.
+ * This gives the expensive clauses of our own queries without enabling the slow logs of the whole cluster.
+ * </pre>
+ */
+final class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("com.wse.common.elasticsearch.slowlog");
+    private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
+
+    private static final String PROFILE_FILTER_PATH = "profile.shards.id,profile.shards.searches.query";
+    private static final int UNKNOWN = -1;
+
+    private final SlowQueryLogOptions options;
+    private final long thresholdNanos;
+    private final Deque<SlowQueryRecord> records = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger recordCount = new AtomicInteger();
+
+    SlowQueryLog(SlowQueryLogOptions options) {
+        this.options = options;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(options.getThresholdMillis());
+    }
+
+    boolean isSlow(long roundTripNanos) {
+        return roundTripNanos >= thresholdNanos;
+    }
+
+    /**
+     * Record a slow search if it is sampled, See {@link #isSlow(long)}
+     * @param index         the index of the metrics, usually the alias
+     * @param searchIndices the indices the query was sent to
+     * @param routing       the routing the query was sent with, null without routing
+     * @param query         the query as sent
+     * @param response      the response, null if only the raw body was read
+     * @param restClient    the client which served the query, used to run the profiled query again on the same cluster
+     */
+    void onSlowSearch(String operation, String index, String searchIndices, String routing, String query, SearchResponse response, 
+            long roundTripNanos, RestClient restClient) {
+        if (!isSampled(options.getSampleRate())) {
+            return;
+        }
+        long roundTripMillis = TimeUnit.NANOSECONDS.toMillis(roundTripNanos);
+        SlowQueryRecord record = response != null
+                ? new SlowQueryRecord(operation, index, searchIndices, routing, query, response.getTook().millis(), roundTripMillis,
+                        response.getTotalShards(), response.getSuccessfulShards(), response.getSkippedShards(), response.getFailedShards())
+                : new SlowQueryRecord(operation, index, searchIndices, routing, query, UNKNOWN, roundTripMillis,
+                        UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
+        LOGGER.warn("Slow {}", record);
+        add(record);
+
+        if (searchIndices != null && isSampled(options.getProfileSampleRate())) {
+            options.getProfileExecutor().execute(() -> profile(record, restClient));
+        }
+    }
+
+    /**
+     * @return the recent slow queries, the most recent first
+     */
+    List<SlowQueryRecord> getRecords() {
+        return Collections.unmodifiableList(new ArrayList<>(records));
+    }
+
+    private void add(SlowQueryRecord record) {
+        records.addFirst(record);
+        if (recordCount.incrementAndGet() > options.getMaxRecords() && records.pollLast() != null) {
+            recordCount.decrementAndGet();
+        }
+    }
+
+    private void profile(SlowQueryRecord record, RestClient restClient) {
+        try {
+            ObjectNode body = (ObjectNode) JACKSON_MAPPER.readTree(record.getQuery());
+            body.put("profile", true);
+            Map<String, String> params = new HashMap<>();
+            params.put("filter_path", PROFILE_FILTER_PATH);
+            // the same shards as the slow query
+            if (record.getRouting() != null) {
+                params.put("routing", record.getRouting());
+            }
+            Response response = restClient.performRequest("POST", String.format("/%s/_search", record.getSearchIndices()), params,
+                    new NStringEntity(JACKSON_MAPPER.writeValueAsString(body), ContentType.APPLICATION_JSON));
+
+            List<ClauseProfile> clauses = new ArrayList<>();
+            for (JsonNode shard : JACKSON_MAPPER.readTree(response.getEntity().getContent()).path("profile").path("shards")) {
+                String shardId = shard.path("id").asText();
+                for (JsonNode search : shard.path("searches")) {
+                    for (JsonNode clause : search.path("query")) {
+                        addClauses(clauses, shardId, clause, 0);
+                    }
+                }
+            }
+            record.setProfile(clauses);
+            LOGGER.warn("Profile of the slow {} on {}: {}", record.getOperation(), record.getIndex(), clauses);
+        }
+        catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to profile the slow query. Exception: {}", e.getMessage());
+        }
+    }
+
+    private static void addClauses(List<ClauseProfile> clauses, String shardId, JsonNode clause, int depth) {
+        clauses.add(new ClauseProfile(shardId, depth, clause.path("type").asText(), clause.path("description").asText(),
+                clause.path("time_in_nanos").asLong()));
+        for (JsonNode child : clause.path("children")) {
+            addClauses(clauses, shardId, child, depth + 1);
+        }
+    }
+
+    private static boolean isSampled(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * Options of the slow query log: the searches slower than the threshold are logged (a sample of them) with their query,
+ * and a sample of the logged ones are run again with profile=true to get the time spent in each clause
+ * See {@link ElasticSearchService#setSlowQueryLogOptions(SlowQueryLogOptions)}
+ * </pre>
+ */
+public class SlowQueryLogOptions {
+
+    private static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+    private static final double DEFAULT_SAMPLE_RATE = 1;
+    private static final double DEFAULT_PROFILE_SAMPLE_RATE = 0;
+    private static final int DEFAULT_MAX_RECORDS = 100;
+
+    // a single thread with a short queue: the profiled queries are slow by definition, they must not pile up on the cluster
+    private static final ExecutorService DEFAULT_PROFILE_EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(10), DaemonExecutors.threadFactory("slow-query-profile"), new ThreadPoolExecutor.DiscardPolicy());
+
+    private long thresholdMillis = DEFAULT_THRESHOLD_MILLIS;
+
+    // the fraction (0 to 1) of the slow queries which are logged
+    private double sampleRate = DEFAULT_SAMPLE_RATE;
+
+    // the fraction (0 to 1) of the logged queries which are run again with profile=true, 0 never profiles
+    private double profileSampleRate = DEFAULT_PROFILE_SAMPLE_RATE;
+
+    // the number of recent slow queries kept in memory, See ElasticSearchService#getSlowQueries()
+    private int maxRecords = DEFAULT_MAX_RECORDS;
+
+    private Executor profileExecutor = DEFAULT_PROFILE_EXECUTOR;
+
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    public SlowQueryLogOptions setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+        return this;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public SlowQueryLogOptions setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public double getProfileSampleRate() {
+        return profileSampleRate;
+    }
+
+    public SlowQueryLogOptions setProfileSampleRate(double profileSampleRate) {
+        this.profileSampleRate = profileSampleRate;
+        return this;
+    }
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    public SlowQueryLogOptions setMaxRecords(int maxRecords) {
+        this.maxRecords = maxRecords;
+        return this;
+    }
+
+    public Executor getProfileExecutor() {
+        return profileExecutor;
+    }
+
+    public SlowQueryLogOptions setProfileExecutor(Executor profileExecutor) {
+        this.profileExecutor = profileExecutor;
+        return this;
+    }
+
+}
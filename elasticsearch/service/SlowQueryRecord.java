@@ -0,0 +1,172 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <pre>
+ * A search slower than the threshold of the slow query log (See {@link SlowQueryLogOptions})
+ * The took time is the time spent in the cluster, the round trip time also includes the network, the queueing and the parsing.
+ * The took time and the shard counts are -1 when they are not part of the response (streamed and lazy searches).
+ * </pre>
+ */
+public class SlowQueryRecord {
+
+    private final long timestamp;
+    private final String operation;
+    private final String index;
+    private final String searchIndices;
+    private final String routing;
+    private final String query;
+    private final long tookMillis;
+    private final long roundTripMillis;
+    private final int totalShards;
+    private final int successfulShards;
+    private final int skippedShards;
+    private final int failedShards;
+
+    // set once the profiled run completes
+    private volatile List<ClauseProfile> profile = Collections.emptyList();
+
+    SlowQueryRecord(String operation, String index, String searchIndices, String routing, String query, long tookMillis, 
+            long roundTripMillis, int totalShards, int successfulShards, int skippedShards, int failedShards) {
+        this.timestamp = System.currentTimeMillis();
+        this.operation = operation;
+        this.index = index;
+        this.searchIndices = searchIndices;
+        this.routing = routing;
+        this.query = query;
+        this.tookMillis = tookMillis;
+        this.roundTripMillis = roundTripMillis;
+        this.totalShards = totalShards;
+        this.successfulShards = successfulShards;
+        this.skippedShards = skippedShards;
+        this.failedShards = failedShards;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * The indices the query was sent to, the partitions of a time partitioned index when they were pruned
+     */
+    public String getSearchIndices() {
+        return searchIndices;
+    }
+
+    /**
+     * The routing the query was sent with, null without routing
+     */
+    public String getRouting() {
+        return routing;
+    }
+
+    /**
+     * The translated query, as sent to the cluster
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    public long getRoundTripMillis() {
+        return roundTripMillis;
+    }
+
+    public int getTotalShards() {
+        return totalShards;
+    }
+
+    public int getSuccessfulShards() {
+        return successfulShards;
+    }
+
+    public int getSkippedShards() {
+        return skippedShards;
+    }
+
+    public int getFailedShards() {
+        return failedShards;
+    }
+
+    /**
+     * @return the time of each query clause on each shard, empty if the query was not profiled (yet)
+     */
+    public List<ClauseProfile> getProfile() {
+        return profile;
+    }
+
+    void setProfile(List<ClauseProfile> profile) {
+        this.profile = Collections.unmodifiableList(profile);
+    }
+
+    @Override
+    public String toString() {
+        return "operation=" + operation + ", index=" + index + ", searchIndices=" + searchIndices + ", routing=" + routing + ", took=" + tookMillis + "ms, roundTrip=" + roundTripMillis
+                + "ms, shards=" + successfulShards + "/" + totalShards + " (skipped " + skippedShards + ", failed " + failedShards
+                + "), query=" + query;
+    }
+
+    public static class ClauseProfile {
+        private final String shard;
+        private final int depth;
+        private final String type;
+        private final String description;
+        private final long timeNanos;
+
+        ClauseProfile(String shard, int depth, String type, String description, long timeNanos) {
+            this.shard = shard;
+            this.depth = depth;
+            this.type = type;
+            this.description = description;
+            this.timeNanos = timeNanos;
+        }
+
+        public String getShard() {
+            return shard;
+        }
+
+        /**
+         * The depth of the clause in the query tree, 0 for the root
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * The Lucene query type, for example BooleanQuery or TermQuery
+         */
+        public String getType() {
+            return type;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * The time of the clause including its children
+         */
+        public long getTimeNanos() {
+            return timeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return shard + " " + depth + " " + type + " [" + description + "] " + timeNanos + "ns";
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.wse.common.elasticsearch.service;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <pre>
+ * Options for reading search responses straight from the HTTP entity stream
+ * See {@link ElasticSearchService#streamSearch(SearchQueryData)}
+ * </pre>
+ */
+public class StreamingSearchOptions {
+
+    private static final int DEFAULT_MAX_RESPONSE_BUFFER_BYTES = 100 * 1024 * 1024;
+    private static final int DEFAULT_PARALLEL_DECODE_THRESHOLD = 500;
+
+    // the response is rejected once it grows over this limit, instead of exhausting the heap
+    private int maxResponseBufferBytes = DEFAULT_MAX_RESPONSE_BUFFER_BYTES;
+
+    // pages of at least this many hits are decoded on the pool, 0 means always decode on the calling thread
+    private int parallelDecodeThreshold = DEFAULT_PARALLEL_DECODE_THRESHOLD;
+
+    private ForkJoinPool decodePool = ForkJoinPool.commonPool();
+
+    public int getMaxResponseBufferBytes() {
+        return maxResponseBufferBytes;
+    }
+
+    public StreamingSearchOptions setMaxResponseBufferBytes(int maxResponseBufferBytes) {
+        this.maxResponseBufferBytes = maxResponseBufferBytes;
+        return this;
+    }
+
+    public int getParallelDecodeThreshold() {
+        return parallelDecodeThreshold;
+    }
+
+    public StreamingSearchOptions setParallelDecodeThreshold(int parallelDecodeThreshold) {
+        this.parallelDecodeThreshold = parallelDecodeThreshold;
+        return this;
+    }
+
+    public ForkJoinPool getDecodePool() {
+        return decodePool;
+    }
+
+    public StreamingSearchOptions setDecodePool(ForkJoinPool decodePool) {
+        this.decodePool = decodePool;
+        return this;
+    }
+
+    boolean shouldDecodeInParallel(int expectedHits) {
+        return parallelDecodeThreshold > 0 && expectedHits >= parallelDecodeThreshold && decodePool != null;
+    }
+
+}
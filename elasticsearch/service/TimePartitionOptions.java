@@ -0,0 +1,132 @@
+package com.wse.common.elasticsearch.service;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.regex.Pattern;
+
+import com.wse.common.elasticsearch.helper.DateFormatter;
+
+/**
+ * <pre>
+ * The options of a time partitioned index (See {@link TimePartitionedIndex})
+ * The documents are written to one index per month or per year of their date property, named alias-yyyy.MM or alias-yyyy
+ * </pre>
+ */
+public class TimePartitionOptions {
+
+    // the property of the entity which picks the partition of a document, also the field whose ranges prune the searches
+    private String dateProperty;
+
+    private Granularity granularity = Granularity.MONTH;
+
+    // the partitions which ended longer ago are dropped by applyRetention(), null to keep them all
+    private Period retention;
+
+    // the mappings of the new partitions, either in Map format or JSON format
+    private Object mappings;
+
+    // the index settings of the new partitions
+    private IndexSettingsProfile settingsProfile = IndexSettingsProfile.defaults();
+
+    public String getDateProperty() {
+        return dateProperty;
+    }
+
+    public TimePartitionOptions setDateProperty(String dateProperty) {
+        this.dateProperty = dateProperty;
+        return this;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public TimePartitionOptions setGranularity(Granularity granularity) {
+        this.granularity = granularity != null ? granularity : Granularity.MONTH;
+        return this;
+    }
+
+    public Period getRetention() {
+        return retention;
+    }
+
+    public TimePartitionOptions setRetention(Period retention) {
+        this.retention = retention;
+        return this;
+    }
+
+    public Object getMappings() {
+        return mappings;
+    }
+
+    public TimePartitionOptions setMappings(Object mappings) {
+        this.mappings = mappings;
+        return this;
+    }
+
+    public IndexSettingsProfile getSettingsProfile() {
+        return settingsProfile;
+    }
+
+    /**
+     * @param settingsProfile   for example {@link IndexSettingsProfile#writeHeavy()} for the current partitions
+     */
+    public TimePartitionOptions setSettingsProfile(IndexSettingsProfile settingsProfile) {
+        this.settingsProfile = settingsProfile != null ? settingsProfile : IndexSettingsProfile.defaults();
+        return this;
+    }
+
+    /**
+     * The time span of a partition
+     */
+    public static enum Granularity {
+        MONTH("yyyy.MM", Pattern.compile("\\d{4}\\.\\d{2}")), YEAR("yyyy", Pattern.compile("\\d{4}"));
+
+        private String suffixFormat;
+        private Pattern suffixPattern;
+
+        Granularity(String suffixFormat, Pattern suffixPattern) {
+            this.suffixFormat = suffixFormat;
+            this.suffixPattern = suffixPattern;
+        }
+
+        /**
+         * @return the first day of the partition which contains the date
+         */
+        LocalDate start(LocalDate date) {
+            return this == MONTH ? date.withDayOfMonth(1) : date.withDayOfYear(1);
+        }
+
+        /**
+         * @return the last day of the partition which starts on the date
+         */
+        LocalDate end(LocalDate start) {
+            return next(start).minusDays(1);
+        }
+
+        /**
+         * @return the first day of the partition which follows the one starting on the date
+         */
+        LocalDate next(LocalDate start) {
+            return this == MONTH ? start.plusMonths(1) : start.plusYears(1);
+        }
+
+        String suffix(LocalDate start) {
+            return DateFormatter.toDateString(start, suffixFormat);
+        }
+
+        /**
+         * @return the first day of the partition, or null if the suffix is not one of this granularity
+         */
+        LocalDate parseSuffix(String suffix) {
+            if (!suffixPattern.matcher(suffix).matches()) {
+                return null;
+            }
+            return this == MONTH ? YearMonth.parse(suffix, DateFormatter.getFormatter(suffixFormat)).atDay(1)
+                    : Year.parse(suffix).atDay(1);
+        }
+    }
+
+}
@@ -0,0 +1,479 @@
+package com.wse.common.elasticsearch.service;
+
+import java.lang.reflect.Method;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.CollectionUtils;
+
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+import com.wse.common.elasticsearch.helper.DateFormatter;
+import com.wse.common.elasticsearch.service.ElasticSearchService.ServiceMode;
+import com.wse.common.elasticsearch.service.SearchQueryData.RangeParams;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchCondition;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchParams;
+import com.wse.common.elasticsearch.service.SearchQueryData.SearchType;
+import com.wse.common.elasticsearch.service.TimePartitionOptions.Granularity;
+
+/**
+ * <pre>
+ * An index split by time: every document is written to the partition (alias-yyyy.MM or alias-yyyy) of its date property,
+ * a partition is created with the configured mappings and added to the alias on its first write
+ * The searches read only the partitions which overlap the ranges of the date property required by the query
+ * (RANGE_MATCH search params with an AND or FILTER condition, and range params which are not excluded),
+ * so their cost follows the time window instead of the whole history. Without such a range they read the alias
+ * The bounds are widened by a day, because the partitions follow the dates in the system zone and Elastic Search in UTC
+ * A range reaching a period without a known partition reloads the partitions first (at most once a second), since another
+ * process may have created it, then a period without partition has no documents and is skipped. The periods before the
+ * earliest partition or dropped by the retention are empty without reloading. A range without upper bound reads the alias
+ * The date property of a document must not change: it picks the partition of every write, a document whose date moves
+ * to another partition must be deleted with its previous date and indexed again
+ * </pre>
+ */
+public final class TimePartitionedIndex<E> {
+
+    private static final String DATE_MATH_NOW = "now";
+    private static final char DATE_MATH_ROUNDING = '/';
+    private static final String PARTITION_SEPARATOR = "-";
+    private static final String ISO_DATE_FORMAT = "yyyy-MM-dd";
+    // the documents are not searchable before the refresh of their partition anyway, 1 second by default
+    private static final long MISS_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ElasticSearchServiceImpl<E> service;
+    private final IndexHandle<E> aliasHandle;
+    private final String dateProperty;
+    private final Method dateReader;
+    private final Granularity granularity;
+    private final Period retention;
+    private final Object mappings;
+    private final IndexSettingsProfile settingsProfile;
+
+    // the handles of the known partitions by their first day, only added to or removed from while holding the lock of the map
+    private final ConcurrentSkipListMap<LocalDate, IndexHandle<E>> partitions = new ConcurrentSkipListMap<>();
+
+    private volatile long lastRefreshNanos = System.nanoTime() - MISS_REFRESH_INTERVAL_NANOS;
+
+    TimePartitionedIndex(ElasticSearchServiceImpl<E> service, IndexHandle<E> aliasHandle, TimePartitionOptions options, Method dateReader) {
+        this.service = service;
+        this.aliasHandle = aliasHandle;
+        this.dateProperty = options.getDateProperty();
+        this.dateReader = dateReader;
+        this.granularity = options.getGranularity();
+        this.retention = options.getRetention();
+        this.mappings = options.getMappings();
+        this.settingsProfile = options.getSettingsProfile();
+    }
+
+    /**
+     * @return the alias over all the partitions
+     */
+    public String getAlias() {
+        return aliasHandle.getIndexName();
+    }
+
+    /**
+     * @return the names of the known partitions, the oldest first
+     */
+    public List<String> getPartitions() {
+        List<String> partitionNames = new ArrayList<>();
+        for (IndexHandle<E> partition : partitions.values()) {
+            partitionNames.add(partition.getIndexName());
+        }
+        return partitionNames;
+    }
+
+    /**
+     * @return the handle of the partition which contains the date, the partition is created if it does not exist
+     */
+    public IndexHandle<E> getPartition(LocalDate date) {
+        LocalDate start = granularity.start(date);
+        IndexHandle<E> partition = partitions.get(start);
+        return partition != null ? partition : createPartition(start);
+    }
+
+    public void index(E entity, String id) {
+        getPartition(readDate(entity)).index(entity, id);
+    }
+
+    /**
+     * @param entity    the document, its date property picks the partition and must be the one it was indexed with
+     */
+    public void upsert(E entity, String id, ServiceMode mode) {
+        getPartition(readDate(entity)).upsert(entity, id, mode);
+    }
+
+    /**
+     * Nothing is deleted if the partition does not exist (never created, or dropped by the retention), it is not created
+     * @param entity    the deleted document, its date property picks the partition and must be the one it was indexed with
+     */
+    public void delete(E entity, String id, ServiceMode mode) {
+        LocalDate start = granularity.start(readDate(entity));
+        IndexHandle<E> partition = partitions.get(start);
+        if (partition == null) {
+            // it may have been created by another process
+            refreshPartitions();
+            partition = partitions.get(start);
+        }
+        if (partition != null) {
+            partition.delete(id, mode);
+        }
+    }
+
+    /**
+     * Index the documents with a single bulk request whatever the number of partitions they belong to
+     */
+    public void bulkIndex(Map<String, E> entityMapWithId, ServiceMode mode) {
+        if (CollectionUtils.isEmpty(entityMapWithId)) {
+            return;
+        }
+        Map<IndexHandle<E>, Map<String, E>> entityMapsByPartition = new LinkedHashMap<>();
+        for (Map.Entry<String, E> entry : entityMapWithId.entrySet()) {
+            entityMapsByPartition.computeIfAbsent(getPartition(readDate(entry.getValue())), partition -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        service.bulkIndex(getAlias(), entityMapsByPartition, mode);
+    }
+
+    public List<E> search(SearchQueryData queryData) {
+        IndexHandle<E> handle = getSearchHandle(queryData);
+        return handle != null ? handle.search(queryData) : Collections.emptyList();
+    }
+
+    public SearchResultData<E> searchWithRecordCount(SearchQueryData queryData) {
+        IndexHandle<E> handle = getSearchHandle(queryData);
+        if (handle != null) {
+            return handle.searchWithRecordCount(queryData);
+        }
+        SearchResultData<E> searchResultData = new SearchResultData<>();
+        searchResultData.setResultList(Collections.emptyList());
+        return searchResultData;
+    }
+
+    public long count(SearchQueryData queryData) {
+        IndexHandle<E> handle = getSearchHandle(queryData);
+        return handle != null ? handle.count(queryData) : 0;
+    }
+
+    public AggregationResultData aggregate(AggregationQueryData aggregationData) {
+        IndexHandle<E> handle = aggregationData.getQueryData() != null ? getSearchHandle(aggregationData.getQueryData()) : aliasHandle;
+        return handle != null ? handle.aggregate(aggregationData) : new AggregationResultData();
+    }
+
+    /**
+     * @return the handle which searches only the partitions the query can match, the alias handle if the query has no upper
+     * bound on the date property or overlaps all the partitions, null if no partition can match
+     */
+    public IndexHandle<E> getSearchHandle(SearchQueryData queryData) {
+        DateBounds bounds = findDateBounds(queryData);
+        LocalDate from = bounds.from != null ? bounds.from.minusDays(1) : null;
+        LocalDate to = bounds.to != null ? bounds.to.plusDays(1) : null;
+        if (from != null && to != null && from.isAfter(to)) {
+            return null;
+        }
+        // a partition may be created at any time after the last refresh
+        if (to == null) {
+            return aliasHandle;
+        }
+
+        if (hasUnknownPeriod(partitions.keySet(), granularity, from, to, getEmptyBefore())) {
+            refreshPartitionsAfterMiss();
+        }
+        // the known partitions are authoritative from here: a period without partition has no documents
+        List<String> indices = new ArrayList<>();
+        for (LocalDate start : findKnownPartitions(partitions.keySet(), granularity, from, to)) {
+            IndexHandle<E> partition = partitions.get(start);
+            // dropped by the retention in the meantime
+            if (partition != null) {
+                indices.add(partition.getIndexName());
+            }
+        }
+        if (indices.isEmpty()) {
+            return null;
+        }
+        return indices.size() == partitions.size() ? aliasHandle : aliasHandle.withSearchIndices(indices);
+    }
+
+    /**
+     * @param from          the first day of the range, null if the range has no lower bound
+     * @param to            the last day of the range
+     * @param emptyBefore   the periods starting before it have no other partition than the known ones, null if any may exist
+     * @return true if the range overlaps a period without a known partition, which may have been created by another process
+     */
+    static boolean hasUnknownPeriod(NavigableSet<LocalDate> knownStarts, Granularity granularity, LocalDate from, LocalDate to, 
+            LocalDate emptyBefore) {
+        LocalDate first = from != null ? granularity.start(from) : emptyBefore;
+        if (first == null) {
+            return true;
+        }
+        if (emptyBefore != null && first.isBefore(emptyBefore)) {
+            first = emptyBefore;
+        }
+        for (LocalDate start = first; !start.isAfter(to); start = granularity.next(start)) {
+            if (!knownStarts.contains(start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param from  the first day of the range, null if the range has no lower bound
+     * @param to    the last day of the range
+     * @return the first days of the known partitions the range overlaps, the oldest first
+     */
+    static List<LocalDate> findKnownPartitions(NavigableSet<LocalDate> knownStarts, Granularity granularity, LocalDate from, LocalDate to) {
+        return new ArrayList<>(from != null ? knownStarts.subSet(granularity.start(from), true, to, true) : knownStarts.headSet(to, true));
+    }
+
+    // the later of the first known partition and the first period kept by the retention, null if neither is known
+    private LocalDate getEmptyBefore() {
+        Map.Entry<LocalDate, IndexHandle<E>> earliest = partitions.firstEntry();
+        LocalDate emptyBefore = earliest != null ? earliest.getKey() : null;
+        if (retention != null) {
+            LocalDate retained = granularity.start(LocalDate.now().minus(retention));
+            emptyBefore = emptyBefore == null || retained.isAfter(emptyBefore) ? retained : emptyBefore;
+        }
+        return emptyBefore;
+    }
+
+    // the searches over a period without partition, such as the current one before its first write, do not reload each time
+    private void refreshPartitionsAfterMiss() {
+        if (System.nanoTime() - lastRefreshNanos >= MISS_REFRESH_INTERVAL_NANOS) {
+            refreshPartitions();
+        }
+    }
+
+    /**
+     * Reload the partitions from the alias, to see the partitions created or dropped by other processes
+     */
+    public void refreshPartitions() {
+        String prefix = getAlias() + PARTITION_SEPARATOR;
+        Map<LocalDate, String> found = new TreeMap<>();
+        for (String index : service.getAliasIndices(getAlias())) {
+            LocalDate start = index.startsWith(prefix) ? granularity.parseSuffix(index.substring(prefix.length())) : null;
+            if (start != null) {
+                found.put(start, index);
+            }
+        }
+        synchronized (partitions) {
+            partitions.keySet().retainAll(found.keySet());
+            for (Map.Entry<LocalDate, String> partition : found.entrySet()) {
+                partitions.putIfAbsent(partition.getKey(), aliasHandle.withIndexName(partition.getValue()));
+            }
+        }
+        lastRefreshNanos = System.nanoTime();
+    }
+
+    /**
+     * <pre>
+     * Drop the partitions which ended before today minus the retention period, nothing without a retention period
+     * Meant to be called by a daily job
+     * </pre>
+     * @return the names of the dropped partitions
+     */
+    public List<String> applyRetention() {
+        if (retention == null) {
+            return Collections.emptyList();
+        }
+        refreshPartitions();
+        LocalDate cutoff = LocalDate.now().minus(retention);
+        List<String> dropped = new ArrayList<>();
+        synchronized (partitions) {
+            Iterator<Map.Entry<LocalDate, IndexHandle<E>>> iterator = partitions.headMap(cutoff).entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<LocalDate, IndexHandle<E>> partition = iterator.next();
+                if (granularity.end(partition.getKey()).isBefore(cutoff)) {
+                    service.deleteIndex(partition.getValue().getIndexName());
+                    iterator.remove();
+                    dropped.add(partition.getValue().getIndexName());
+                }
+            }
+        }
+        return dropped;
+    }
+
+    private IndexHandle<E> createPartition(LocalDate start) {
+        synchronized (partitions) {
+            IndexHandle<E> partition = partitions.get(start);
+            if (partition != null) {
+                return partition;
+            }
+            String partitionName = getAlias() + PARTITION_SEPARATOR + granularity.suffix(start);
+            try {
+                service.createIndexWithMappings(partitionName, aliasHandle.getDocumentType(), mappings, settingsProfile);
+            }
+            catch (ElasticSearchServiceException e) {
+                // another process may have created it in the meantime
+                if (!service.existIndex(partitionName, aliasHandle.getDocumentType())) {
+                    throw e;
+                }
+            }
+            service.createIndexAlias(partitionName, getAlias());
+            partition = aliasHandle.withIndexName(partitionName);
+            partitions.put(start, partition);
+            return partition;
+        }
+    }
+
+    private LocalDate readDate(E entity) {
+        LocalDate date;
+        try {
+            date = toDate(dateReader.invoke(entity), false);
+        } catch (ReflectiveOperationException e) {
+            throw new ElasticSearchServiceException("Unable to read the partition property: " + dateProperty + ". Exception: " + e.getMessage());
+        }
+        if (date == null) {
+            throw new ElasticSearchServiceException("The document has no date in the partition property: " + dateProperty);
+        }
+        return date;
+    }
+
+    // the range of dates the query can match, narrowed by every required range of the date property
+    private DateBounds findDateBounds(SearchQueryData queryData) {
+        DateBounds bounds = new DateBounds();
+        if (!CollectionUtils.isEmpty(queryData.getSearchParams())) {
+            for (SearchParams params : queryData.getSearchParams()) {
+                String[] values = params.getSearchParams();
+                if (params.getSearchType() == SearchType.RANGE_MATCH && isRequired(params.getCondition())
+                        && values.length > 2 && dateProperty.equals(values[0])) {
+                    bounds.narrow(toDate(values[1], false), toDate(values[2], true));
+                }
+            }
+        }
+        if (!CollectionUtils.isEmpty(queryData.getRangeParams())) {
+            for (RangeParams params : queryData.getRangeParams()) {
+                if (!params.isExcluded() && dateProperty.equals(params.getField())) {
+                    bounds.narrow(toDate(params.getFrom(), false), toDate(params.getTo(), true));
+                }
+            }
+        }
+        return bounds;
+    }
+
+    // OR ranges are optional and NOT ranges are excluded, so only the AND and FILTER ones narrow the dates
+    private static boolean isRequired(String condition) {
+        return SearchCondition.AND.name().equals(condition) || SearchCondition.FILTER.name().equals(condition);
+    }
+
+    /**
+     * @param upperBound    true to round a date math expression up, as Elastic Search does for the "lte" bound
+     * @return the date in the system zone, or null if the value is not a date
+     */
+    private static LocalDate toDate(Object value, boolean upperBound) {
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate();
+        }
+        if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+        if (value instanceof Instant) {
+            return ((Instant) value).atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+        if (value instanceof String) {
+            String dateValue = (String) value;
+            if (dateValue.startsWith(DATE_MATH_NOW)) {
+                return resolveDateMath(dateValue, upperBound, LocalDateTime.now());
+            }
+            Instant date = DateFormatter.parseInstant(dateValue, null);
+            date = date != null ? date : DateFormatter.parseInstant(dateValue, ISO_DATE_FORMAT);
+            return date != null ? date.atZone(ZoneId.systemDefault()).toLocalDate() : null;
+        }
+        return null;
+    }
+
+    // "now", optionally followed by +/- offsets ("now-1M", "now-7d") and a rounding ("now-1M/M"), null for any other expression
+    static LocalDate resolveDateMath(String expression, boolean upperBound, LocalDateTime now) {
+        LocalDateTime time = now;
+        int position = DATE_MATH_NOW.length();
+        while (position < expression.length()) {
+            char operator = expression.charAt(position);
+            if (operator == DATE_MATH_ROUNDING) {
+                return position + 2 == expression.length() ? round(time.toLocalDate(), expression.charAt(position + 1), upperBound) : null;
+            }
+            int unitPosition = position + 1;
+            while (unitPosition < expression.length() && Character.isDigit(expression.charAt(unitPosition))) {
+                unitPosition++;
+            }
+            ChronoUnit unit = unitPosition < expression.length() ? toUnit(expression.charAt(unitPosition)) : null;
+            if ((operator != '+' && operator != '-') || unitPosition == position + 1 || unit == null) {
+                return null;
+            }
+            long amount = Long.parseLong(expression.substring(position + 1, unitPosition));
+            time = time.plus(operator == '-' ? -amount : amount, unit);
+            position = unitPosition + 1;
+        }
+        return time.toLocalDate();
+    }
+
+    private static ChronoUnit toUnit(char unit) {
+        switch (unit) {
+            case 'y':
+                return ChronoUnit.YEARS;
+            case 'M':
+                return ChronoUnit.MONTHS;
+            case 'w':
+                return ChronoUnit.WEEKS;
+            case 'd':
+                return ChronoUnit.DAYS;
+            case 'h':
+            case 'H':
+                return ChronoUnit.HOURS;
+            case 'm':
+                return ChronoUnit.MINUTES;
+            case 's':
+                return ChronoUnit.SECONDS;
+            default:
+                return null;
+        }
+    }
+
+    private static LocalDate round(LocalDate date, char unit, boolean upperBound) {
+        switch (unit) {
+            case 'y':
+                return upperBound ? date.with(TemporalAdjusters.lastDayOfYear()) : date.with(TemporalAdjusters.firstDayOfYear());
+            case 'M':
+                return upperBound ? date.with(TemporalAdjusters.lastDayOfMonth()) : date.with(TemporalAdjusters.firstDayOfMonth());
+            case 'w':
+                return upperBound ? date.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY))
+                        : date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            default:
+                return toUnit(unit) != null ? date : null;
+        }
+    }
+
+    private static final class DateBounds {
+        private LocalDate from;
+        private LocalDate to;
+
+        // a bound which is not a date leaves that side as it is
+        void narrow(LocalDate rangeFrom, LocalDate rangeTo) {
+            if (rangeFrom != null && (from == null || rangeFrom.isAfter(from))) {
+                from = rangeFrom;
+            }
+            if (rangeTo != null && (to == null || rangeTo.isBefore(to))) {
+                to = rangeTo;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.wse.common.elasticsearch.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <pre>
+ * Micrometer binding of {@link ElasticSearchMetrics}, kept out of the main sources so that only the applications which
+ * use it depend on micrometer-core. The meters, tagged by operation and index:
+ * elasticsearch.operation          timer with a percentile histogram, tagged by outcome (success, error)
+ * elasticsearch.serialization      timer of the JSON conversion of the entities
+ * elasticsearch.request.bytes      distribution summary of the HTTP request bodies
+ * elasticsearch.response.bytes     distribution summary of the HTTP response bodies
+ * elasticsearch.bulk.items         distribution summary of the bulk sizes, with the counter elasticsearch.bulk.failed.items
+ * elasticsearch.rejections         counter of the calls rejected by the circuit breakers and the search limit
+ * elasticsearch.async.inflight     gauge of the asynchronous operations not answered yet, tagged by operation
+ * The meters are registered once and then looked up without allocation.
+ * </pre>
+ */
+public class MicrometerElasticSearchMetrics implements ElasticSearchMetrics {
+
+    private static final String NO_INDEX = "none";
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Map<String, Timer>> successTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Timer>> errorTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Timer>> serializationTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, DistributionSummary>> requestBytes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, DistributionSummary>> responseBytes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Counter>> rejections = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> bulkItems = new ConcurrentHashMap<>();
+    private final Map<String, Counter> bulkFailedItems = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> asyncInFlight = new ConcurrentHashMap<>();
+
+    public MicrometerElasticSearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordLatency(String operation, String index, long durationNanos, boolean success) {
+        Map<String, Map<String, Timer>> timers = success ? successTimers : errorTimers;
+        Timer timer = find(timers, operation, index);
+        if (timer == null) {
+            String outcome = success ? OUTCOME_SUCCESS : OUTCOME_ERROR;
+            timer = register(timers, operation, index, name -> Timer.builder("elasticsearch.operation")
+                    .tags(tags(operation, name).and("outcome", outcome))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordSerialization(String operation, String index, long durationNanos) {
+        Timer timer = find(serializationTimers, operation, index);
+        if (timer == null) {
+            timer = register(serializationTimers, operation, index, name -> Timer.builder("elasticsearch.serialization")
+                    .tags(tags(operation, name))
+                    .register(registry));
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRequestBytes(String operation, String index, long bytes) {
+        DistributionSummary summary = find(requestBytes, operation, index);
+        if (summary == null) {
+            summary = register(requestBytes, operation, index, name -> DistributionSummary.builder("elasticsearch.request.bytes")
+                    .baseUnit("bytes")
+                    .tags(tags(operation, name))
+                    .register(registry));
+        }
+        summary.record(bytes);
+    }
+
+    @Override
+    public void recordResponseBytes(String operation, String index, long bytes) {
+        DistributionSummary summary = find(responseBytes, operation, index);
+        if (summary == null) {
+            summary = register(responseBytes, operation, index, name -> DistributionSummary.builder("elasticsearch.response.bytes")
+                    .baseUnit("bytes")
+                    .tags(tags(operation, name))
+                    .register(registry));
+        }
+        summary.record(bytes);
+    }
+
+    @Override
+    public void recordBulkItems(String index, int items, int failedItems) {
+        String indexName = index != null ? index : NO_INDEX;
+        DistributionSummary summary = bulkItems.get(indexName);
+        if (summary == null) {
+            summary = bulkItems.computeIfAbsent(indexName, name -> DistributionSummary.builder("elasticsearch.bulk.items")
+                    .tags("index", name)
+                    .register(registry));
+        }
+        summary.record(items);
+        if (failedItems > 0) {
+            Counter counter = bulkFailedItems.get(indexName);
+            if (counter == null) {
+                counter = bulkFailedItems.computeIfAbsent(indexName, name -> Counter.builder("elasticsearch.bulk.failed.items")
+                        .tags("index", name)
+                        .register(registry));
+            }
+            counter.increment(failedItems);
+        }
+    }
+
+    @Override
+    public void recordRejection(String operation, String index) {
+        Counter counter = find(rejections, operation, index);
+        if (counter == null) {
+            counter = register(rejections, operation, index, name -> Counter.builder("elasticsearch.rejections")
+                    .tags(tags(operation, name))
+                    .register(registry));
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void asyncStarted(String operation) {
+        getAsyncInFlight(operation).incrementAndGet();
+    }
+
+    @Override
+    public void asyncFinished(String operation) {
+        getAsyncInFlight(operation).decrementAndGet();
+    }
+
+    private AtomicInteger getAsyncInFlight(String operation) {
+        AtomicInteger inFlight = asyncInFlight.get(operation);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        return asyncInFlight.computeIfAbsent(operation,
+                name -> registry.gauge("elasticsearch.async.inflight", Tags.of("operation", name), new AtomicInteger()));
+    }
+
+    // the lookup of an existing meter does not allocate, unlike building a tagged meter id on each call
+    private static <M> M find(Map<String, Map<String, M>> meters, String operation, String index) {
+        Map<String, M> operationMeters = meters.get(operation);
+        return operationMeters != null ? operationMeters.get(index != null ? index : NO_INDEX) : null;
+    }
+
+    private static <M> M register(Map<String, Map<String, M>> meters, String operation, String index, Function<String, M> factory) {
+        return meters.computeIfAbsent(operation, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(index != null ? index : NO_INDEX, factory);
+    }
+
+    private static Tags tags(String operation, String index) {
+        return Tags.of("operation", operation, "index", index);
+    }
+
+}
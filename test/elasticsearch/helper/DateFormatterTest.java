@@ -0,0 +1,47 @@
+package com.wse.common.elasticsearch.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import org.junit.Test;
+
+public class DateFormatterTest {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    @Test
+    public void numbersMayBeShorterThanTheirPattern() {
+        assertEquals("2024-03-05", DateFormatter.fromDateToJoda("2024-3-5", DATE_FORMAT, DATE_FORMAT));
+        assertTrue(DateFormatter.isDate("2024-3-5", DATE_FORMAT));
+    }
+
+    @Test
+    public void adjacentNumbersKeepTheirWidth() {
+        assertEquals("2024-03-05", DateFormatter.fromDateToJoda("20240305", "yyyyMMdd", DATE_FORMAT));
+    }
+
+    @Test
+    public void outOfRangeValueDoesNotRollOver() {
+        assertNull(DateFormatter.parse("2024-13-05", DATE_FORMAT));
+        assertEquals("2024-02-29", DateFormatter.fromDateToJoda("2024-02-30", DATE_FORMAT, DATE_FORMAT));
+    }
+
+    @Test
+    public void valueWhichIsNotADateGivesNull() {
+        assertNull(DateFormatter.parseDate("not a date", DATE_FORMAT));
+        assertFalse(DateFormatter.isDate("2024-03-05T10:00", DATE_FORMAT));
+    }
+
+    @Test
+    public void jodaOnlyPatternIsParsedWithJoda() {
+        assertEquals(LocalDate.of(2024, 3, 5).atStartOfDay(ZoneId.systemDefault()).toInstant(),
+                DateFormatter.parseInstant("20 24-03-05", "C yy-MM-dd"));
+        assertTrue(DateFormatter.isDate("20 24-03-05", "C yy-MM-dd"));
+    }
+
+}
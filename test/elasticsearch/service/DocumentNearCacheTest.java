@@ -0,0 +1,81 @@
+package com.wse.common.elasticsearch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocumentNearCacheTest {
+
+    private static final String INDEX = "enrollment";
+    private static final String ID = "1";
+
+    private DocumentNearCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new DocumentNearCache(new NearCacheOptions());
+    }
+
+    @Test
+    public void readIsCached() {
+        cache.put(INDEX, ID, "{\"v\":1}", cache.getGeneration());
+
+        assertEquals("{\"v\":1}", cache.get(INDEX, ID));
+        assertNull(cache.get("other", ID));
+    }
+
+    @Test
+    public void readStartedBeforeEvictionIsNotCached() {
+        long generation = cache.getGeneration();
+        cache.invalidate(INDEX, ID);
+        cache.put(INDEX, ID, "{\"v\":1}", generation);
+
+        assertNull(cache.get(INDEX, ID));
+    }
+
+    @Test
+    public void readStartedAfterEvictionIsCached() {
+        cache.invalidate(INDEX, ID);
+        cache.put(INDEX, ID, "{\"v\":2}", cache.getGeneration());
+
+        assertEquals("{\"v\":2}", cache.get(INDEX, ID));
+    }
+
+    @Test
+    public void readStartedBeforeWriteDoesNotReplaceWrittenSource() {
+        long generation = cache.getGeneration();
+        cache.write(INDEX, ID, "{\"v\":2}");
+        cache.put(INDEX, ID, "{\"v\":1}", generation);
+
+        assertEquals("{\"v\":2}", cache.get(INDEX, ID));
+    }
+
+    @Test
+    public void evictionAfterWriteCompletesRemovesSourceReadDuringWrite() {
+        // evicted before the write is sent, read while it is in flight, evicted again when it completes
+        cache.invalidate(INDEX, ID);
+        cache.put(INDEX, ID, "{\"v\":1}", cache.getGeneration());
+        cache.invalidate(INDEX, ID);
+
+        assertNull(cache.get(INDEX, ID));
+    }
+
+    @Test
+    public void documentWithoutSourceIsNotCached() {
+        cache.put(INDEX, ID, null, cache.getGeneration());
+
+        assertNull(cache.get(INDEX, ID));
+    }
+
+    @Test
+    public void expiredSourceIsNotReturned() throws InterruptedException {
+        cache = new DocumentNearCache(new NearCacheOptions().setTimeToLiveMillis(1));
+        cache.put(INDEX, ID, "{\"v\":1}", cache.getGeneration());
+        Thread.sleep(10);
+
+        assertNull(cache.get(INDEX, ID));
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.wse.common.elasticsearch.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
+
+public class EntityMappingGeneratorTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2024, 3, 31);
+
+    static class Enrollment {
+        private Date startDate;
+    }
+
+    @Test
+    public void generatedDateFieldParsesTheDateRangeBounds() {
+        DateMathParser parser = new DateMathParser(Joda.forPattern(dateFormat()));
+        RangeQueryBuilder rangeQuery = (RangeQueryBuilder) SearchQuery.range("startDate", FROM, TO).toQueryBuilder(DateRounding.DAY);
+
+        assertEquals(millis(FROM), parser.parse((String) rangeQuery.from(), () -> 0L, false, DateTimeZone.UTC));
+        assertEquals(millis(TO.plusDays(1)) - 1, parser.parse((String) rangeQuery.to(), () -> 0L, true, DateTimeZone.UTC));
+    }
+
+    @Test
+    public void generatedDateFieldParsesUnroundedBounds() {
+        DateMathParser parser = new DateMathParser(Joda.forPattern(dateFormat()));
+        RangeQueryBuilder rangeQuery = (RangeQueryBuilder) SearchQuery.range("startDate", FROM, null).toQueryBuilder(DateRounding.NONE);
+
+        assertEquals(millis(FROM), parser.parse((String) rangeQuery.from(), () -> 0L, false, DateTimeZone.UTC));
+    }
+
+    @Test
+    public void generatedDateFieldParsesTheDatesOfTheEpochMillisCodec() {
+        DateMathParser parser = new DateMathParser(Joda.forPattern(dateFormat()));
+        String json = EntityMappingGenerator.epochMillisCodec().toJson(new Date(millis(FROM)));
+
+        assertEquals(millis(FROM), parser.parse(json, () -> 0L, false, DateTimeZone.UTC));
+    }
+
+    private static String dateFormat() {
+        return (String) EntityMappingGenerator.generate(Enrollment.class).get("startDate").get("format");
+    }
+
+    private static long millis(LocalDate date) {
+        return date.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+}
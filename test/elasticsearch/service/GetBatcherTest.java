@@ -0,0 +1,265 @@
+package com.wse.common.elasticsearch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.get.GetResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wse.common.elasticsearch.exception.ElasticSearchServiceException;
+
+public class GetBatcherTest {
+
+    private static final String INDEX = "enrollment";
+    private static final String TYPE = "_doc";
+
+    private ScheduledExecutorService scheduler;
+
+    // the requests sent, answered by the test
+    private final List<MultiGetRequest> requests = new ArrayList<>();
+    private final List<ActionListener<MultiGetResponse>> listeners = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void fullBatchIsSentAtOnceInArrivalOrder() {
+        GetBatcher batcher = newBatcher(3, TimeUnit.HOURS.toMillis(1));
+
+        batcher.get(item("2"));
+        batcher.get(item("1"));
+        assertTrue(requests.isEmpty());
+        batcher.get(item("3"));
+
+        assertEquals(1, requests.size());
+        assertEquals("2", requests.get(0).getItems().get(0).id());
+        assertEquals("1", requests.get(0).getItems().get(1).id());
+        assertEquals("3", requests.get(0).getItems().get(2).id());
+    }
+
+    @Test
+    public void eachCallerGetsItsOwnDocument() throws Exception {
+        GetBatcher batcher = newBatcher(2, TimeUnit.HOURS.toMillis(1));
+
+        CompletableFuture<String> first = batcher.get(item("1"));
+        CompletableFuture<String> second = batcher.get(item("2"));
+        listeners.get(0).onResponse(response(found("1"), found("2")));
+
+        assertEquals(source("1"), first.get());
+        assertEquals(source("2"), second.get());
+    }
+
+    @Test
+    public void duplicateGetsShareOneItem() throws Exception {
+        GetBatcher batcher = newBatcher(3, TimeUnit.HOURS.toMillis(1));
+
+        CompletableFuture<String> first = batcher.get(item("1"));
+        CompletableFuture<String> other = batcher.get(item("2"));
+        CompletableFuture<String> duplicate = batcher.get(item("1"));
+
+        assertEquals(2, requests.get(0).getItems().size());
+        listeners.get(0).onResponse(response(found("1"), found("2")));
+
+        assertEquals(source("1"), first.get());
+        assertEquals(source("1"), duplicate.get());
+        assertEquals(source("2"), other.get());
+    }
+
+    @Test
+    public void sameIdWithAnotherRoutingIsAnotherItem() {
+        GetBatcher batcher = newBatcher(2, TimeUnit.HOURS.toMillis(1));
+
+        batcher.get(item("1"));
+        batcher.get(item("1").routing("tenant"));
+
+        assertEquals(2, requests.get(0).getItems().size());
+    }
+
+    @Test
+    public void missingDocumentCompletesWithNull() throws Exception {
+        GetBatcher batcher = newBatcher(1, TimeUnit.HOURS.toMillis(1));
+
+        CompletableFuture<String> result = batcher.get(item("1"));
+        listeners.get(0).onResponse(response(missing("1")));
+
+        assertNull(result.get());
+    }
+
+    @Test
+    public void failedItemFailsOnlyItsCallers() throws Exception {
+        GetBatcher batcher = newBatcher(2, TimeUnit.HOURS.toMillis(1));
+
+        CompletableFuture<String> failed = batcher.get(item("1"));
+        CompletableFuture<String> found = batcher.get(item("2"));
+        listeners.get(0).onResponse(response(
+                new MultiGetItemResponse(null, new MultiGetResponse.Failure(INDEX, TYPE, "1", new IllegalStateException("shard failure"))),
+                found("2")));
+
+        assertFailed(failed);
+        assertEquals(source("2"), found.get());
+    }
+
+    @Test
+    public void failedRequestFailsEveryCaller() {
+        GetBatcher batcher = newBatcher(2, TimeUnit.HOURS.toMillis(1));
+
+        CompletableFuture<String> first = batcher.get(item("1"));
+        CompletableFuture<String> second = batcher.get(item("2"));
+        listeners.get(0).onFailure(new IllegalStateException("connection reset"));
+
+        assertFailed(first);
+        assertFailed(second);
+    }
+
+    @Test
+    public void partialBatchIsSentAfterTheDelay() throws Exception {
+        GetBatcher batcher = newBatcher(100, 10);
+
+        CompletableFuture<String> result = batcher.get(item("1"));
+        waitForRequests(1);
+        listeners.get(0).onResponse(response(found("1")));
+
+        assertEquals(source("1"), result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void futuresAreCompletedOnTheCallbackExecutor() throws Exception {
+        List<Runnable> callbacks = new ArrayList<>();
+        GetBatcher batcher = new GetBatcher(new GetBatchingOptions().setMaxBatchSize(1).setScheduler(scheduler)
+                .setCallbackExecutor(callbacks::add), this::send);
+
+        CompletableFuture<String> result = batcher.get(item("1"));
+        listeners.get(0).onResponse(response(found("1")));
+
+        assertFalse(result.isDone());
+        callbacks.get(0).run();
+        assertEquals(source("1"), result.get());
+    }
+
+    @Test
+    public void getIsNotQueuedWhenItsFlushCannotBeScheduled() throws Exception {
+        scheduler.shutdownNow();
+        scheduler = new RejectingOnceScheduler();
+        GetBatcher batcher = newBatcher(100, 10);
+
+        assertFailed(batcher.get(item("1")));
+
+        // the next get starts a new batch with its own flush, without the failed one
+        CompletableFuture<String> result = batcher.get(item("2"));
+        waitForRequests(1);
+        assertEquals(1, requests.get(0).getItems().size());
+        assertEquals("2", requests.get(0).getItems().get(0).id());
+        listeners.get(0).onResponse(response(found("2")));
+        assertEquals(source("2"), result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectedRequestFailsTheBatch() {
+        GetBatcher batcher = new GetBatcher(new GetBatchingOptions().setMaxBatchSize(1).setScheduler(scheduler)
+                .setCallbackExecutor(Runnable::run), (request, listener) -> {
+                    throw new ElasticSearchServiceException("rejected");
+                });
+
+        assertFailed(batcher.get(item("1")));
+    }
+
+    private static final class RejectingOnceScheduler extends ScheduledThreadPoolExecutor {
+        private boolean rejected;
+
+        RejectingOnceScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            if (!rejected) {
+                rejected = true;
+                throw new RejectedExecutionException("shut down");
+            }
+            return super.schedule(command, delay, unit);
+        }
+    }
+
+    private GetBatcher newBatcher(int maxBatchSize, long maxDelayMillis) {
+        return new GetBatcher(new GetBatchingOptions().setMaxBatchSize(maxBatchSize).setMaxDelayMillis(maxDelayMillis)
+                .setScheduler(scheduler).setCallbackExecutor(Runnable::run), this::send);
+    }
+
+    private synchronized void send(MultiGetRequest request, ActionListener<MultiGetResponse> listener) {
+        requests.add(request);
+        listeners.add(listener);
+        notifyAll();
+    }
+
+    private synchronized void waitForRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(1);
+        while (requests.size() < count && System.currentTimeMillis() < deadline) {
+            wait(10);
+        }
+        assertEquals(count, requests.size());
+    }
+
+    private static MultiGetRequest.Item item(String id) {
+        return new MultiGetRequest.Item(INDEX, TYPE, id);
+    }
+
+    private static String source(String id) {
+        return "{\"id\":\"" + id + "\"}";
+    }
+
+    private static MultiGetItemResponse found(String id) {
+        return new MultiGetItemResponse(new GetResponse(new GetResult(INDEX, TYPE, id, 1, true, new BytesArray(source(id)),
+                Collections.emptyMap())), null);
+    }
+
+    private static MultiGetItemResponse missing(String id) {
+        return new MultiGetItemResponse(new GetResponse(new GetResult(INDEX, TYPE, id, -1, false, null, null)), null);
+    }
+
+    private static MultiGetResponse response(MultiGetItemResponse... items) {
+        return new MultiGetResponse(items);
+    }
+
+    private static void assertFailed(CompletableFuture<String> result) {
+        assertTrue(result.isCompletedExceptionally());
+        try {
+            result.get();
+            fail();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            assertSame(ElasticSearchServiceException.class, e.getCause().getClass());
+        }
+    }
+
+}
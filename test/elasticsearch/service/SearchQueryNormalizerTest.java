@@ -0,0 +1,40 @@
+package com.wse.common.elasticsearch.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+import com.wse.common.elasticsearch.service.SearchQueryData.DateRounding;
+
+public class SearchQueryNormalizerTest {
+
+    @Test
+    public void boundsAreSentAsTheyAreWithoutRounding() {
+        assertEquals("now-15m", SearchQueryNormalizer.round("now-15m", DateRounding.NONE));
+        assertEquals("2024-03-01", SearchQueryNormalizer.toRangeBound(LocalDate.of(2024, 3, 1), DateRounding.NONE));
+    }
+
+    @Test
+    public void coarseDateMathIsRounded() {
+        assertEquals("now/d", SearchQueryNormalizer.round("now", DateRounding.DAY));
+        assertEquals("now-7d/d", SearchQueryNormalizer.round("now-7d", DateRounding.DAY));
+        assertEquals("now-1M+2d/d", SearchQueryNormalizer.round("now-1M+2d", DateRounding.DAY));
+        assertEquals("2024-03-01||/d", SearchQueryNormalizer.toRangeBound(LocalDate.of(2024, 3, 1), DateRounding.DAY));
+    }
+
+    @Test
+    public void finerDateMathKeepsItsPrecision() {
+        assertEquals("now-15m", SearchQueryNormalizer.round("now-15m", DateRounding.DAY));
+        assertEquals("now-2H", SearchQueryNormalizer.round("now-2H", DateRounding.DAY));
+        assertEquals("now-7d", SearchQueryNormalizer.round("now-7d", DateRounding.MONTH));
+        assertEquals("now-2h/h", SearchQueryNormalizer.round("now-2h", DateRounding.HOUR));
+    }
+
+    @Test
+    public void roundedDateMathIsLeftAsItIs() {
+        assertEquals("now-1M/M", SearchQueryNormalizer.round("now-1M/M", DateRounding.DAY));
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.wse.common.elasticsearch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.wse.common.elasticsearch.service.TimePartitionOptions.Granularity;
+
+public class TimePartitionedIndexTest {
+
+    // a Wednesday
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 13, 15, 30);
+
+    private static final TreeSet<LocalDate> KNOWN_MONTHS = new TreeSet<>(Arrays.asList(
+            LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 1)));
+
+    @Test
+    public void dateMathNow() {
+        assertEquals(LocalDate.of(2024, 3, 13), TimePartitionedIndex.resolveDateMath("now", false, NOW));
+    }
+
+    @Test
+    public void dateMathOffsets() {
+        assertEquals(LocalDate.of(2024, 3, 6), TimePartitionedIndex.resolveDateMath("now-7d", false, NOW));
+        assertEquals(LocalDate.of(2024, 2, 13), TimePartitionedIndex.resolveDateMath("now-1M", false, NOW));
+        assertEquals(LocalDate.of(2025, 3, 14), TimePartitionedIndex.resolveDateMath("now+1y+1d", false, NOW));
+        assertEquals(LocalDate.of(2024, 3, 14), TimePartitionedIndex.resolveDateMath("now+10h", false, NOW));
+    }
+
+    @Test
+    public void dateMathRoundingFollowsTheBound() {
+        assertEquals(LocalDate.of(2024, 2, 1), TimePartitionedIndex.resolveDateMath("now-1M/M", false, NOW));
+        assertEquals(LocalDate.of(2024, 2, 29), TimePartitionedIndex.resolveDateMath("now-1M/M", true, NOW));
+        assertEquals(LocalDate.of(2024, 1, 1), TimePartitionedIndex.resolveDateMath("now/y", false, NOW));
+        assertEquals(LocalDate.of(2024, 12, 31), TimePartitionedIndex.resolveDateMath("now/y", true, NOW));
+        assertEquals(LocalDate.of(2024, 3, 11), TimePartitionedIndex.resolveDateMath("now/w", false, NOW));
+        assertEquals(LocalDate.of(2024, 3, 17), TimePartitionedIndex.resolveDateMath("now/w", true, NOW));
+        assertEquals(LocalDate.of(2024, 3, 13), TimePartitionedIndex.resolveDateMath("now/d", true, NOW));
+    }
+
+    @Test
+    public void unsupportedDateMathIsNotADate() {
+        assertNull(TimePartitionedIndex.resolveDateMath("now-1q", false, NOW));
+        assertNull(TimePartitionedIndex.resolveDateMath("now*2d", false, NOW));
+        assertNull(TimePartitionedIndex.resolveDateMath("now-d", false, NOW));
+        assertNull(TimePartitionedIndex.resolveDateMath("now/M+1d", false, NOW));
+    }
+
+    @Test
+    public void rangeInsideOnePartition() {
+        assertEquals(Collections.singletonList(LocalDate.of(2024, 2, 1)), TimePartitionedIndex.findKnownPartitions(KNOWN_MONTHS,
+                Granularity.MONTH, LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 20)));
+    }
+
+    @Test
+    public void rangeAcrossPartitionsIncludesBothEnds() {
+        assertEquals(Arrays.asList(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1)), TimePartitionedIndex.findKnownPartitions(
+                KNOWN_MONTHS, Granularity.MONTH, LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 1)));
+    }
+
+    @Test
+    public void rangeReachingAPeriodWithoutPartitionIsAMiss() {
+        assertTrue(TimePartitionedIndex.hasUnknownPeriod(KNOWN_MONTHS, Granularity.MONTH,
+                LocalDate.of(2024, 3, 20), LocalDate.of(2024, 4, 2), LocalDate.of(2024, 1, 1)));
+        assertFalse(TimePartitionedIndex.hasUnknownPeriod(KNOWN_MONTHS, Granularity.MONTH,
+                LocalDate.of(2024, 1, 20), LocalDate.of(2024, 3, 2), LocalDate.of(2024, 1, 1)));
+    }
+
+    @Test
+    public void periodsBeforeTheEarliestPartitionOrTheRetentionAreEmpty() {
+        assertFalse(TimePartitionedIndex.hasUnknownPeriod(KNOWN_MONTHS, Granularity.MONTH,
+                LocalDate.of(2023, 11, 30), LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 1)));
+        assertFalse(TimePartitionedIndex.hasUnknownPeriod(KNOWN_MONTHS, Granularity.MONTH,
+                null, LocalDate.of(2024, 2, 5), LocalDate.of(2024, 1, 1)));
+
+        TreeSet<LocalDate> afterRetention = new TreeSet<>(Collections.singletonList(LocalDate.of(2024, 3, 1)));
+        assertFalse(TimePartitionedIndex.hasUnknownPeriod(afterRetention, Granularity.MONTH,
+                LocalDate.of(2024, 1, 15), LocalDate.of(2024, 3, 10), LocalDate.of(2024, 3, 1)));
+    }
+
+    @Test
+    public void historyIsUnknownWithoutPartitionOrRetention() {
+        assertTrue(TimePartitionedIndex.hasUnknownPeriod(new TreeSet<>(), Granularity.MONTH, null, LocalDate.of(2024, 2, 5), null));
+    }
+
+    @Test
+    public void periodWithoutPartitionIsSkippedOnceKnownToBeEmpty() {
+        TreeSet<LocalDate> knownMonths = new TreeSet<>(Arrays.asList(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1)));
+
+        assertEquals(Arrays.asList(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1)), TimePartitionedIndex.findKnownPartitions(
+                knownMonths, Granularity.MONTH, LocalDate.of(2024, 1, 10), LocalDate.of(2024, 4, 10)));
+        assertEquals(Collections.emptyList(), TimePartitionedIndex.findKnownPartitions(
+                knownMonths, Granularity.MONTH, LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 20)));
+    }
+
+    @Test
+    public void rangeWithoutLowerBoundStartsAtTheEarliestPartition() {
+        assertEquals(Arrays.asList(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1)), TimePartitionedIndex.findKnownPartitions(
+                KNOWN_MONTHS, Granularity.MONTH, null, LocalDate.of(2024, 2, 5)));
+    }
+
+    @Test
+    public void yearPartitions() {
+        TreeSet<LocalDate> knownYears = new TreeSet<>(Arrays.asList(LocalDate.of(2023, 1, 1), LocalDate.of(2024, 1, 1)));
+
+        assertEquals(Arrays.asList(LocalDate.of(2023, 1, 1), LocalDate.of(2024, 1, 1)), TimePartitionedIndex.findKnownPartitions(
+                knownYears, Granularity.YEAR, LocalDate.of(2023, 6, 1), LocalDate.of(2024, 6, 1)));
+    }
+
+    @Test
+    public void granularityBoundaries() {
+        assertEquals(LocalDate.of(2024, 2, 29), Granularity.MONTH.end(LocalDate.of(2024, 2, 1)));
+        assertEquals(LocalDate.of(2024, 1, 1), Granularity.YEAR.start(LocalDate.of(2024, 7, 15)));
+        assertEquals(LocalDate.of(2024, 2, 1), Granularity.MONTH.parseSuffix("2024.02"));
+        assertNull(Granularity.MONTH.parseSuffix("2024"));
+    }
+
+}